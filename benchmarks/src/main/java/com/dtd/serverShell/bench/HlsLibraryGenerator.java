@@ -0,0 +1,104 @@
+package com.dtd.serverShell.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a fake HLS library into a media.dir for HlsLoadTest: one folder per
+ * title, each with a VOD index.m3u8 (fMP4 style, init.mp4 plus .m4s
+ * segments) and dummy segments sized for the given bitrate.
+ *
+ *   <media.dir>/Movies/HLS Load 000/index.m3u8, init.mp4, seg00000.m4s ...
+ *
+ *   java -cp target/benchmarks.jar com.dtd.serverShell.bench.HlsLibraryGenerator \
+ *        --dir /tmp/hls-media --titles 4 --minutes 10 --kbps 2500 --segment-seconds 4
+ *
+ * Segment bytes are random so nothing on the way (gzip, a cache) can make
+ * them cheaper than real video. Existing titles are rewritten.
+ */
+public class HlsLibraryGenerator {
+
+    static final String TITLE_FORMAT = "Movies/HLS Load %03d";
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opts = parseArgs(args);
+        Path dir           = Paths.get(require(opts, "dir"));
+        int titles         = Integer.parseInt(opts.getOrDefault("titles", "4"));
+        int minutes        = Integer.parseInt(opts.getOrDefault("minutes", "10"));
+        int kbps           = Integer.parseInt(opts.getOrDefault("kbps", "2500"));
+        int segmentSeconds = Integer.parseInt(opts.getOrDefault("segment-seconds", "4"));
+
+        int segments = Math.max(1, minutes * 60 / segmentSeconds);
+        int segmentBytes = kbps * 1000 / 8 * segmentSeconds;
+        System.out.printf("Generating %d title(s) in %s: %d x %ds segments of %d KB%n",
+                titles, dir, segments, segmentSeconds, segmentBytes / 1024);
+
+        long started = System.nanoTime();
+        for (int t = 0; t < titles; t++) {
+            writeTitle(dir.resolve(String.format(TITLE_FORMAT, t)), segments, segmentSeconds, segmentBytes, t);
+        }
+        long total = (long) titles * segments * segmentBytes;
+        System.out.printf("wrote %.1f MB in %.1fs%n", total / 1048576.0, (System.nanoTime() - started) / 1e9);
+    }
+
+    static void writeTitle(Path title, int segments, int segmentSeconds, int segmentBytes, long seed) throws IOException {
+        Files.createDirectories(title);
+        Random random = new Random(seed);
+        byte[] chunk = new byte[64 * 1024];
+
+        // stands in for the ftyp/moov box; players fetch it once per title
+        random.nextBytes(chunk);
+        Files.write(title.resolve("init.mp4"), Arrays.copyOf(chunk, 1024));
+
+        for (int i = 0; i < segments; i++) {
+            try (OutputStream out = Files.newOutputStream(title.resolve(segmentName(i)))) {
+                for (int left = segmentBytes; left > 0; left -= chunk.length) {
+                    random.nextBytes(chunk);
+                    out.write(chunk, 0, Math.min(left, chunk.length));
+                }
+            }
+        }
+
+        // written last, so a title only shows up once its segments exist
+        try (Writer w = Files.newBufferedWriter(title.resolve("index.m3u8"), StandardCharsets.UTF_8)) {
+            w.write("#EXTM3U\n");
+            w.write("#EXT-X-VERSION:7\n");
+            w.write("#EXT-X-TARGETDURATION:" + segmentSeconds + "\n");
+            w.write("#EXT-X-MEDIA-SEQUENCE:0\n");
+            w.write("#EXT-X-PLAYLIST-TYPE:VOD\n");
+            w.write("#EXT-X-MAP:URI=\"init.mp4\"\n");
+            for (int i = 0; i < segments; i++) {
+                w.write("#EXTINF:" + segmentSeconds + ".000,\n");
+                w.write(segmentName(i) + "\n");
+            }
+            w.write("#EXT-X-ENDLIST\n");
+        }
+    }
+
+    private static String segmentName(int i) {
+        return String.format("seg%05d.m4s", i);
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].startsWith("--")) out.put(args[i].substring(2), args[i + 1]);
+        }
+        return out;
+    }
+
+    static String require(Map<String, String> opts, String key) {
+        String v = opts.get(key);
+        if (v == null) throw new IllegalArgumentException("missing --" + key);
+        return v;
+    }
+}
@@ -0,0 +1,127 @@
+package com.dtd.serverShell.bench;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+import com.dtd.serverShell.ServerShellApplication;
+import com.dtd.serverShell.model.AppUser;
+import com.dtd.serverShell.model.UserDashboardView;
+import com.dtd.serverShell.model.UserNameView;
+import com.dtd.serverShell.model.UserRoleView;
+import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+
+import passwordHasher.passwordHasher;
+
+/**
+ * Runs the app from this tree with in-memory repositories instead of Mongo,
+ * for HlsLoadTest (or any other harness) to hit on a dev box:
+ *
+ *   java -cp target/benchmarks.jar com.dtd.serverShell.bench.HlsLoadServer \
+ *        --media-dir /tmp/hls-media --port 8080 --user bench --password bench
+ *
+ * The one user exists only in memory. The Mongo client itself is still
+ * created but points at a closed port, so the startup index check fails fast
+ * and logs a warning. Emulator features are not usable.
+ */
+public class HlsLoadServer {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = HlsLibraryGenerator.parseArgs(args);
+        String mediaDir = HlsLibraryGenerator.require(opts, "media-dir");
+        String port     = opts.getOrDefault("port", "8080");
+        String user     = opts.getOrDefault("user", "bench");
+        String password = opts.getOrDefault("password", "bench");
+
+        Path scratch = Files.createTempDirectory("hls-load-server");
+        Map<String, AppUser> users = new ConcurrentHashMap<>();
+        users.put(user, new AppUser(user, passwordHasher.hash(password), "ROLE_USER"));
+
+        new SpringApplicationBuilder(ServerShellApplication.class)
+                .initializers(ctx -> {
+                    ctx.getBeanFactory().registerSingleton("appUserRepository", userRepository(users));
+                    ctx.getBeanFactory().registerSingleton("emulatorSessionRepository", sessionRepository());
+                })
+                // command-line properties, so they win over application-local.properties
+                .run("--server.port=" + port,
+                     "--media.dir=" + mediaDir,
+                     "--rom.save.dir=" + scratch.resolve("roms"),
+                     "--env.logging.dir=" + scratch.resolve("log"),
+                     "--pixelart.dir=" + scratch.resolve("pixelart"),
+                     "--spring.autoconfigure.exclude="
+                             + "org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration",
+                     "--spring.data.mongodb.uri=mongodb://127.0.0.1:1/stub?serverSelectionTimeoutMS=200",
+                     "--emulator.telemetry.interval-seconds=0");
+        System.out.printf("HLS load server on :%s, media.dir=%s, user=%s%n", port, mediaDir, user);
+    }
+
+    // only what login, /media/vod (recordView) and the user pages call
+    private static AppUserRepository userRepository(Map<String, AppUser> users) {
+        return (AppUserRepository) Proxy.newProxyInstance(
+                AppUserRepository.class.getClassLoader(), new Class<?>[] { AppUserRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByUsername" -> Optional.ofNullable(users.get((String) args[0]));
+                    case "findRoleByUsername" -> Optional.ofNullable(users.get((String) args[0])).map(u -> roleView(u));
+                    case "findDashboardByUsername" -> Optional.ofNullable(users.get((String) args[0])).map(u -> dashboardView(u));
+                    case "findAllUsernames" -> {
+                        List<UserNameView> names = new ArrayList<>();
+                        users.keySet().forEach(name -> names.add(() -> name));
+                        yield names;
+                    }
+                    case "findAll" -> new ArrayList<>(users.values());
+                    case "save" -> {
+                        AppUser u = (AppUser) args[0];
+                        users.put(u.getUsername(), u);
+                        yield u;
+                    }
+                    case "delete" -> {
+                        users.remove(((AppUser) args[0]).getUsername());
+                        yield null;
+                    }
+                    case "count" -> (long) users.size();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryAppUserRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    // sessions are never persisted here: nothing to recover, nothing to delete
+    private static EmulatorSessionRepository sessionRepository() {
+        return (EmulatorSessionRepository) Proxy.newProxyInstance(
+                EmulatorSessionRepository.class.getClassLoader(), new Class<?>[] { EmulatorSessionRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> List.of();
+                    case "save" -> args[0];
+                    case "deleteById", "delete", "deleteAll" -> null;
+                    case "count" -> 0L;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryEmulatorSessionRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static UserRoleView roleView(AppUser u) {
+        return new UserRoleView() {
+            @Override public String getUsername() { return u.getUsername(); }
+            @Override public String getRole() { return u.getRole(); }
+        };
+    }
+
+    private static UserDashboardView dashboardView(AppUser u) {
+        return new UserDashboardView() {
+            @Override public List<String> getRecentMovies() { return u.getRecentMovies(); }
+            @Override public List<String> getRecentMusic() { return u.getRecentMusic(); }
+            @Override public List<String> getRecentTV() { return u.getRecentTV(); }
+        };
+    }
+}
@@ -0,0 +1,388 @@
+package com.dtd.serverShell.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Simulated viewers watching the library written by HlsLibraryGenerator, the
+ * way the web player does: POST /media/vod for a title, fetch the signed
+ * manifest, then its segments from /media/vod/fs/** at playback speed,
+ * keeping --buffer-seconds ahead of the playhead. Every --seek-seconds (on
+ * average) a viewer jumps somewhere random; at the end of a title it starts
+ * another.
+ *
+ *   java -cp target/benchmarks.jar com.dtd.serverShell.bench.HlsLoadTest \
+ *        --url http://localhost:8080 --user bench --password bench --viewers 16 --seconds 120 --titles 4
+ *
+ * A stall is the playhead catching up with the buffer mid-title (not the
+ * initial load or a seek, which are reported as startup/seek time). Point
+ * it at HlsLoadServer to run without Mongo.
+ */
+public class HlsLoadTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = HlsLibraryGenerator.parseArgs(args);
+        Config cfg = new Config(
+                opts.getOrDefault("url", "http://localhost:8080"),
+                HlsLibraryGenerator.require(opts, "user"),
+                HlsLibraryGenerator.require(opts, "password"),
+                Integer.parseInt(opts.getOrDefault("titles", "4")),
+                Double.parseDouble(opts.getOrDefault("buffer-seconds", "12")),
+                Double.parseDouble(opts.getOrDefault("seek-seconds", "60")));
+        int viewers = Integer.parseInt(opts.getOrDefault("viewers", "16"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "120"));
+        // viewers join over the first few seconds instead of all at once
+        double rampSeconds = Double.parseDouble(opts.getOrDefault("ramp-seconds", "5"));
+
+        System.out.printf("HLS load: %s viewers=%d duration=%ds titles=%d buffer=%.0fs seek every ~%.0fs%n",
+                cfg.url, viewers, seconds, cfg.titles, cfg.bufferSeconds, cfg.seekSeconds);
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + seconds * 1_000_000_000L;
+
+        ExecutorService pool = Executors.newFixedThreadPool(viewers);
+        List<Future<ViewerResult>> futures = new ArrayList<>();
+        for (int i = 0; i < viewers; i++) {
+            int id = i;
+            long joinAt = startedAt + (long) (rampSeconds * 1e9 * i / viewers);
+            futures.add(pool.submit(() -> new Viewer(cfg, id).run(joinAt, deadline)));
+        }
+
+        ViewerResult total = new ViewerResult();
+        for (Future<ViewerResult> f : futures) {
+            total.add(f.get());
+        }
+        pool.shutdown();
+
+        double minutesWatched = (total.playedNanos + total.stalledNanos) / 60e9;
+        System.out.printf("logins failed=%d, titles started=%d, errors=%d%n", total.loginFailures, total.titles, total.errors);
+        System.out.printf("throughput: %.1f segments/s, %.1f Mbit/s (%d segments, %.1f MB)%n",
+                total.segments / (double) seconds, total.bytes * 8 / 1e6 / seconds, total.segments, total.bytes / 1048576.0);
+        System.out.printf("segment ms: %s%n", total.segment.summary());
+        System.out.printf("startup ms: %s (request + manifest + first segment)%n", total.startup.summary());
+        System.out.printf("seek ms:    %s (%d seeks)%n", total.seek.summary(), total.seek.count);
+        System.out.printf("stalls: %d, %.2f per viewer-minute, %.2f%% of watch time stalled%n",
+                total.stalls, minutesWatched == 0 ? 0 : total.stalls / minutesWatched,
+                minutesWatched == 0 ? 0 : 100.0 * total.stalledNanos / (total.playedNanos + total.stalledNanos));
+    }
+
+    private record Config(String url, String user, String password, int titles, double bufferSeconds, double seekSeconds) {}
+
+    /** Growable long[] of latencies in nanos. */
+    private static final class Latencies {
+        long[] values = new long[1024];
+        int count;
+
+        void record(long nanos) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = nanos;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) record(other.values[i]);
+        }
+
+        String summary() {
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return String.format("p50=%.1f p90=%.1f p99=%.1f max=%.1f",
+                    pct(sorted, 0.50), pct(sorted, 0.90), pct(sorted, 0.99), pct(sorted, 1.0));
+        }
+    }
+
+    private static final class ViewerResult {
+        final Latencies segment = new Latencies();
+        final Latencies startup = new Latencies();
+        final Latencies seek = new Latencies();
+        long bytes, playedNanos, stalledNanos;
+        int segments, titles, stalls, errors, loginFailures;
+
+        void add(ViewerResult r) {
+            segment.addAll(r.segment);
+            startup.addAll(r.startup);
+            seek.addAll(r.seek);
+            bytes += r.bytes;
+            playedNanos += r.playedNanos;
+            stalledNanos += r.stalledNanos;
+            segments += r.segments;
+            titles += r.titles;
+            stalls += r.stalls;
+            errors += r.errors;
+            loginFailures += r.loginFailures;
+        }
+    }
+
+    /**
+     * The player's buffer: media seconds downloaded but not yet played. It
+     * drains in real time while playing; playing stops when it runs dry and
+     * resumes as soon as a segment arrives.
+     */
+    private static final class Playback {
+        double buffer;
+        boolean playing;
+        long lastTick;
+        long stalledSince = -1;
+        int stalls;
+        long playedNanos, stalledNanos;
+
+        Playback(long now) {
+            lastTick = now;
+        }
+
+        void advance(long now) {
+            if (playing) {
+                long elapsed = now - lastTick;
+                if (elapsed <= buffer * 1e9) {
+                    buffer -= elapsed / 1e9;
+                    playedNanos += elapsed;
+                } else {
+                    long dry = lastTick + (long) (buffer * 1e9);
+                    playedNanos += dry - lastTick;
+                    buffer = 0;
+                    playing = false;
+                    stalledSince = dry;
+                    stalls++;
+                }
+            }
+            lastTick = now;
+        }
+
+        void append(double seconds, long now) {
+            advance(now);
+            buffer += seconds;
+            if (!playing) {
+                if (stalledSince >= 0) stalledNanos += now - stalledSince;
+                stalledSince = -1;
+                playing = true;
+            }
+        }
+
+        // a seek empties the buffer; the wait that follows is seek time, not a stall
+        void seek(long now) {
+            advance(now);
+            buffer = 0;
+            playing = false;
+            stalledSince = -1;
+        }
+
+        // the title played to its end: running dry here is not a stall
+        void finish(long now) {
+            if (playing) playedNanos += Math.min(now - lastTick, (long) (buffer * 1e9));
+            buffer = 0;
+            playing = false;
+            lastTick = now;
+        }
+
+        void end(long now) {
+            advance(now);
+            if (stalledSince >= 0) stalledNanos += now - stalledSince;
+            stalledSince = -1;
+        }
+    }
+
+    private static final class Viewer {
+        private final Config cfg;
+        private final Random random;
+        private final HttpClient http;
+        private final ViewerResult r = new ViewerResult();
+        private final byte[] sink = new byte[64 * 1024];
+
+        Viewer(Config cfg, int id) {
+            this.cfg = cfg;
+            this.random = new Random(id);
+            // own cookie jar: one login session per viewer
+            this.http = HttpClient.newBuilder()
+                    .cookieHandler(new CookieManager())
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+        }
+
+        ViewerResult run(long joinAt, long deadline) throws InterruptedException {
+            sleepUntil(joinAt);
+            try {
+                if (!login()) {
+                    r.loginFailures++;
+                    return r;
+                }
+            } catch (IOException e) {
+                r.loginFailures++;
+                return r;
+            }
+            while (System.nanoTime() < deadline) {
+                String title = String.format(HlsLibraryGenerator.TITLE_FORMAT, random.nextInt(cfg.titles));
+                try {
+                    watch(title, deadline);
+                } catch (IOException e) {
+                    r.errors++;
+                    Thread.sleep(1000); // like a player showing an error before the user retries
+                }
+            }
+            return r;
+        }
+
+        private boolean login() throws IOException, InterruptedException {
+            String form = "username=" + URLEncoder.encode(cfg.user, StandardCharsets.UTF_8)
+                    + "&password=" + URLEncoder.encode(cfg.password, StandardCharsets.UTF_8);
+            HttpRequest login = HttpRequest.newBuilder(URI.create(cfg.url + "/login"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form))
+                    .build();
+            HttpResponse<Void> resp = http.send(login, HttpResponse.BodyHandlers.discarding());
+            return resp.statusCode() == 302
+                    && resp.headers().firstValue("Location").orElse("").endsWith("/index.html");
+        }
+
+        private void watch(String title, long deadline) throws IOException, InterruptedException {
+            long requested = System.nanoTime();
+            r.titles++;
+            URI manifestUri = startVod(title);
+            List<URI> segments = new ArrayList<>();
+            List<Double> durations = new ArrayList<>();
+            URI init = parseManifest(manifestUri, get(manifestUri), segments, durations);
+            if (segments.isEmpty()) throw new IOException("empty manifest for " + title);
+            if (init != null) fetch(init);
+
+            Playback p = new Playback(System.nanoTime());
+            long waitingSince = requested;   // startup or seek in progress
+            boolean seeking = false;
+            long nextSeek = nextSeek(System.nanoTime());
+            int next = 0;
+            try {
+                while (next < segments.size()) {
+                    long now = System.nanoTime();
+                    if (now >= deadline) return;
+                    p.advance(now);
+
+                    if (now >= nextSeek && p.playing) {
+                        next = random.nextInt(segments.size());
+                        p.seek(now);
+                        waitingSince = now;
+                        seeking = true;
+                        nextSeek = nextSeek(now);
+                    }
+                    if (p.buffer >= cfg.bufferSeconds) {
+                        // buffer full: wait for the playhead, as the player would
+                        long wake = now + (long) ((p.buffer - cfg.bufferSeconds + durations.get(next)) * 1e9);
+                        sleepUntil(Math.min(wake, Math.min(nextSeek, deadline)));
+                        continue;
+                    }
+
+                    long start = System.nanoTime();
+                    r.bytes += fetch(segments.get(next));
+                    long end = System.nanoTime();
+                    r.segment.record(end - start);
+                    r.segments++;
+                    p.append(durations.get(next), end);
+                    if (waitingSince >= 0) {
+                        (seeking ? r.seek : r.startup).record(end - waitingSince);
+                        waitingSince = -1;
+                        seeking = false;
+                    }
+                    next++;
+                }
+                // all downloaded: play out what's buffered, then move on to another title
+                p.advance(System.nanoTime());
+                sleepUntil(Math.min(System.nanoTime() + (long) (p.buffer * 1e9), deadline));
+                p.finish(Math.min(System.nanoTime(), deadline));
+            } finally {
+                p.end(Math.min(System.nanoTime(), deadline));
+                r.playedNanos += p.playedNanos;
+                r.stalledNanos += p.stalledNanos;
+                r.stalls += p.stalls;
+            }
+        }
+
+        private long nextSeek(long now) {
+            if (cfg.seekSeconds <= 0) return Long.MAX_VALUE;
+            // exponential gaps: seeks at a steady average rate, not in lockstep across viewers
+            return now + (long) (-Math.log(1 - random.nextDouble()) * cfg.seekSeconds * 1e9);
+        }
+
+        private URI startVod(String title) throws IOException, InterruptedException {
+            String body = JSON.writeValueAsString(Map.of("path", title));
+            HttpRequest vod = HttpRequest.newBuilder(URI.create(cfg.url + "/media/vod"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            HttpResponse<String> resp = http.send(vod, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() != 200) throw new IOException("/media/vod " + title + ": HTTP " + resp.statusCode());
+            JsonNode m3u8 = JSON.readTree(resp.body()).get("m3u8");
+            if (m3u8 == null) throw new IOException("/media/vod " + title + ": no m3u8 in " + resp.body());
+            return URI.create(m3u8.asText());
+        }
+
+        private String get(URI uri) throws IOException, InterruptedException {
+            HttpResponse<String> resp = http.send(request(uri), HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() != 200) throw new IOException(uri.getPath() + ": HTTP " + resp.statusCode());
+            return resp.body();
+        }
+
+        // reads the body to the end, like the player would, and returns its size
+        private long fetch(URI uri) throws IOException, InterruptedException {
+            HttpResponse<InputStream> resp = http.send(request(uri), HttpResponse.BodyHandlers.ofInputStream());
+            long bytes = 0;
+            try (InputStream in = resp.body()) {
+                for (int n; (n = in.read(sink)) > 0; ) bytes += n;
+            }
+            if (resp.statusCode() != 200) throw new IOException(uri.getPath() + ": HTTP " + resp.statusCode());
+            return bytes;
+        }
+
+        private static HttpRequest request(URI uri) {
+            return HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+        }
+    }
+
+    // segment URIs (already carrying the token) resolved against the manifest; returns the EXT-X-MAP URI
+    static URI parseManifest(URI manifest, String body, List<URI> segments, List<Double> durations) {
+        URI init = null;
+        double duration = 0;
+        for (String line : body.split("\r?\n")) {
+            if (line.startsWith("#EXTINF:")) {
+                int comma = line.indexOf(',');
+                duration = Double.parseDouble(line.substring(8, comma < 0 ? line.length() : comma));
+            } else if (line.startsWith("#EXT-X-MAP:")) {
+                int at = line.indexOf("URI=\"");
+                if (at >= 0) init = manifest.resolve(line.substring(at + 5, line.indexOf('"', at + 5)));
+            } else if (!line.isBlank() && !line.startsWith("#")) {
+                segments.add(manifest.resolve(line.trim()));
+                durations.add(duration);
+            }
+        }
+        return init;
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long wait = nanoTime - System.nanoTime();
+        if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.dtd.serverShell.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dtd.serverShell.security.PasswordVerifier;
+
+import passwordHasher.passwordHasher;
+
+/**
+ * Password checks per second, inline (old path) vs through the bounded
+ * PasswordVerifier pool.
+ *
+ * Hasher cost is baked into the stored hash, so compare cost settings by
+ * passing hashes produced at each setting (all for the same password):
+ *   java -jar target/benchmarks.jar LoginBenchmark -p password=secret -p hash='$h1','$h2'
+ * Leave hash empty to use one generated with the library's default cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class LoginBenchmark {
+
+    @Param({"correct horse battery staple"})
+    public String password;
+
+    @Param({""})
+    public String hash;
+
+    @Param({"2"})
+    public int verifierThreads;
+
+    private String encoded;
+    private PasswordVerifier verifier;
+
+    @Setup
+    public void setup() {
+        encoded = hash.isEmpty() ? passwordHasher.hash(password) : hash;
+        if (!passwordHasher.matches(password, encoded)) {
+            throw new IllegalStateException("hash does not match password; pass the password it was made from");
+        }
+        // no connector to protect here: let the queue take the whole burst
+        verifier = new PasswordVerifier(verifierThreads, 1024, 60_000, Integer.MAX_VALUE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        verifier.shutdown();
+    }
+
+    // one Tomcat thread verifying inline
+    @Benchmark
+    public boolean inlineMatches() {
+        return passwordHasher.matches(password, encoded);
+    }
+
+    // a login burst: 8 request threads contending for the auth pool
+    @Benchmark
+    @Threads(8)
+    public boolean pooledMatchesUnderBurst() {
+        return verifier.matches(password, encoded);
+    }
+}
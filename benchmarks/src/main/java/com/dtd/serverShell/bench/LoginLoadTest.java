@@ -0,0 +1,127 @@
+package com.dtd.serverShell.bench;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Hammers form login on a running instance and reports logins/second and
+ * latency. Every attempt is sessionless, like a burst of clients
+ * reconnecting after a restart.
+ *
+ *   java -cp target/benchmarks.jar com.dtd.serverShell.bench.LoginLoadTest \
+ *        --url http://localhost:8080 --user alice --password secret --clients 16 --seconds 30
+ *
+ * Re-run with different auth.hash.threads / auth.cache.ttl-seconds on the
+ * server to see their effect.
+ */
+public class LoginLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        String url      = opts.getOrDefault("url", "http://localhost:8080");
+        String user     = require(opts, "user");
+        String password = require(opts, "password");
+        int clients     = Integer.parseInt(opts.getOrDefault("clients", "16"));
+        int seconds     = Integer.parseInt(opts.getOrDefault("seconds", "30"));
+
+        String form = "username=" + URLEncoder.encode(user, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpRequest login = HttpRequest.newBuilder(URI.create(url + "/login"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpClient http = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        System.out.printf("Login load: %s clients=%d duration=%ds%n", url, clients, seconds);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<ClientResult>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            futures.add(pool.submit(() -> runClient(http, login, deadline)));
+        }
+
+        long[] all = new long[0];
+        int ok = 0, rejected = 0, errors = 0;
+        for (Future<ClientResult> f : futures) {
+            ClientResult r = f.get();
+            ok += r.ok;
+            rejected += r.rejected;
+            errors += r.errors;
+            long[] merged = Arrays.copyOf(all, all.length + r.count);
+            System.arraycopy(r.latencies, 0, merged, all.length, r.count);
+            all = merged;
+        }
+        pool.shutdown();
+
+        Arrays.sort(all);
+        System.out.printf("logins ok=%d rejected=%d errors=%d%n", ok, rejected, errors);
+        System.out.printf("throughput: %.1f logins/s%n", ok / (double) seconds);
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                pct(all, 0.50), pct(all, 0.90), pct(all, 0.99), pct(all, 1.0));
+    }
+
+    private static final class ClientResult {
+        long[] latencies = new long[1024];
+        int count, ok, rejected, errors;
+
+        void record(long nanos) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+        }
+    }
+
+    private static ClientResult runClient(HttpClient http, HttpRequest login, long deadline) {
+        ClientResult r = new ClientResult();
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> resp = http.send(login, HttpResponse.BodyHandlers.discarding());
+                r.record(System.nanoTime() - start);
+                String location = resp.headers().firstValue("Location").orElse("");
+                if (resp.statusCode() == 302 && location.endsWith("/index.html")) r.ok++;
+                else r.rejected++;
+            } catch (Exception e) {
+                r.errors++;
+            }
+        }
+        return r;
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].startsWith("--")) out.put(args[i].substring(2), args[i + 1]);
+        }
+        return out;
+    }
+
+    private static String require(Map<String, String> opts, String key) {
+        String v = opts.get(key);
+        if (v == null) throw new IllegalArgumentException("missing --" + key);
+        return v;
+    }
+}
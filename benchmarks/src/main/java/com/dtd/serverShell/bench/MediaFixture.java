@@ -0,0 +1,112 @@
+package com.dtd.serverShell.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.dtd.serverShell.model.UserNameView;
+import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.services.MediaService;
+import com.dtd.serverShell.services.MediaStore;
+import com.dtd.serverShell.services.UserRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Synthetic media.dir for the media benchmarks, laid out like the real one:
+ *
+ *   TV/Show 000/Season 00/Episode 000/index.m3u8   (shows x seasons x episodes)
+ *   Movies/Movie 000/index.m3u8
+ *
+ * and in TV's "*Playlists*" folder: big.m3u (every episode, "../"-relative),
+ * bench.m3u (favorites of user "bench") and user000.m3u... (other users'
+ * favorites, hidden from bench).
+ */
+final class MediaFixture {
+
+    static final String USER = "bench";
+
+    final Path root;
+    final List<String> episodes = new ArrayList<>();
+
+    private MediaFixture(Path root) {
+        this.root = root;
+    }
+
+    static MediaFixture create(int shows, int seasons, int episodesPerSeason, int favorites, int users) throws IOException {
+        MediaFixture f = new MediaFixture(Files.createTempDirectory("media-bench"));
+        for (int s = 0; s < shows; s++) {
+            for (int se = 0; se < seasons; se++) {
+                for (int e = 0; e < episodesPerSeason; e++) {
+                    String rel = String.format("TV/Show %03d/Season %02d/Episode %03d/index.m3u8", s, se, e);
+                    Path idx = f.root.resolve(rel);
+                    Files.createDirectories(idx.getParent());
+                    Files.writeString(idx, "#EXTM3U\n");
+                    f.episodes.add(rel);
+                }
+            }
+        }
+        for (int m = 0; m < shows; m++) {
+            Path idx = f.root.resolve(String.format("Movies/Movie %03d/index.m3u8", m));
+            Files.createDirectories(idx.getParent());
+            Files.writeString(idx, "#EXTM3U\n");
+        }
+
+        Path playlists = f.root.resolve("TV/*Playlists*");
+        Files.createDirectories(playlists);
+        f.writePlaylist(playlists.resolve("big.m3u"), f.episodes.size());
+        f.writePlaylist(playlists.resolve(USER + ".m3u"), Math.min(favorites, f.episodes.size()));
+        for (int u = 0; u < users; u++) {
+            f.writePlaylist(playlists.resolve(String.format("user%03d.m3u", u)), 10);
+        }
+        return f;
+    }
+
+    private void writePlaylist(Path file, int entries) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("#EXTM3U\n");
+            for (int i = 0; i < entries; i++) {
+                // same form addFavorite writes: relative to the playlist's folder
+                w.write("../" + episodes.get(i).substring("TV/".length()));
+                w.write('\n');
+            }
+        }
+    }
+
+    /**
+     * A MediaService on this tree; usernames come from a stub repository instead of Mongo.
+     * statTtlMs 0 makes every MediaStore stat go to the filesystem.
+     */
+    MediaService mediaService(int users, long statTtlMs) {
+        List<UserNameView> names = new ArrayList<>();
+        names.add(() -> USER);
+        for (int u = 0; u < users; u++) {
+            String name = String.format("user%03d", u);
+            names.add(() -> name);
+        }
+        AppUserRepository repo = (AppUserRepository) Proxy.newProxyInstance(
+                AppUserRepository.class.getClassLoader(), new Class<?>[] { AppUserRepository.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findAllUsernames")) return names;
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        return new MediaService(new MediaStore(root.toString(), statTtlMs), new UserRegistry(repo),
+                new SimpleMeterRegistry());
+    }
+
+    void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
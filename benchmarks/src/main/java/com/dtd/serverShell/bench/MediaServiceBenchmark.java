@@ -0,0 +1,158 @@
+package com.dtd.serverShell.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.dtd.serverShell.config.allowedMediaType;
+import com.dtd.serverShell.services.MediaService;
+
+/**
+ * MediaService hot paths against a synthetic media tree (see MediaFixture):
+ * directory listings, paged playlist reads at growing offsets, favorites
+ * add/remove, VOD manifest resolution and the extension filter.
+ *
+ * Run with the GC profiler to get allocation per call next to the time:
+ *   java -jar target/benchmarks.jar MediaServiceBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MediaServiceBenchmark {
+
+    // 20 x 5 x 100 = 10k episodes, so big.m3u is a 10k-entry playlist
+    @Param({"20"})
+    public int shows;
+
+    @Param({"5"})
+    public int seasons;
+
+    @Param({"100"})
+    public int episodes;
+
+    @Param({"2000"})
+    public int favorites;
+
+    @Param({"200"})
+    public int users;
+
+    // MediaStore stat cache: 0 = every check hits the filesystem, 2000 = the default
+    @Param({"0", "2000"})
+    public long statTtlMs;
+
+    private MediaFixture fixture;
+    private MediaService media;
+    private String seasonDir;
+    private String episodeDir;
+    private String favorite;
+    private String notFavorite;
+
+    // only the playlist benchmark runs once per offset
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"0", "5000", "9900"})
+        public int offset;
+    }
+
+    private static final String[] NAMES = {
+            "index.m3u8", "Episode 001.vtt", "cover.jpg", "Book.EPUB", "notes", "movie.mkv", "list.m3u"
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        fixture = MediaFixture.create(shows, seasons, episodes, favorites, users);
+        media = fixture.mediaService(users, statTtlMs);
+        // favorites are per logged-in user; make it visible to every benchmark thread
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(MediaFixture.USER, null, List.of()));
+
+        String firstEpisode = fixture.episodes.get(0);
+        episodeDir = firstEpisode.substring(0, firstEpisode.lastIndexOf('/'));
+        seasonDir = episodeDir.substring(0, episodeDir.lastIndexOf('/'));
+        // last entry of the favorites file: worst case for the duplicate scan
+        favorite = fixture.episodes.get(Math.min(favorites, fixture.episodes.size()) - 1);
+        notFavorite = fixture.episodes.get(fixture.episodes.size() - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SecurityContextHolder.clearContext();
+        fixture.delete();
+    }
+
+    // a season folder: every child is an episode folder with its own index
+    @Benchmark
+    public List<String> listSeasonFolder() {
+        return media.listMediaFiles(seasonDir);
+    }
+
+    // category root: plain folders, no index lookups succeed
+    @Benchmark
+    public List<String> listCategoryRoot() {
+        return media.listMediaFiles("TV");
+    }
+
+    // playlists folder: other users' <username>.m3u get filtered out
+    @Benchmark
+    public List<String> listPlaylistsFolder() {
+        return media.listMediaFiles("TV/*Playlists*");
+    }
+
+    // one page of the 10k playlist (loadPlaylistByAbsolutePath via its public entry point)
+    @Benchmark
+    public List<String> loadPlaylistPage(Page page) {
+        return media.loadPlaylistByRelPath("TV/*Playlists*/big.m3u", page.offset, 100);
+    }
+
+    // already a favorite: read + resolve every line, no write
+    @Benchmark
+    public boolean addFavoriteExisting() {
+        return media.addFavorite(favorite);
+    }
+
+    // the write path: append, then remove it again so the file stays the same size
+    @Benchmark
+    public boolean addThenRemoveFavorite() {
+        return media.addFavorite(notFavorite) & media.removeFavorite(notFavorite);
+    }
+
+    @Benchmark
+    public Path resolveVodManifestDir() throws IOException {
+        return media.resolveVodManifest(episodeDir);
+    }
+
+    @Benchmark
+    public Path resolveVodManifestFile() throws IOException {
+        return media.resolveVodManifest(fixture.episodes.get(0));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void isSupportedMediaFile(Blackhole bh) {
+        for (String name : NAMES) {
+            bh.consume(allowedMediaType.isSupportedMediaFile(name));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.dtd.serverShell.config;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.dtd.serverShell.docker.ContainerRuntime;
+import com.dtd.serverShell.docker.DockerCliRuntime;
+import com.dtd.serverShell.docker.DockerEngineRuntime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Configuration
+public class ContainerRuntimeConfig {
+    private static final Logger log = LoggerFactory.getLogger(ContainerRuntimeConfig.class);
+
+    // "engine" talks to the daemon socket directly; "cli" forks docker for every call
+    @Bean
+    public ContainerRuntime containerRuntime(ObjectMapper mapper,
+                                             @Value("${emulator.runtime:engine}") String runtime,
+                                             @Value("${docker.socket:/var/run/docker.sock}") String socket,
+                                             @Value("${docker.socket.max-idle:4}") int maxIdle) {
+        Path socketPath = Paths.get(socket);
+        if ("engine".equalsIgnoreCase(runtime)) {
+            if (Files.isReadable(socketPath) && Files.isWritable(socketPath)) {
+                log.info("[CONTAINER RUNTIME] Docker Engine API via {}", socketPath);
+                return new DockerEngineRuntime(socketPath, maxIdle, mapper);
+            }
+            log.warn("[CONTAINER RUNTIME] {} not accessible, falling back to the docker CLI", socketPath);
+        }
+        log.info("[CONTAINER RUNTIME] docker CLI");
+        return new DockerCliRuntime(mapper);
+    }
+}
@@ -0,0 +1,36 @@
+package com.dtd.serverShell.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import com.dtd.serverShell.model.AppUser;
+
+@Configuration
+public class MongoIndexConfig {
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexConfig.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexConfig(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // every user lookup is by username; make it an index hit and keep it unique
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUserIndexes() {
+        try {
+            String name = mongoTemplate.indexOps(AppUser.class).createIndex(
+                    new Index().on("username", Sort.Direction.ASC).unique().named("username_unique"));
+            log.info("[MONGO INDEX] users index ready: {}", name);
+        } catch (Exception e) {
+            // duplicate usernames already stored, or no createIndex permission: run without it
+            log.warn("[MONGO INDEX] Could not create unique index on users.username: {}", e.getMessage());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.dtd.serverShell.config;
 
 import com.dtd.serverShell.security.CustomLoginSuccessHandler;
 import com.dtd.serverShell.security.CustomUserDetailsService;
+import com.dtd.serverShell.security.PasswordVerifier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.*;
@@ -15,16 +16,17 @@ public class SecurityConfig {
 
 
 @Bean
-public PasswordEncoder passwordEncoder() {
+public PasswordEncoder passwordEncoder(PasswordVerifier passwordVerifier) {
     return new PasswordEncoder() {
         @Override
         public String encode(CharSequence rawPassword) {
             return passwordHasher.hash(rawPassword.toString());
         }
 
+        // verified on the bounded auth pool, not inline on the Tomcat thread
         @Override
         public boolean matches(CharSequence rawPassword, String encodedPassword) {
-            return passwordHasher.matches(rawPassword.toString(), encodedPassword);
+            return passwordVerifier.matches(rawPassword, encodedPassword);
         }
     };
 }
@@ -46,20 +48,26 @@ public PasswordEncoder passwordEncoder() {
             // HLS files must be public so the player can GET them
             .requestMatchers("/streams/**").permitAll()
 
+            // VOD manifests/segments: no session lookup, VodTokenFilter checks the signed token instead
+            .requestMatchers("/media/vod/fs/**").permitAll()
+
             // PUBLIC STATIC ASSETS (ES modules, CSS, fonts, images, helper JS)
             .requestMatchers(
                 "/css/**",
                 "/fonts/**",
-                "/media/**",  
+                "/media/*.js",  
                 "/ui/**",        
                 "/explorer/**",
-                "/emulator/**",
+                "/emulator/*.js",
                 "/util/**",
                 "/images/**",
                 //extensions anywhere under static
                 "/*.css","/*.js","/*.mjs","/*.map","/*.png","/*.svg","/*.jpg","/*.ico"
             ).permitAll()
 
+            // Prometheus scrape + health; actuator only listens on management.server.address (localhost)
+            .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+
             // Auth pages / small APIs used pre-login
             .requestMatchers("/login", "/user/role").permitAll()
 
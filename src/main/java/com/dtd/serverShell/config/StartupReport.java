@@ -0,0 +1,34 @@
+package com.dtd.serverShell.config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs how long the process took to start serving and whether it ran with
+ * the AOT-processed context and a CDS archive (see the fast-start profile),
+ * so the two launch modes can be compared from the log.
+ */
+@Component
+public class StartupReport {
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(ApplicationReadyEvent event) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        String archive = runtime.getInputArguments().stream()
+                .filter(arg -> arg.startsWith("-XX:SharedArchiveFile="))
+                .map(arg -> arg.substring("-XX:SharedArchiveFile=".length()))
+                .findFirst()
+                .orElse("none");
+        long context = event.getTimeTaken() == null ? -1 : event.getTimeTaken().toMillis();
+        log.info("[STARTUP] Ready in {} ms since JVM start ({} ms in Spring), AOT {}, CDS archive {}",
+                runtime.getUptime(), context, AotDetector.useGeneratedArtifacts() ? "on" : "off", archive);
+    }
+}
@@ -0,0 +1,25 @@
+package com.dtd.serverShell.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.dtd.serverShell.relay.EmulatorRelayHandler;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final EmulatorRelayHandler emulatorRelay;
+
+    public WebSocketConfig(EmulatorRelayHandler emulatorRelay) {
+        this.emulatorRelay = emulatorRelay;
+    }
+
+    // same-origin only (default); the handler doubles as the auth/ownership check on the handshake
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(emulatorRelay, EmulatorRelayHandler.PATH).addInterceptors(emulatorRelay);
+    }
+}
@@ -1,6 +1,7 @@
 package com.dtd.serverShell.controller;
 
 import java.security.Principal;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -18,6 +19,10 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.dtd.serverShell.model.AppUser;
 import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.services.EmulatorAdmission;
+import com.dtd.serverShell.services.EmulatorReaper;
+import com.dtd.serverShell.services.EmulatorTelemetry;
+import com.dtd.serverShell.services.MediaCache;
 import com.dtd.serverShell.services.UserService;
 
 import passwordHasher.passwordHasher;
@@ -28,10 +33,20 @@ public class AdminController {
     private static final Logger log = LoggerFactory.getLogger(AdminController.class);
     private final UserService userService;
     private final AppUserRepository userRepository;
+    private final EmulatorReaper emulatorReaper;
+    private final EmulatorAdmission emulatorAdmission;
+    private final EmulatorTelemetry emulatorTelemetry;
+    private final MediaCache mediaCache;
     
-    public AdminController(UserService userService, AppUserRepository userRepository ) {
+    public AdminController(UserService userService, AppUserRepository userRepository, EmulatorReaper emulatorReaper,
+                           EmulatorAdmission emulatorAdmission, EmulatorTelemetry emulatorTelemetry,
+                           MediaCache mediaCache) {
         this.userService = userService;
         this.userRepository = userRepository;
+        this.emulatorReaper = emulatorReaper;
+        this.emulatorAdmission = emulatorAdmission;
+        this.emulatorTelemetry = emulatorTelemetry;
+        this.mediaCache = mediaCache;
     }
     
     @PostMapping("/add")
@@ -42,13 +57,41 @@ public class AdminController {
     
     @DeleteMapping("/remove/{username}")
     public ResponseEntity<?> removeUser(@PathVariable String username) {
-        Optional<AppUser> user = userRepository.findByUsername(username);
-        if (user.isEmpty()) {
+        // goes through UserService so cached views of this user are dropped with the document
+        if (!userService.removeUser(username)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found.");
         }
-
-        userRepository.delete(user.get());
         return ResponseEntity.ok("User deleted.");
     }
+
+    // running emulator sessions, idle times and what the idle reaper has stopped
+    @GetMapping("/emulator")
+    public ResponseEntity<Map<String, Object>> emulatorStatus() {
+        return ResponseEntity.ok(emulatorReaper.status());
+    }
+
+    // admission budget in use and launches waiting for it
+    @GetMapping("/emulator/admission")
+    public ResponseEntity<Map<String, Object>> emulatorAdmission() {
+        return ResponseEntity.ok(emulatorAdmission.status());
+    }
+
+    // cpu/memory/io per session from its container's cgroup: latest plus window average/peak
+    @GetMapping("/emulator/telemetry")
+    public ResponseEntity<Map<String, Object>> emulatorTelemetry() {
+        return ResponseEntity.ok(emulatorTelemetry.status());
+    }
+
+    @GetMapping("/emulator/telemetry/{sessionId}")
+    public ResponseEntity<List<EmulatorTelemetry.Sample>> emulatorTelemetry(@PathVariable String sessionId) {
+        List<EmulatorTelemetry.Sample> history = emulatorTelemetry.history(sessionId);
+        return history.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(history);
+    }
+
+    // hit ratio and occupancy of the local SSD cache; enabled=false when media.cache.dir is unset
+    @GetMapping("/media/cache")
+    public ResponseEntity<MediaCache.Stats> mediaCache() {
+        return ResponseEntity.ok(mediaCache.stats());
+    }
    
 }
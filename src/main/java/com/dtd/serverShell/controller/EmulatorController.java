@@ -2,8 +2,24 @@ package com.dtd.serverShell.controller;
 
 import com.dtd.serverShell.model.AppUser;
 import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.relay.EmulatorRelayHandler;
+import com.dtd.serverShell.relay.NoVncAssetRelay;
+import com.dtd.serverShell.services.EmulatorAdmission;
+import com.dtd.serverShell.services.EmulatorLaunchJob;
+import com.dtd.serverShell.services.EmulatorPool;
+import com.dtd.serverShell.services.EmulatorReaper;
+import com.dtd.serverShell.services.EmulatorService;
+import com.dtd.serverShell.services.EmulatorSession;
+import com.dtd.serverShell.services.EmulatorSessionRegistry;
+import com.dtd.serverShell.services.PortLeaseManager;
+import com.dtd.serverShell.services.RomIndex;
+import com.dtd.serverShell.services.SaveStore;
+import com.dtd.serverShell.services.TemplateProvisioner;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,328 +27,409 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.URL;
+import java.io.InputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/emulator")
 public class EmulatorController {
 
-    @Value("${host.ip}")
-    private String hostIP;
-    
     @Value("${rom.save.dir}")
     private String romSaveDir;
 
-    @Value("${pulse.dir}")
-    private String pulseDir;
-    
-    @Value("${pulse.cookie.path:}")
-    private String pulseCookieOverride;
-    
-    @Value("${retroarch.image}")
-    private String retroImage;
-    
     private static final Logger log = LoggerFactory.getLogger(EmulatorController.class);
     
-    private static final class UserPaths {   
-        public Path configPath;   
-        public Path savePath;     
-        public Path cookieDir;   
-    }
-    private static final class ContainerInfo {
-        public final String containerName;
-        public final Process process;
-        
-        public ContainerInfo(String containerName, Process process) {
-            this.containerName = containerName;
-            this.process = process;
-        }
-    }
-    private static final Map<String, ContainerInfo> activeContainers = new ConcurrentHashMap<>();
     private final Logger logger = LoggerFactory.getLogger(EmulatorController.class);
     private final AppUserRepository appUserRepository;
 
-    public EmulatorController(AppUserRepository appUserRepository, Environment env) {
+    // background launches: bounded so a click storm can't fork unlimited docker runs
+    private static final long FINISHED_JOB_TTL_MS = 5 * 60 * 1000L;
+    private static final long JOB_SWEEP_MS = 5000;
+    private final Map<String, EmulatorLaunchJob> launchJobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor launchExecutor;
+    // cancels launches whose page is gone (no SSE subscriber for emulator.launch.abandon-seconds)
+    private final ScheduledExecutorService jobSweeper;
+    private final long abandonMs;
+    private final EmulatorService emulatorService;
+    private final EmulatorPool emulatorPool;
+    private final PortLeaseManager portLeases;
+    private final EmulatorSessionRegistry sessions;
+    private final EmulatorReaper reaper;
+    private final TemplateProvisioner templates;
+    private final SaveStore saveStore;
+    private final EmulatorAdmission admission;
+    private final EmulatorRelayHandler relay;
+    private final NoVncAssetRelay vncAssets;
+    private final RomIndex romIndex;
+    private final MeterRegistry meters;
+
+    public EmulatorController(AppUserRepository appUserRepository, Environment env,
+                              EmulatorService emulatorService, EmulatorPool emulatorPool, PortLeaseManager portLeases, EmulatorSessionRegistry sessions, EmulatorReaper reaper,
+                              TemplateProvisioner templates, SaveStore saveStore,
+                              EmulatorAdmission admission, EmulatorRelayHandler relay, NoVncAssetRelay vncAssets,
+                              RomIndex romIndex, MeterRegistry meters,
+                              @Value("${emulator.launch.threads:4}") int launchThreads,
+                              @Value("${emulator.launch.abandon-seconds:30}") long abandonSeconds) {
         this.appUserRepository = appUserRepository;
+        this.emulatorService = emulatorService;
+        this.emulatorPool = emulatorPool;
+        this.portLeases = portLeases;
+        this.sessions = sessions;
+        this.reaper = reaper;
+        this.templates = templates;
+        this.saveStore = saveStore;
+        this.admission = admission;
+        this.relay = relay;
+        this.vncAssets = vncAssets;
+        this.romIndex = romIndex;
+        this.meters = meters;
+        AtomicInteger seq = new AtomicInteger();
+        this.launchExecutor = new ThreadPoolExecutor(launchThreads, launchThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16),
+                r -> {
+                    Thread t = new Thread(r, "emu-launch-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.abandonMs = abandonSeconds * 1000L;
+        this.jobSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "emu-launch-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        jobSweeper.scheduleWithFixedDelay(this::sweepJobs, JOB_SWEEP_MS, JOB_SWEEP_MS, TimeUnit.MILLISECONDS);
     }
 
-    //userDirs
-    private final UserPaths userPaths = new UserPaths();
+    @PreDestroy
+    public void shutdownLaunches() {
+        jobSweeper.shutdownNow();
+        launchExecutor.shutdownNow();
+    }
 
     private String simplifyCoreEmulator(String fullRom) {
-        return (fullRom.endsWith(".gb") || fullRom.endsWith(".gba")) ? "GBA" : "N64";
+        return EmulatorService.simplifyCoreEmulator(fullRom);
     }
 
     
     @PostMapping("/launch")
     public ResponseEntity<Map<String, String>>launchEmulator(@RequestParam String rom, Principal principal,HttpServletRequest romRequest) {
         if (principal == null) return errorResponse("Unauthorized access");
-        Map<String, String> error = new HashMap<>();
+        if (!EmulatorService.isLinux()) {
+          return errorResponse("Requires linux server");
+        }
+        // with a ROM dir only indexed ROMs are launched (the dir is what the container mounts);
+        // without one ROMs only exist in the image
+        if (romIndex.romDir().isPresent() && romIndex.find(rom).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown ROM"));
+        }
+
+        // admission may queue the launch; container start + readiness run in the background, progress goes out over SSE
+        purgeFinishedJobs();
+        EmulatorLaunchJob job = new EmulatorLaunchJob(UUID.randomUUID().toString(), principal.getName(), rom);
+        launchJobs.put(job.getId(), job);
         try {
-            
-            // only allow approved roms
-            if (!isLinux()) {
-              return errorResponse("Requires linux server");
+            job.hold(admission.submit(job.getUsername(), simplifyCoreEmulator(rom), new EmulatorAdmission.Waiter() {
+                @Override
+                public void position(int position) {
+                    job.queued(position);
+                }
+
+                @Override
+                public void admitted(EmulatorAdmission.Ticket ticket) {
+                    if (job.isCancelled()) {
+                        ticket.release();
+                        return;
+                    }
+                    try {
+                        launchExecutor.execute(() -> runLaunch(job, ticket));
+                    } catch (RejectedExecutionException e) {
+                        ticket.release();
+                        job.fail("Too many emulator launches in progress, try again shortly");
+                    }
+                }
+
+                @Override
+                public void rejected(String reason) {
+                    job.fail(reason);
+                }
+            }));
+        } catch (EmulatorAdmission.RejectedException e) {
+            launchJobs.remove(job.getId());
+            return errorResponse(e.getMessage());
+        }
+        return ResponseEntity.accepted().body(Map.of("jobId", job.getId()));
+    }
+
+    @GetMapping(path = "/launch/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> launchEvents(@PathVariable String jobId, Principal principal) {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        EmulatorLaunchJob job = launchJobs.get(jobId);
+        if (job == null || !job.getUsername().equals(principal.getName())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        SseEmitter emitter = new SseEmitter((emulatorService.getReadyTimeoutSeconds() + 30) * 1000L);
+        job.subscribe(emitter);
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(emitter);
+    }
+
+    // give up a launch: leaves the admission queue, or stops the container if it is already starting
+    @DeleteMapping("/launch/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancelLaunch(@PathVariable String jobId, Principal principal) {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        EmulatorLaunchJob job = launchJobs.get(jobId);
+        if (job == null || !job.getUsername().equals(principal.getName())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        if (!job.cancel("Cancelled")) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Launch already " + job.getState().name().toLowerCase(Locale.ROOT)));
+        }
+        log.info("[EMU LAUNCH] {} cancelled launch {}", job.getUsername(), jobId);
+        return ResponseEntity.ok(Map.of("cancelled", true));
+    }
+
+    private void runLaunch(EmulatorLaunchJob job, EmulatorAdmission.Ticket ticket) {
+        long start = System.nanoTime();
+        String core = simplifyCoreEmulator(job.getRom());
+        try {
+            if (job.isCancelled()) {
+                recordLaunch("launch", core, "cancelled", start);
+                return;
             }
+            Map<String, String> urls = startContainer(job);
+            if (job.ready(urls)) {
+                recordLaunch("launch", core, "ok", start);
+            } else {
+                // cancelled while the container came up: nobody is going to connect to it
+                recordLaunch("launch", core, "cancelled", start);
+                Optional<EmulatorSession> session = sessions.find(urls.get("sessionId"), job.getUsername());
+                if (session.isPresent()) emulatorService.stopContainer(session.get().containerName());
+            }
+        } catch (CancellationException e) {
+            recordLaunch("launch", core, "cancelled", start);
+        } catch (Exception e) {
+            recordLaunch("launch", core, "failed", start);
+            log.error("[INIT ERR] Failed to launch emulator for {}: {}", job.getUsername(), e.getMessage());
+            job.fail("[INIT ERR] Failed to launch emulator: " + e.getMessage());
+        } finally {
+            // from here on a started session counts through the registry
+            ticket.release();
+        }
+    }
+
+    private Map<String, String> startContainer(EmulatorLaunchJob job) throws Exception {
+            String rom = job.getRom();
 
             // user and core logic
-            String username = principal.getName();
+            String username = job.getUsername();
         	String core = simplifyCoreEmulator(rom);
-        	//set paths
+        	//set paths (per launch; nothing here is shared with other users' launches)
         	Path userRoot = Paths.get(romSaveDir, "users", username);
             Path configPath = userRoot.resolve("config/" + core);
             Path savePath = userRoot.resolve("save/" + core);
-            userPaths.configPath = configPath;
-            userPaths.savePath = savePath;
             
-            log.info("[INIT DIR] ROM Save Dir Root: " + userPaths.configPath);
-            log.info("[INIT DIR]  Username: " + userPaths.savePath);
+            long phaseStart = System.nanoTime();
+            job.progress("Preparing save directories…");
+            log.info("[INIT DIR] Config path: {}", configPath.toAbsolutePath());
+            log.info("[INIT DIR] save path: {}", savePath.toAbsolutePath());
             // pre-warm user directory if needed
-            initializeUserRetroarchIfMissing(username, rom);
-            log.info("[INIT DIR] Config path: " + userPaths.configPath.toAbsolutePath());
-            log.info("[INIT DIR] save path: " + userPaths.savePath.toAbsolutePath() );
-            //decide ports and bind them nice and close
-            int vncPort   = findFreePortInRange(33000, 33100);
-            int audioPort = vncPort + 1;
-            int gamepadPort = audioPort + 1;
-            
-            //audio setup
-            Path pulseSocketPath = Paths.get(pulseDir);
-            if (!Files.exists(pulseSocketPath)) {
-               return errorResponse("PulseAudio socket not found at " + pulseSocketPath + " (check host path and permissions)");
-            }
-            Path hostCookie = sourcePulseCookie();
-            if (!Files.isReadable(hostCookie)) {
-                return errorResponse("[INIT AUDIO ERR] cookie not readable at {}" + hostCookie);
-            }
-            
-            //chose core
-            String coreEmulator = (rom.endsWith(".gb") || rom.endsWith(".gba"))
-                    ? "mgba_libretro.so"
-                    : "mupen64plus_next_libretro.so";
-            
-            boolean useGamepad = coreEmulator.contains("mupen64plus_next");
-            
-            // startup commands   
-            List<String> cmd = new ArrayList<>(List.of(
-            	    "docker","run","--rm",
-            	    //directories
-            	    "-v", userPaths.configPath.toAbsolutePath() + ":/config",
-            	    "-v", userPaths.savePath.toAbsolutePath()   + ":/save",
-            	    //bind & mount ports
-            	    "--mount","type=bind,source=" + pulseSocketPath + ",target=/tmp/pulseaudio.socket,readonly",
-            	    "-p", vncPort + ":52300",
-            	    "-p", audioPort + ":8081",
-            	    // GPU
-            	    "--device","/dev/dri:/dev/dri",
-            	    "-v","/run/udev:/run/udev:ro",
-            	    "--group-add","993","--group-add","44","--group-add","996",
-            	    //so container can monitor live port (internal bound to 52300)
-            	    "-e","PULSE_SERVER=unix:/tmp/pulseaudio.socket",
-            	    //cookie is prewarmed in host dir
-            	    "-e","PULSE_COOKIE=/config/pulse/cookie",
-            	    //host audio config
-            	    "-e","PULSE_SINK=retro_null",
-            	    "-e","PULSE_SOURCE=retro_null.monitor",
-            	    //set base path (sanity)
-            	    "-e","HOME=/config","-e","XDG_CONFIG_HOME=/config"
-            	));
-
-            	// N64-only extras
-            	if (useGamepad) {
-            	  cmd.addAll(List.of(
-            	      "-p", gamepadPort + ":52400",
-            	      "-v", "/dev/input:/dev/input",
-            	      "--device", "/dev/uinput",
-            	      "--device-cgroup-rule","c 13:* rwm",
-            	      "--device-cgroup-rule","c 10:223 rwm",
-              	      "-e","LIBGL_ALWAYS_SOFTWARE=0",
-              	      "-e","MESA_LOADER_DRIVER_OVERRIDE=radeonsi",
-              	      "--device","/dev/tty0","--device","/dev/tty1","--device","/dev/tty7","--device","/dev/tty",
-              	      "--cap-add=SYS_TTY_CONFIG","--cap-add=SYS_ADMIN",
-              	      "--security-opt","seccomp=unconfined","--security-opt","apparmor=unconfined",
-            	      "-e", "ENABLE_WSGP=1"                      
-            	  ));
-            	} else {
-            	  cmd.addAll(List.of("-e","ENABLE_WSGP=0"));     
-            	}
-                 
-            Integer socketUid = extractUidFromSocketOwner(pulseSocketPath);
-            if (socketUid == null) {
-                return errorResponse("[PULSE AUDIO ERR] Prod audio requires /run/user/<uid>/pulse/native (got: " + pulseSocketPath + ")");
+            initializeUserRetroarchIfMissing(username, core, configPath, savePath);
+            phaseStart = recordLaunch("prepare", core, "ok", phaseStart);
+            if (job.isCancelled()) throw new CancellationException("Launch cancelled");
+
+            // set ROM: below the host ROM tree (mounted read-only) when there is one, else a path inside the image
+            Optional<Path> romDir = romIndex.romDir();
+            String romArg = romDir.isPresent() ? EmulatorService.ROM_CONTAINER_DIR + "/" + rom : rom;
+
+            // warm pool: an idle container gets copies of the user's dirs in its own slot and loads the ROM
+            if (emulatorPool.isEnabled()) {
+                job.progress("Claiming a ready emulator…");
+                Optional<EmulatorPool.Claimed> claimed = emulatorPool.claim(username, core, configPath, savePath, romArg);
+                phaseStart = recordLaunch("claim", core, claimed.isPresent() ? "ok" : "empty", phaseStart);
+                if (claimed.isPresent()) {
+                    return openSession(job, core, claimed.get().configPath(), claimed.get().savePath(),
+                            claimed.get().container());
+                }
             }
-                 
+
+            //decide ports and bind them nice and close
+            PortLeaseManager.PortLease ports = portLeases.acquire();
+            phaseStart = recordLaunch("ports", core, "ok", phaseStart);
             //name for later cleanup
-            String containerName = "emulator-" + username + "-" + vncPort;
-            cmd.addAll(List.of("--name", containerName));
-            // set ROM
-            cmd.addAll(List.of(retroImage, rom, coreEmulator));
-            //run command
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            pb.inheritIO();
-            System.out.println("Launching emulator: " + String.join(" ", cmd));
-            Process containerProcess = pb.start();
-
-            activeContainers.put(String.valueOf(vncPort), new ContainerInfo(containerName, containerProcess));
-            String serverIp = hostIP;
-            String vncUrl = "http://" + serverIp + ":" + vncPort + "/vnc.html?autoconnect=true&resize=scale&path=websockify";
-            String audioUrl = "ws://" + serverIp + ":" + audioPort + "/";
-            String gamepadUrl = "ws://" + serverIp + ":" + gamepadPort + "/";
+            String containerName = "emulator-" + username + "-" + ports.vncPort();
+
+            List<String> volumes = new ArrayList<>(List.of(
+                    configPath.toAbsolutePath() + ":/config",
+                    savePath.toAbsolutePath()   + ":/save"));
+            romDir.ifPresent(dir -> volumes.add(dir + ":" + EmulatorService.ROM_CONTAINER_DIR + ":ro"));
+
+            job.progress("Starting emulator container…");
+            EmulatorService.StartedContainer container = emulatorService.start(containerName, core, ports,
+                    volumes, List.of(romArg, EmulatorService.coreLibrary(core)));
+            phaseStart = recordLaunch("start", core, "ok", phaseStart);
             
+            job.progress("Waiting for emulator to come up…");
             log.info("[CONTAINER WAIT] Waiting for container to be ready...");
-            if (waitForContainerReady(vncUrl, 90)) {
+            boolean ready = emulatorService.awaitReady(container);
+            recordLaunch("ready", core, ready ? "ok" : "timeout", phaseStart);
+            if (ready) {
                 log.info("[CONTAINER WAIT] Container ready, returning URLs to frontend");
+            } else if (!container.handle().isAlive()) {
+                throw new IllegalStateException("Emulator container exited during startup (code " + container.handle().exitCode() + ")");
             } else {
-                log.warn("[CONTAINER WAIT] Container not ready after 90s, returning URLs anyway");
+                log.warn("[CONTAINER WAIT] Container not ready after {}s, returning URLs anyway", emulatorService.getReadyTimeoutSeconds());
             }
             
-            Map<String, String> response = new HashMap<>();
-            response.put("vncUrl", vncUrl);
-            response.put("audioUrl", audioUrl);
-            response.put("gamepadUrl", gamepadUrl);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return errorResponse("[INIT ERR] Failed to launch emulator: " + e.getMessage());
+            return openSession(job, core, configPath, savePath, container);
+    }
+
+    // emulator.launch.phase{phase,core,result}; launches are rare, so meters are looked up per use.
+    // Returns now, the start of the next phase.
+    private long recordLaunch(String phase, String core, String result, long startNanos) {
+        long now = System.nanoTime();
+        meters.timer("emulator.launch.phase", "phase", phase, "core", core, "result", result)
+              .record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    private Map<String, String> openSession(EmulatorLaunchJob job, String core, Path configPath, Path savePath,
+                                            EmulatorService.StartedContainer container) {
+        EmulatorSession session = new EmulatorSession(UUID.randomUUID().toString(), job.getUsername(), core,
+                job.getRom(), configPath, savePath, container, System.currentTimeMillis());
+        sessions.register(session);
+
+        Map<String, String> response = emulatorService.urls(container);
+        response.put("sessionId", session.id());
+        // audio/gamepad (and noVNC's websocket) through /emulator/ws instead of the container's ports
+        if (relay.isEnabled()) response.putAll(relay.urls(session));
+        return response;
+    }
+    
+    private void sweepJobs() {
+        try {
+            long now = System.currentTimeMillis();
+            for (EmulatorLaunchJob job : launchJobs.values()) {
+                long unwatched = job.unwatchedMs(now);
+                if (abandonMs > 0 && unwatched > abandonMs && job.cancel("Nobody is waiting for this launch")) {
+                    log.info("[EMU LAUNCH] Cancelled launch {} of {}: no listener for {}s", job.getId(), job.getUsername(),
+                            unwatched / 1000);
+                }
+            }
+            purgeFinishedJobs();
+        } catch (RuntimeException e) {
+            log.warn("[EMU LAUNCH] Job sweep failed: {}", e.getMessage());
         }
     }
+
+    // finished jobs only need to outlive a late EventSource reconnect
+    private void purgeFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - FINISHED_JOB_TTL_MS;
+        launchJobs.values().removeIf(j -> j.getState() != EmulatorLaunchJob.State.RUNNING && j.getFinishedAt() < cutoff);
+    }
     
+    // ROM catalog: path to launch, core, checksums and DAT title where known
+    @GetMapping("/roms")
+    public ResponseEntity<List<RomIndex.RomEntry>> listRoms(WebRequest request) {
+        String etag = "\"" + romIndex.getLastScanAt() + "\"";
+        if (request.checkNotModified(etag)) return null;
+        List<RomIndex.RomEntry> roms = romIndex.all().stream()
+                .sorted(Comparator.comparing((RomIndex.RomEntry r) -> r.title() != null ? r.title() : r.rom(),
+                        String.CASE_INSENSITIVE_ORDER))
+                .toList();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(etag).body(roms);
+    }
+
+    // the caller's running sessions and how long each has been idle
+    @GetMapping("/sessions")
+    public ResponseEntity<List<Map<String, Object>>> mySessions(Principal principal) {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> mine = sessions.all().stream()
+                .filter(s -> s.isOwnedBy(principal.getName()))
+                .map(s -> reaper.describe(s, now))
+                .toList();
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(mine);
+    }
+
     @PostMapping("/cleanup")
-    public ResponseEntity<?> cleanup(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> cleanup(@RequestBody Map<String, String> request, Principal principal) {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        // sessionId from the launch response; the bare port is still accepted from older pages
+        String sessionId = request.get("sessionId");
         String port = request.get("port");
-        
-        if (port == null) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Port required"));
+        if (sessionId == null && port == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId required"));
         }
+
+        Optional<EmulatorSession> session = sessionId != null
+                ? sessions.find(sessionId, principal.getName())
+                : findByPort(port, principal.getName());
         
         try {
-            ContainerInfo containerInfo = activeContainers.get(port);
-            if (containerInfo != null) {
+            if (session.isPresent()) {
+                EmulatorSession s = session.get();
                 // Stop the Docker container
-                ProcessBuilder stopPb = new ProcessBuilder("docker", "stop", containerInfo.containerName);
-                Process stopProcess = stopPb.start();
-                int exitCode = stopProcess.waitFor();
-                
-                if (exitCode == 0) {
-                    logger.info("Successfully stopped container {} for port {}", containerInfo.containerName, port);
-                    activeContainers.remove(port);
+                if (emulatorService.stopContainer(s.containerName())) {
+                    logger.info("Successfully stopped container {} for session {}", s.containerName(), s.id());
+                    sessions.remove(s);
                     return ResponseEntity.ok(Map.of("success", true));
                 } else {
                     return ResponseEntity.status(500).body(Map.of("error", "Failed to stop container"));
                 }
             } else {
-                logger.warn("No container found for port {}", port);
+                logger.warn("No container found for session {} / port {}", sessionId, port);
                 return ResponseEntity.ok(Map.of("success", false, "message", "Container not found"));
             }
         } catch (Exception e) {
-            logger.error("Cleanup error for port " + port, e);
+            logger.error("Cleanup error for session {} / port {}", sessionId, port, e);
             return ResponseEntity.status(500).body(Map.of("error", "Cleanup failed"));
         }
     }
-    
-    //wait for container before giving frontend return
-    private boolean waitForContainerReady(String vncUrl, int timeoutSeconds) {
-        long deadline = System.currentTimeMillis() + (timeoutSeconds * 1000L);
-        int attempts = 0;
-        
-        while (System.currentTimeMillis() < deadline) {
-            attempts++;
-            try {
-                // Try to connect to the VNC URL
-                URL url = new URL(vncUrl);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("HEAD");
-                conn.setConnectTimeout(5000);
-                conn.setReadTimeout(5000);
-                
-                int responseCode = conn.getResponseCode();
-                if (responseCode == 200) {
-                    log.info("[CONTAINER WAIT] Container ready after {} attempts ({} seconds)", 
-                        attempts, (System.currentTimeMillis() - (deadline - timeoutSeconds * 1000L)) / 1000);
-                    return true;
-                }
-                
-            } catch (Exception e) {
-                // Expected while container is booting, just continue
-            }
-            
-            // Progress logging every 10 seconds
-            if (attempts % 20 == 0) { // 20 attempts * 500ms = 10 seconds
-                long elapsed = (System.currentTimeMillis() - (deadline - timeoutSeconds * 1000L)) / 1000;
-                log.info("[CONTAINER WAIT] Still waiting for container... ({}s elapsed)", elapsed);
-            }
-            
-            try {
-                Thread.sleep(500); // Check every 500ms
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return false;
-            }
-        }
-        
-        return false;
-    }
-    private static Integer extractUidFromSocketOwner(Path pulseSocketPath) {
+
+    private Optional<EmulatorSession> findByPort(String port, String username) {
         try {
-            Object uid = Files.getAttribute(pulseSocketPath, "unix:uid");
-            if (uid instanceof Number) return ((Number) uid).intValue();
-        } catch (Exception ignore) {}
-        // fallback to path-based extraction if attribute view unsupported
-        return extractUidFromPulsePath(pulseSocketPath);
-    }
-    
-    private static Integer extractUidFromPulsePath(Path pulseSocketPath) {
-        java.util.regex.Matcher m = java.util.regex.Pattern
-            .compile("/run/user/(\\d+)/pulse/native")
-            .matcher(pulseSocketPath.toString());
-        return m.find() ? Integer.valueOf(m.group(1)) : null;
-    }
-    
-    public static int findFreePortInRange(int minPort, int maxPort) {
-        for (int port = minPort; port <= maxPort; port++) {
-            try (ServerSocket socket = new ServerSocket()) {
-                socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
-                return port; // try-with-resources closes the socket right here
-            } catch (IOException ignored) {
-                // Port in use, try next
-            }
+            return sessions.findByPort(Integer.parseInt(port), username);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
         }
-        throw new IllegalStateException("No available port in range " + minPort + "-" + maxPort);
     }
-
+    
     //linux user setup
     //private static String hostUid() { String s = runAndTrim("id","-u"); return s.isEmpty() ? "1000" : s; }
     private static String hostGid() { String s = runAndTrim("id","-g"); return s.isEmpty() ? "1000" : s; }
-    private static boolean isLinux() {
-        String os = System.getProperty("os.name", "").toLowerCase();
-        return os.contains("linux");
-    }
-  
-    private Path sourcePulseCookie() throws IOException {
-        Path canonical = Paths.get(pulseCookieOverride, "cookie").toAbsolutePath().normalize();
-        if (Files.isRegularFile(canonical) && Files.isReadable(canonical)) return canonical;
-        throw new IOException("[PULSE COOKIE ERR] No readable cookie found in store=" + canonical);
-    }
-    
     private ResponseEntity<Map<String, String>> errorResponse(String message) {
         Map<String, String> error = new HashMap<>();
         log.error(message);
@@ -340,54 +437,13 @@ public class EmulatorController {
         return ResponseEntity.badRequest().body(error);
     }
     
-    //prewarm logic
-    private void initializeUserRetroarchIfMissing(String username, String rom) throws IOException {
-
-        Path configPath = userPaths.configPath;
-        Path savePath = userPaths.savePath;
-
-        boolean needsInit = !Files.exists(configPath) || !Files.exists(savePath);
-
-        if (needsInit) {
-            logger.info("Initializing config/save for new user '{}'", username);
-
-            // Copy default template files
-            Path defaultRoot = Paths.get(romSaveDir, "default");
-            String core = simplifyCoreEmulator(rom);
-            Path defaultConfig = defaultRoot.resolve("config/" + core);
-            Path defaultsave  = defaultRoot.resolve("save/" + core);
-
-            Files.walk(defaultConfig).forEach(source -> {
-                try {
-                    Path relative = defaultConfig.relativize(source);
-                    Path destination = configPath.resolve(relative);
-                    if (Files.isDirectory(source)) {
-                        Files.createDirectories(destination);
-                    } else {
-                        Files.createDirectories(destination.getParent());
-                        Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                } catch (IOException e) {
-                    logger.info("Failed to copy default config file '{}'", source, e);
-                }
-            });
-
-            Files.walk(defaultsave).forEach(source -> {
-                try {
-                    Path relative = defaultsave.relativize(source);
-                    Path destination = savePath.resolve(relative);
-                    if (Files.isDirectory(source)) {
-                        Files.createDirectories(destination);
-                    } else {
-                        Files.createDirectories(destination.getParent());
-                        Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                } catch (IOException e) {
-                    logger.info("Failed to copy default save file '{}'", source, e);
-                }
-            });
-            logger.info(" Default config/save initialized for user '{}'", username);
-        }
+    //prewarm logic: default/{config,save}/<core> -> the user's dirs (own clones/copies, incremental on template changes)
+    private void initializeUserRetroarchIfMissing(String username, String core, Path configPath, Path savePath) throws IOException {
+        Path defaultRoot = Paths.get(romSaveDir, "default");
+        Path stateDir = Paths.get(romSaveDir, "users", username, ".templates");
+
+        templates.provision(defaultRoot.resolve("config/" + core), configPath, stateDir.resolve("config-" + core + ".properties"));
+        templates.provision(defaultRoot.resolve("save/" + core), savePath, stateDir.resolve("save-" + core + ".properties"));
     }
     
     //helpers for permissions errors
@@ -402,43 +458,82 @@ public class EmulatorController {
         } catch (Exception e) { return ""; }
     }
     
-    @PostMapping("/save/")
+    // with the relay on, noVNC's page and scripts come from the session's container through here
+    @RequestMapping(path = "/vnc/{sessionId}/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void vncAsset(@PathVariable String sessionId, HttpServletRequest request, HttpServletResponse response,
+                         Principal principal) throws IOException {
+        Optional<EmulatorSession> session = principal == null || !relay.isEnabled()
+                ? Optional.empty() : sessions.find(sessionId, principal.getName());
+        if (session.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String prefix = request.getContextPath() + "/emulator/vnc/" + sessionId + "/";
+        String uri = request.getRequestURI();
+        vncAssets.forward(session.get(), uri.startsWith(prefix) ? uri.substring(prefix.length()) : "", request, response);
+    }
+
+    // Saves are versioned in SaveStore; the session's save dir always holds the current one for RetroArch.
+    // To send it compressed, gzip the file part and give it type application/gzip (or add encoding=gzip).
+    // The request's Content-Encoding says nothing about one part, so it isn't consulted.
+    @PostMapping("/save/{romFileName:.+}")
     public ResponseEntity<?> uploadSave(@PathVariable String romFileName,
+                                        @RequestParam("session") String sessionId,
                                         @RequestParam("file") MultipartFile file,
+                                        @RequestParam(value = "encoding", required = false) String encoding,
                                         Principal principal) throws IOException {
         if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
         String username = principal.getName();
-        Path userSaveDir = userPaths.savePath;
-      
-        //Sanitize
-        Path savePath = userSaveDir.resolve(romFileName).normalize();
-     
-        if (!savePath.startsWith(userSaveDir)) {
+        Optional<EmulatorSession> session = sessions.find(sessionId, username);
+        if (session.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No such emulator session");
+        sessions.touch(sessionId);
+        Path savePath = resolveSave(session.get(), romFileName);
+        if (savePath == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Invalid save path");
         }
 
-        Files.createDirectories(savePath.getParent());
-        Files.copy(file.getInputStream(), savePath, StandardCopyOption.REPLACE_EXISTING);
+        String partType = file.getContentType();
+        boolean gzipped = "gzip".equalsIgnoreCase(encoding)
+                || "application/gzip".equalsIgnoreCase(partType) || "application/x-gzip".equalsIgnoreCase(partType);
+        SaveStore.PutResult result;
+        try (InputStream in = gzipped ? new GZIPInputStream(file.getInputStream()) : file.getInputStream()) {
+            result = saveStore.put(username, session.get().core(), romFileName, in);
+        }
+        saveStore.restore(result.version(), savePath);
 
-        logger.info("Uploaded save for user {}: {}", username, savePath);
-        return ResponseEntity.ok("Save uploaded");
+        logger.info("Uploaded save for user {}: {} (v{}, {} new chunk(s))", username, savePath,
+                result.version().version(), result.newChunks());
+        return ResponseEntity.ok(Map.of("message", "Save uploaded",
+                "version", result.version().version(),
+                "newChunks", result.newChunks(),
+                "newBytes", result.newBytes()));
     }
 
+    // current save (or ?version=N from history); gzip-encoded when the client accepts it
     @GetMapping("/save/{romFileName:.+}")
-    public ResponseEntity<Resource> downloadSave(@PathVariable String romFileName,
-                                                 Principal principal) throws IOException {
+    public ResponseEntity<StreamingResponseBody> downloadSave(@PathVariable String romFileName,
+                                                              @RequestParam("session") String sessionId,
+                                                              @RequestParam(value = "version", required = false) Integer version,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                              Principal principal) throws IOException {
         if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
         String username = principal.getName();
-        Path userSaveDir = userPaths.savePath;
-      
-        //Sanitize
-        Path savePath = userSaveDir.resolve(romFileName).normalize();
-
-        if (!savePath.startsWith(userSaveDir)) {
+        Optional<EmulatorSession> session = sessions.find(sessionId, username);
+        if (session.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        sessions.touch(sessionId);
+        Path savePath = resolveSave(session.get(), romFileName);
+        if (savePath == null) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        if (version != null) {
+            Optional<SaveStore.SaveVersion> v = saveStore.version(username, session.get().core(), romFileName, version);
+            if (v.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            return saveResponse(romFileName, gzip, () -> saveStore.open(v.get()));
+        }
 
         if (!Files.exists(savePath)) {
             logger.info("Save not found for user {}, checking default", username);
@@ -446,19 +541,93 @@ public class EmulatorController {
             Path fallbackPath = Paths.get(romSaveDir, "default", "save", romFileName).normalize();
             if (Files.exists(fallbackPath)) {
                 logger.info(" Serving default save: {}", fallbackPath);
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + romFileName + "\"")
-                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                        .body(new org.springframework.core.io.PathResource(fallbackPath));
+                return saveResponse(romFileName, gzip, () -> Files.newInputStream(fallbackPath));
             }
 
             logger.info("No default save found for {}", romFileName);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
-        return ResponseEntity.ok()
+        // RetroArch writes the file directly; record it before handing it out
+        saveStore.snapshot(username, session.get().core(), savePath);
+        return saveResponse(romFileName, gzip, () -> Files.newInputStream(savePath));
+    }
+
+    @GetMapping("/save/{romFileName:.+}/versions")
+    public ResponseEntity<?> saveVersions(@PathVariable String romFileName,
+                                          @RequestParam("session") String sessionId,
+                                          Principal principal) throws IOException {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        Optional<EmulatorSession> session = sessions.find(sessionId, principal.getName());
+        if (session.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        if (resolveSave(session.get(), romFileName) == null) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+
+        List<Map<String, Object>> versions = saveStore.versions(principal.getName(), session.get().core(), romFileName).stream()
+                .map(v -> Map.<String, Object>of("version", v.version(), "createdAt", v.createdAt(),
+                        "size", v.size(), "sha256", v.sha256()))
+                .toList();
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(versions);
+    }
+
+    // put an older version back as the current save (recorded as a new version, so it can be undone)
+    @PostMapping("/save/{romFileName:.+}/rollback")
+    public ResponseEntity<?> rollbackSave(@PathVariable String romFileName,
+                                          @RequestParam("session") String sessionId,
+                                          @RequestParam("version") int version,
+                                          Principal principal) throws IOException {
+        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        String username = principal.getName();
+        Optional<EmulatorSession> session = sessions.find(sessionId, username);
+        if (session.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        Path savePath = resolveSave(session.get(), romFileName);
+        if (savePath == null) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+
+        Optional<SaveStore.SaveVersion> v = saveStore.version(username, session.get().core(), romFileName, version);
+        if (v.isEmpty()) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "No such version"));
+
+        // keep what's there now in history before overwriting it
+        saveStore.snapshot(username, session.get().core(), savePath);
+        saveStore.restore(v.get(), savePath);
+        Optional<SaveStore.PutResult> current = saveStore.snapshot(username, session.get().core(), savePath);
+
+        logger.info("Rolled back save {} for user {} to v{}", romFileName, username, version);
+        return ResponseEntity.ok(Map.of("restored", version,
+                "version", current.map(r -> r.version().version()).orElse(version)));
+    }
+
+    //Sanitize: a plain file name inside the session's save dir, or null
+    private static Path resolveSave(EmulatorSession session, String romFileName) {
+        Path userSaveDir = session.savePath();
+        Path savePath = userSaveDir.resolve(romFileName).normalize();
+        if (!savePath.startsWith(userSaveDir) || !savePath.getParent().equals(userSaveDir.normalize())
+                || romFileName.startsWith(".")) {
+            return null;
+        }
+        return savePath;
+    }
+
+    private interface SaveSource {
+        InputStream open() throws IOException;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> saveResponse(String romFileName, boolean gzip, SaveSource source) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + romFileName + "\"")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new org.springframework.core.io.PathResource(savePath));
-    } 
-}
\ No newline at end of file
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) ok.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return ok.body(out -> {
+            try (InputStream in = source.open()) {
+                if (gzip) {
+                    GZIPOutputStream zip = new GZIPOutputStream(out, 64 * 1024);
+                    in.transferTo(zip);
+                    zip.finish();
+                } else {
+                    in.transferTo(out);
+                }
+            }
+        });
+    }
+}
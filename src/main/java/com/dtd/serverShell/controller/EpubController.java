@@ -2,7 +2,6 @@ package com.dtd.serverShell.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
@@ -23,21 +22,27 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.dtd.serverShell.services.MediaCache;
+import com.dtd.serverShell.services.MediaStore;
+
 @RestController
 @RequestMapping("/epub")
 
 public class EpubController {
     
-    @Value("${media.dir}")
-    private String mediaDir;
-    
     private final Logger log = LoggerFactory.getLogger(EpubController.class);
 
+    private final MediaStore mediaStore;
+    private final MediaCache mediaCache;
+
+    public EpubController(MediaStore mediaStore, MediaCache mediaCache) {
+        this.mediaStore = mediaStore;
+        this.mediaCache = mediaCache;
+    }
 
 
     @GetMapping("/download")
@@ -57,25 +62,26 @@ public class EpubController {
         }
 
         // Path traversal protection
-        Path mediaRoot = Paths.get(mediaDir).toAbsolutePath().normalize();
-        Path resolved = mediaRoot.resolve(file).normalize();
-        if (!resolved.startsWith(mediaRoot)) {
+        Path resolved = mediaStore.resolve(file);
+        if (resolved == null) {
             log.warn("Path traversal attempt: {}", file);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
 
         // Check file exists
-        if (!Files.exists(resolved)) {
+        if (!mediaStore.isFile(resolved)) {
             return ResponseEntity.notFound().build();
         }
 
         try {
-            long fileLength = Files.size(resolved);
+            long fileLength = mediaStore.size(resolved);
+            // local SSD copy when there is one, same bytes
+            Path readFrom = mediaCache.local(resolved);
 
             // If no range header, serve full file
             if (rangeHeader == null) {
-                log.info("No Range header, serving full EPUB: {} ({} bytes)", file, fileLength);
-                InputStreamResource fullResource = new InputStreamResource(Files.newInputStream(resolved));
+                log.debug("No Range header, serving full EPUB: {} ({} bytes)", file, fileLength);
+                InputStreamResource fullResource = new InputStreamResource(Files.newInputStream(readFrom));
                 return ResponseEntity.ok()
                         .header(HttpHeaders.ACCEPT_RANGES, "bytes")
                         .contentLength(fileLength)
@@ -90,9 +96,9 @@ public class EpubController {
                 long end = httpRange.getRangeEnd(fileLength);
                 long rangeLength = end - start + 1;
 
-                log.info("Range header: {} — serving bytes {} to {} ({} bytes)", rangeHeader, start, end, rangeLength);
+                log.debug("Range header: {} — serving bytes {} to {} ({} bytes)", rangeHeader, start, end, rangeLength);
 
-                InputStream inputStream = Files.newInputStream(resolved);
+                InputStream inputStream = Files.newInputStream(readFrom);
                 if (inputStream.skip(start) != start) {
                     log.warn("Unable to skip to requested start position in file");
                     inputStream.close();
@@ -111,7 +117,7 @@ public class EpubController {
             } catch (Exception e) {
                 log.error("Invalid Range header: {}", rangeHeader, e);
                 // Fall back to full file on range parsing errors
-                InputStreamResource resource = new InputStreamResource(Files.newInputStream(resolved));
+                InputStreamResource resource = new InputStreamResource(Files.newInputStream(readFrom));
                 return ResponseEntity.ok()
                         .header(HttpHeaders.ACCEPT_RANGES, "bytes")
                         .contentLength(fileLength)
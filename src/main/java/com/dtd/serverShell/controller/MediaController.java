@@ -2,11 +2,9 @@
 package com.dtd.serverShell.controller;
 
 import java.io.IOException;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -16,7 +14,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
@@ -40,7 +38,10 @@ import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.dtd.serverShell.config.allowedMediaType;
+import com.dtd.serverShell.security.VodTokenService;
+import com.dtd.serverShell.services.MediaCache;
 import com.dtd.serverShell.services.MediaService;
+import com.dtd.serverShell.services.MediaStore;
 import com.dtd.serverShell.services.UserService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -49,20 +50,25 @@ import jakarta.servlet.http.HttpServletRequest;
 @RequestMapping("/media")
 public class MediaController {
      
-    @Value("${media.dir}")
-    private String mediaDir;
-    
     private static final Logger log = LoggerFactory.getLogger(MediaController.class);
     private final MediaService mediaService;
+    private final MediaStore mediaStore;
+    private final MediaCache mediaCache;
     private final allowedMediaType allowedmediaType;
     private final AntPathMatcher pathMatcher = new AntPathMatcher(); // Used for pattern matching URI paths
     private final UserService userProfileService;
+    private final VodTokenService vodTokens;
     private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
     
-    public MediaController(MediaService mediaService, UserService userProfileService, allowedMediaType allowedmediaType) {
+    public MediaController(MediaService mediaService, MediaStore mediaStore, MediaCache mediaCache,
+                           UserService userProfileService, allowedMediaType allowedmediaType,
+                           VodTokenService vodTokens) {
         this.mediaService = mediaService;
+        this.mediaStore = mediaStore;
+        this.mediaCache = mediaCache;
         this.userProfileService = userProfileService;
         this.allowedmediaType = allowedmediaType;
+        this.vodTokens = vodTokens;
     }
     
     static final class FavoriteRequest {
@@ -141,14 +147,16 @@ public class MediaController {
 
             // Build a URL to our static-file passthrough below
             // We’ll serve via /media/vod/fs/** which maps inside mediaDir
-            Path mediaRoot = Paths.get(mediaDir).toAbsolutePath().normalize();
-            String remainder = mediaRoot.relativize(manifest).toString().replace('\\', '/');
+            String remainder = mediaStore.relativize(manifest);
 
-            String url = ServletUriComponentsBuilder
+            // Segments are authorized by a token scoped to the manifest's folder (VodTokenFilter),
+            // not by the session; the manifest we serve carries it onto every segment URI
+            String token = vodTokens.issue(mediaStore.relativize(manifest.getParent()));
+            String url = VodTokenService.withToken(ServletUriComponentsBuilder
                     .fromCurrentContextPath()
                     .path("/media/vod/fs/")
                     .path(remainder)                    // e.g. Movies/Files/index.m3u8
-                    .toUriString();
+                    .toUriString(), token);
 
             String folderRel;
             if (remainder.endsWith("/index.m3u8")) {
@@ -160,7 +168,7 @@ public class MediaController {
                 if (!folderRel.isEmpty() && folderRel.contains("/") && !folderRel.equals(remainder)) {
                     // ok
                 } else {
-                    folderRel = mediaRoot.relativize(manifest.getParent()).toString().replace('\\', '/');
+                    folderRel = mediaStore.relativize(manifest.getParent());
                 }
             }
             
@@ -176,7 +184,7 @@ public class MediaController {
                 }
             }
             
-            log.info("[VOD] Resolved manifest: {} -> {}", manifest, url);
+            log.debug("[VOD] Resolved manifest: {} -> {}", manifest, url);
             return ResponseEntity.ok(Map.of("m3u8", url));
         } catch (IOException e) {
             log.error("[VOD] {}", e.getMessage());
@@ -184,19 +192,16 @@ public class MediaController {
         }
     }
     
+    // token already checked by VodTokenFilter
     @GetMapping("/vod/fs/**")
-    public ResponseEntity<FileSystemResource> serveVodAsset(HttpServletRequest req) {
+    public ResponseEntity<Resource> serveVodAsset(HttpServletRequest req) {
         try {
             String full    = (String) req.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
             String pattern = (String) req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
             String tail    = PATH_MATCHER.extractPathWithinPattern(pattern, full);
 
-            String decodedTail = URLDecoder.decode(tail, StandardCharsets.UTF_8);
-            
-            Path mediaRoot = Paths.get(mediaDir).toAbsolutePath().normalize();
-            Path file      = mediaRoot.resolve(decodedTail).normalize();
-
-            if (!file.startsWith(mediaRoot) || !Files.isRegularFile(file)) {
+            Path file = mediaStore.resolveEncoded(tail);
+            if (file == null || !mediaStore.isFile(file)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
@@ -217,7 +222,17 @@ public class MediaController {
                 type = MediaType.APPLICATION_OCTET_STREAM;
             }
 
-            FileSystemResource resource = new FileSystemResource(file.toFile());
+            // local SSD copy when there is one (MediaCache), else media.dir
+            Path readFrom = mediaCache.local(file);
+            Resource resource;
+            if (name.endsWith(".m3u8")) {
+                // pass this request's token on to the segments/variants the manifest lists
+                String manifest = Files.readString(readFrom, StandardCharsets.UTF_8);
+                String signed = VodTokenService.signManifest(manifest, req.getParameter(VodTokenService.PARAM));
+                resource = new ByteArrayResource(signed.getBytes(StandardCharsets.UTF_8));
+            } else {
+                resource = new FileSystemResource(readFrom.toFile());
+            }
             return ResponseEntity.ok()
                     .contentType(type)
                     .cacheControl(CacheControl.noCache()) // VOD index often updates during encode; safe default
@@ -232,26 +247,19 @@ public class MediaController {
     @GetMapping("/subs")
     public ResponseEntity<List<Map<String, String>>> getSubtitles(@RequestParam("path") String dirPath) {
         try {
-            // normalize incoming path to be relative to mediaRoot
-            String decodedDirPath = dirPath;
-            if (decodedDirPath.startsWith("/")) {                    
-                decodedDirPath = decodedDirPath.substring(1);        
-            }
-
-            Path mediaRoot = Paths.get(mediaDir).toAbsolutePath().normalize();
-            Path directory = mediaRoot.resolve(decodedDirPath).normalize();  
-
-            if (!directory.startsWith(mediaRoot) || !Files.isDirectory(directory)) {
+            Path directory = mediaStore.resolve(dirPath);
+            if (directory == null || !mediaStore.isDirectory(directory)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
             List<Map<String, String>> subtitleTracks = new ArrayList<>();
+            String token = vodTokens.issue(mediaStore.relativize(directory));
 
             //ensure the directory stream is closed
             try (java.util.stream.Stream<Path> stream = Files.list(directory)) {  
                 stream
-                    .filter(Files::isRegularFile)
                     .filter(file -> file.getFileName().toString().toLowerCase().endsWith(".vtt"))
+                    .filter(mediaStore::isFile)
                     .forEach(vttFile -> {
                         String fileName = vttFile.getFileName().toString();
                         String baseName = fileName.substring(0, fileName.length() - 4); // Remove .vtt
@@ -282,12 +290,12 @@ public class MediaController {
                         }
 
                         // Keep using /media/vod/fs/** passthrough
-                        String relativePath = mediaRoot.relativize(vttFile).toString().replace('\\', '/');
-                        String subtitleUrl = ServletUriComponentsBuilder
+                        String relativePath = mediaStore.relativize(vttFile);
+                        String subtitleUrl = VodTokenService.withToken(ServletUriComponentsBuilder
                                 .fromCurrentContextPath()
                                 .path("/media/vod/fs/")
                                 .path(relativePath)
-                                .toUriString();
+                                .toUriString(), token);
 
                         Map<String, String> track = new HashMap<>();
                         track.put("src", subtitleUrl);
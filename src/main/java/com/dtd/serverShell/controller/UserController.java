@@ -2,6 +2,7 @@ package com.dtd.serverShell.controller;
 
 import java.security.Principal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -16,7 +17,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.dtd.serverShell.model.AppUser;
+import com.dtd.serverShell.model.UserRoleView;
 import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.services.UserProfileCache;
 import com.dtd.serverShell.services.UserService;
 import passwordHasher.passwordHasher;
 @RestController
@@ -25,11 +28,13 @@ public class UserController {
 
     private final UserService userService;
     private final AppUserRepository userRepository;
+    private final UserProfileCache profileCache;
     private static final Logger log = LoggerFactory.getLogger(UserController.class);
     
-    public UserController(UserService userService, AppUserRepository userRepository ) {
+    public UserController(UserService userService, AppUserRepository userRepository, UserProfileCache profileCache) {
         this.userService = userService;
         this.userRepository = userRepository;
+        this.profileCache = profileCache;
     }
     
     @PostMapping("/password")
@@ -60,13 +65,13 @@ public class UserController {
     public ResponseEntity<Map<String, Object>> getDashboard(Principal principal) {
         if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
-        return userRepository.findByUsername(principal.getName()).map(user -> {
+        return profileCache.dashboard(principal.getName()).map(user -> {
             Map<String, Object> dashboard = new HashMap<>();
 
         // Only per-category lists for the UI
-        dashboard.put("recentMovies", user.getRecentMovies());
-        dashboard.put("recentMusic",  user.getRecentMusic());
-        dashboard.put("recentTV",     user.getRecentTV());
+        dashboard.put("recentMovies", orEmpty(user.getRecentMovies()));
+        dashboard.put("recentMusic",  orEmpty(user.getRecentMusic()));
+        dashboard.put("recentTV",     orEmpty(user.getRecentTV()));
 
         // not using currently
         //dashboard.put("recentRomSaves", user.getRecentRomSaves());
@@ -77,15 +82,20 @@ public class UserController {
     
     @GetMapping("/role")
     public ResponseEntity<?> getCurrentUser(Principal principal) {
-        Optional<AppUser> userOpt = userRepository.findByUsername(principal.getName());
+        Optional<UserRoleView> userOpt = profileCache.role(principal.getName());
         if (userOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not found");
         }
 
-        AppUser user = userOpt.get();
+        UserRoleView user = userOpt.get();
         return ResponseEntity.ok(Map.of("username", user.getUsername(), "role", user.getRole()));
     }
     
+    // projections leave absent arrays null; the UI expects []
+    private static List<String> orEmpty(List<String> list) {
+        return list == null ? List.of() : list;
+    }
+    
     private static Map<String, String> toDetailedViewRow(String raw) {
         String path = normalize(raw);
         String folderName = extractSecondSegment(path);    
@@ -0,0 +1,6 @@
+package com.dtd.serverShell.docker;
+
+import java.util.Map;
+
+/** A container event ("start", "die", "stop", "destroy", ...) with the container's labels. */
+public record ContainerEvent(String action, String id, String name, Map<String, String> labels, long timeNanos) {}
@@ -0,0 +1,20 @@
+package com.dtd.serverShell.docker;
+
+import java.util.concurrent.CompletableFuture;
+
+/** A container started by a ContainerRuntime; onExit completes with its exit code. */
+public interface ContainerHandle {
+
+    String name();
+
+    CompletableFuture<Integer> onExit();
+
+    default boolean isAlive() {
+        return !onExit().isDone();
+    }
+
+    /** Exit code, or -1 while the container is still running. */
+    default int exitCode() {
+        return onExit().getNow(-1);
+    }
+}
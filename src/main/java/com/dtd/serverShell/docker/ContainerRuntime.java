@@ -0,0 +1,36 @@
+package com.dtd.serverShell.docker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Starts and controls emulator containers. DockerEngineRuntime talks to the
+ * daemon's HTTP API over its unix socket; DockerCliRuntime forks the docker
+ * CLI and is kept for hosts where the socket isn't reachable.
+ */
+public interface ContainerRuntime {
+
+    /** Create + start the container; every output line goes to logLine until it exits. */
+    ContainerHandle run(ContainerSpec spec, Consumer<String> logLine) throws IOException;
+
+    /** Handle for a container that is already running (e.g. started before a restart); empty if it isn't. */
+    Optional<ContainerHandle> attach(String name) throws IOException;
+
+    /** true if the container was stopped (or had already stopped). */
+    boolean stop(String name, int timeoutSeconds) throws IOException;
+
+    Optional<ContainerStatus> inspect(String name) throws IOException;
+
+    /** Containers (running or not) carrying all of the given labels. */
+    List<ContainerStatus> list(Map<String, String> labels) throws IOException;
+
+    /** Run a command inside a running container; true on exit code 0. */
+    boolean exec(String name, List<String> command, int timeoutSeconds);
+
+    /** Follow container events for containers with the given labels until the returned handle is closed. */
+    Closeable events(Map<String, String> labels, Consumer<ContainerEvent> listener) throws IOException;
+}
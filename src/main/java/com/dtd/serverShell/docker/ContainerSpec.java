@@ -0,0 +1,67 @@
+package com.dtd.serverShell.docker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What to run: the subset of `docker run` options the emulator uses, in a form
+ * both the CLI and the Engine API runtimes can translate.
+ */
+public final class ContainerSpec {
+
+    /** host port -> container TCP port */
+    public record PortBinding(int hostPort, int containerPort) {}
+
+    private final String name;
+    private final String image;
+    private final List<String> args = new ArrayList<>();
+    private final List<String> env = new ArrayList<>();
+    // "host:container[:ro]"
+    private final List<String> binds = new ArrayList<>();
+    private final List<PortBinding> ports = new ArrayList<>();
+    // "host[:container]"
+    private final List<String> devices = new ArrayList<>();
+    private final List<String> groupAdd = new ArrayList<>();
+    private final List<String> capAdd = new ArrayList<>();
+    private final List<String> securityOpt = new ArrayList<>();
+    private final List<String> deviceCgroupRules = new ArrayList<>();
+    private final Map<String, String> labels = new LinkedHashMap<>();
+    // host address the ports are published on; null = every interface
+    private String publishHost;
+    private boolean autoRemove = true;
+
+    public ContainerSpec(String name, String image) {
+        this.name = name;
+        this.image = image;
+    }
+
+    public ContainerSpec args(List<String> values)        { args.addAll(values); return this; }
+    public ContainerSpec env(String keyValue)             { env.add(keyValue); return this; }
+    public ContainerSpec bind(String bind)                { binds.add(bind); return this; }
+    public ContainerSpec port(int hostPort, int containerPort) { ports.add(new PortBinding(hostPort, containerPort)); return this; }
+    public ContainerSpec device(String device)            { devices.add(device); return this; }
+    public ContainerSpec groupAdd(String group)           { groupAdd.add(group); return this; }
+    public ContainerSpec capAdd(String cap)               { capAdd.add(cap); return this; }
+    public ContainerSpec securityOpt(String opt)          { securityOpt.add(opt); return this; }
+    public ContainerSpec deviceCgroupRule(String rule)    { deviceCgroupRules.add(rule); return this; }
+    public ContainerSpec label(String key, String value)  { labels.put(key, value); return this; }
+    public ContainerSpec publishHost(String hostIp)       { publishHost = hostIp; return this; }
+    public ContainerSpec autoRemove(boolean value)        { autoRemove = value; return this; }
+
+    public String getName()                  { return name; }
+    public String getImage()                 { return image; }
+    public List<String> getArgs()            { return args; }
+    public List<String> getEnv()             { return env; }
+    public List<String> getBinds()           { return binds; }
+    public List<PortBinding> getPorts()      { return ports; }
+    public List<String> getDevices()         { return devices; }
+    public List<String> getGroupAdd()        { return groupAdd; }
+    public List<String> getCapAdd()          { return capAdd; }
+    public List<String> getSecurityOpt()     { return securityOpt; }
+    public List<String> getDeviceCgroupRules() { return deviceCgroupRules; }
+    public Map<String, String> getLabels()   { return labels; }
+    public String getPublishHost()           { return publishHost; }
+    public boolean isAutoRemove()            { return autoRemove; }
+}
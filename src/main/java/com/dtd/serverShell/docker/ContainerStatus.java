@@ -0,0 +1,10 @@
+package com.dtd.serverShell.docker;
+
+import java.util.Map;
+
+/**
+ * Inspect/list result. exitCode is only meaningful when running is false;
+ * pid (host PID of the container's init) is 0 when not running or unknown (list).
+ */
+public record ContainerStatus(String id, String name, String image, boolean running, int exitCode, int pid,
+                              Map<String, String> labels) {}
@@ -0,0 +1,216 @@
+package com.dtd.serverShell.docker;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The original way: fork the docker CLI for each operation. The attached
+ * `docker run` process is the container's lifetime and log stream.
+ */
+public class DockerCliRuntime implements ContainerRuntime {
+    private static final Logger log = LoggerFactory.getLogger(DockerCliRuntime.class);
+
+    private final ObjectMapper mapper;
+
+    public DockerCliRuntime(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public ContainerHandle run(ContainerSpec spec, Consumer<String> logLine) throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("docker", "run"));
+        if (spec.isAutoRemove()) cmd.add("--rm");
+        for (String v : spec.getBinds()) cmd.addAll(List.of("-v", v));
+        String publishOn = spec.getPublishHost() == null ? ""
+                : (spec.getPublishHost().contains(":") ? "[" + spec.getPublishHost() + "]" : spec.getPublishHost()) + ":";
+        for (ContainerSpec.PortBinding p : spec.getPorts()) cmd.addAll(List.of("-p", publishOn + p.hostPort() + ":" + p.containerPort()));
+        for (String d : spec.getDevices()) cmd.addAll(List.of("--device", d));
+        for (String g : spec.getGroupAdd()) cmd.addAll(List.of("--group-add", g));
+        for (String c : spec.getCapAdd()) cmd.add("--cap-add=" + c);
+        for (String o : spec.getSecurityOpt()) cmd.addAll(List.of("--security-opt", o));
+        for (String r : spec.getDeviceCgroupRules()) cmd.addAll(List.of("--device-cgroup-rule", r));
+        for (String e : spec.getEnv()) cmd.addAll(List.of("-e", e));
+        spec.getLabels().forEach((k, v) -> cmd.addAll(List.of("--label", k + "=" + v)));
+        cmd.addAll(List.of("--name", spec.getName()));
+        cmd.add(spec.getImage());
+        cmd.addAll(spec.getArgs());
+
+        //run command; output is piped (not inherited) so it can be watched for readiness
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        log.info("Launching container: {}", String.join(" ", cmd));
+        Process process = pb.start();
+
+        // drain the attached output for the container's whole life (a full pipe would stall it)
+        Thread reader = new Thread(() -> {
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) logLine.accept(line);
+            } catch (IOException e) {
+                log.debug("[{}] log stream closed: {}", spec.getName(), e.getMessage());
+            }
+        }, "emu-log-" + spec.getName());
+        reader.setDaemon(true);
+        reader.start();
+
+        CompletableFuture<Integer> exit = process.onExit().thenApply(Process::exitValue);
+        return new ContainerHandle() {
+            @Override public String name() { return spec.getName(); }
+            @Override public CompletableFuture<Integer> onExit() { return exit; }
+        };
+    }
+
+    @Override
+    public Optional<ContainerHandle> attach(String name) throws IOException {
+        if (!inspect(name).map(ContainerStatus::running).orElse(false)) return Optional.empty();
+        // `docker wait` blocks until the container exits and prints its exit code
+        Process wait = new ProcessBuilder("docker", "wait", name).redirectErrorStream(true).start();
+        CompletableFuture<Integer> exit = wait.onExit().thenApply(p -> {
+            try {
+                return Integer.parseInt(new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                return -1;
+            }
+        });
+        return Optional.of(new ContainerHandle() {
+            @Override public String name() { return name; }
+            @Override public CompletableFuture<Integer> onExit() { return exit; }
+        });
+    }
+
+    @Override
+    public boolean stop(String name, int timeoutSeconds) throws IOException {
+        return run(List.of("docker", "stop", "-t", String.valueOf(timeoutSeconds), name), timeoutSeconds + 30) == 0;
+    }
+
+    @Override
+    public Optional<ContainerStatus> inspect(String name) throws IOException {
+        StringBuilder out = new StringBuilder();
+        if (run(List.of("docker", "inspect", "--type", "container", name), 30, out) != 0) return Optional.empty();
+        JsonNode n = mapper.readTree(out.toString()).path(0);
+        if (n.isMissingNode()) return Optional.empty();
+        String found = n.path("Name").asText();
+        return Optional.of(new ContainerStatus(
+                n.path("Id").asText(),
+                found.startsWith("/") ? found.substring(1) : found,
+                n.path("Config").path("Image").asText(),
+                n.path("State").path("Running").asBoolean(),
+                n.path("State").path("ExitCode").asInt(),
+                n.path("State").path("Pid").asInt(),
+                labels(n.path("Config").path("Labels"))));
+    }
+
+    @Override
+    public List<ContainerStatus> list(Map<String, String> labels) throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("docker", "ps", "-a", "--no-trunc", "--format", "{{json .}}"));
+        labels.forEach((k, v) -> cmd.addAll(List.of("--filter", "label=" + (v == null ? k : k + "=" + v))));
+        StringBuilder out = new StringBuilder();
+        if (run(cmd, 30, out) != 0) throw new IOException("docker ps failed: " + out.toString().trim());
+
+        List<ContainerStatus> result = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (line.isBlank()) continue;
+            JsonNode n = mapper.readTree(line);
+            // ps prints labels as "k=v,k=v"
+            Map<String, String> parsed = new LinkedHashMap<>();
+            for (String kv : n.path("Labels").asText().split(",")) {
+                int eq = kv.indexOf('=');
+                if (eq > 0) parsed.put(kv.substring(0, eq), kv.substring(eq + 1));
+            }
+            result.add(new ContainerStatus(n.path("ID").asText(), n.path("Names").asText(), n.path("Image").asText(),
+                    "running".equals(n.path("State").asText()), -1, 0, parsed));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean exec(String name, List<String> command, int timeoutSeconds) {
+        List<String> cmd = new ArrayList<>(List.of("docker", "exec", name));
+        cmd.addAll(command);
+        try {
+            int code = run(cmd, timeoutSeconds);
+            if (code != 0) log.warn("[{}] exec {} failed with exit code {}", name, command, code);
+            return code == 0;
+        } catch (IOException e) {
+            log.warn("[{}] exec {} failed: {}", name, command, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public Closeable events(Map<String, String> labels, Consumer<ContainerEvent> listener) throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("docker", "events", "--format", "{{json .}}", "--filter", "type=container"));
+        labels.forEach((k, v) -> cmd.addAll(List.of("--filter", "label=" + (v == null ? k : k + "=" + v))));
+        Process process = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+
+        Thread reader = new Thread(() -> {
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    JsonNode e = mapper.readTree(line);
+                    Map<String, String> attributes = labels(e.path("Actor").path("Attributes"));
+                    listener.accept(new ContainerEvent(e.path("Action").asText(), e.path("Actor").path("ID").asText(),
+                            attributes.getOrDefault("name", ""), attributes, e.path("timeNano").asLong()));
+                }
+            } catch (IOException e) {
+                log.debug("[DOCKER EVENTS] stream ended: {}", e.getMessage());
+            }
+        }, "docker-events");
+        reader.setDaemon(true);
+        reader.start();
+        return process::destroy;
+    }
+
+    private static Map<String, String> labels(JsonNode node) {
+        Map<String, String> out = new LinkedHashMap<>();
+        node.properties().forEach(e -> out.put(e.getKey(), e.getValue().asText()));
+        return out;
+    }
+
+    private static int run(List<String> cmd, int timeoutSeconds) throws IOException {
+        Process p = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return await(p, cmd, timeoutSeconds);
+    }
+
+    private static int run(List<String> cmd, int timeoutSeconds, StringBuilder out) throws IOException {
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        // output is small (inspect/ps); read it before waiting so the pipe can't fill
+        out.append(new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        return await(p, cmd, timeoutSeconds);
+    }
+
+    private static int await(Process p, List<String> cmd, int timeoutSeconds) throws IOException {
+        try {
+            if (!p.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                throw new IOException(String.join(" ", cmd) + " timed out after " + timeoutSeconds + "s");
+            }
+            return p.exitValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted: " + String.join(" ", cmd));
+        }
+    }
+}
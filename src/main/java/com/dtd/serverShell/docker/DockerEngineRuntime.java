@@ -0,0 +1,362 @@
+package com.dtd.serverShell.docker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Docker Engine API (v1.41, Docker 20.10+) over /var/run/docker.sock. No
+ * process forks: create/start/stop/inspect are pooled HTTP calls. Each running
+ * container holds two streams, one for its log and one for the wait call that
+ * completes onExit.
+ */
+public class DockerEngineRuntime implements ContainerRuntime {
+    private static final Logger log = LoggerFactory.getLogger(DockerEngineRuntime.class);
+
+    private static final String API = "/v1.41";
+
+    private final UnixSocketHttpClient http;
+    private final ObjectMapper mapper;
+
+    public DockerEngineRuntime(Path socket, int maxIdleConnections, ObjectMapper mapper) {
+        this.http = new UnixSocketHttpClient(socket, maxIdleConnections);
+        this.mapper = mapper;
+    }
+
+    @Override
+    public ContainerHandle run(ContainerSpec spec, Consumer<String> logLine) throws IOException {
+        UnixSocketHttpClient.Response created = http.call("POST",
+                API + "/containers/create?name=" + enc(spec.getName()), mapper.writeValueAsBytes(createBody(spec)));
+        if (!created.ok()) throw apiError("create " + spec.getName(), created);
+        String id = mapper.readTree(created.body()).path("Id").asText();
+
+        // register the wait before start so a container that dies instantly is still seen;
+        // dockerd sends the 200 header as soon as the wait is in place
+        String condition = spec.isAutoRemove() ? "removed" : "next-exit";
+        UnixSocketHttpClient.Stream wait = http.open("POST", API + "/containers/" + id + "/wait?condition=" + condition, null);
+        if (wait.status() != 200) {
+            wait.close();
+            remove(id);
+            throw new IOException("wait " + spec.getName() + " failed: HTTP " + wait.status());
+        }
+
+        CompletableFuture<Integer> exit = waitForExit(spec.getName(), wait);
+
+        UnixSocketHttpClient.Response started = http.call("POST", API + "/containers/" + id + "/start", null);
+        if (!started.ok() && started.status() != 304) {
+            wait.close();
+            remove(id);
+            throw apiError("start " + spec.getName(), started);
+        }
+
+        followLogs(spec.getName(), id, logLine);
+        return new EngineHandle(spec.getName(), exit);
+    }
+
+    @Override
+    public Optional<ContainerHandle> attach(String name) throws IOException {
+        UnixSocketHttpClient.Stream wait = http.open("POST", API + "/containers/" + enc(name) + "/wait?condition=next-exit", null);
+        if (wait.status() != 200) {
+            wait.close();
+            return Optional.empty();
+        }
+        // the wait is registered now; if it's not running at this point it never will be for us
+        if (!inspect(name).map(ContainerStatus::running).orElse(false)) {
+            wait.close();
+            return Optional.empty();
+        }
+        return Optional.of(new EngineHandle(name, waitForExit(name, wait)));
+    }
+
+    @Override
+    public boolean stop(String name, int timeoutSeconds) throws IOException {
+        UnixSocketHttpClient.Response r = http.call("POST", API + "/containers/" + enc(name) + "/stop?t=" + timeoutSeconds, null);
+        // 304 = already stopped
+        return r.ok() || r.status() == 304;
+    }
+
+    @Override
+    public Optional<ContainerStatus> inspect(String name) throws IOException {
+        UnixSocketHttpClient.Response r = http.call("GET", API + "/containers/" + enc(name) + "/json", null);
+        if (r.status() == 404) return Optional.empty();
+        if (!r.ok()) throw apiError("inspect " + name, r);
+
+        JsonNode n = mapper.readTree(r.body());
+        return Optional.of(new ContainerStatus(
+                n.path("Id").asText(),
+                stripSlash(n.path("Name").asText()),
+                n.path("Config").path("Image").asText(),
+                n.path("State").path("Running").asBoolean(),
+                n.path("State").path("ExitCode").asInt(),
+                n.path("State").path("Pid").asInt(),
+                labels(n.path("Config").path("Labels"))));
+    }
+
+    @Override
+    public List<ContainerStatus> list(Map<String, String> labels) throws IOException {
+        UnixSocketHttpClient.Response r = http.call("GET",
+                API + "/containers/json?all=1&filters=" + enc(labelFilter(labels)), null);
+        if (!r.ok()) throw apiError("list", r);
+
+        List<ContainerStatus> out = new ArrayList<>();
+        for (JsonNode n : mapper.readTree(r.body())) {
+            out.add(new ContainerStatus(
+                    n.path("Id").asText(),
+                    stripSlash(n.path("Names").path(0).asText()),
+                    n.path("Image").asText(),
+                    "running".equals(n.path("State").asText()),
+                    -1,
+                    0,
+                    labels(n.path("Labels"))));
+        }
+        return out;
+    }
+
+    @Override
+    public boolean exec(String name, List<String> command, int timeoutSeconds) {
+        try {
+            ObjectNode body = mapper.createObjectNode();
+            body.put("AttachStdout", true).put("AttachStderr", true);
+            body.set("Cmd", mapper.valueToTree(command));
+            UnixSocketHttpClient.Response created = http.call("POST", API + "/containers/" + enc(name) + "/exec", mapper.writeValueAsBytes(body));
+            if (!created.ok()) {
+                log.warn("[{}] exec {} rejected: HTTP {} {}", name, command, created.status(), created.text());
+                return false;
+            }
+            String execId = mapper.readTree(created.body()).path("Id").asText();
+
+            // attached start streams output until the command ends; drain it with a deadline
+            UnixSocketHttpClient.Stream run = http.open("POST", API + "/exec/" + execId + "/start",
+                    "{\"Detach\":false,\"Tty\":false}".getBytes(StandardCharsets.UTF_8));
+            CompletableFuture<Void> drained = new CompletableFuture<>();
+            daemon("docker-exec-" + name, () -> {
+                try (InputStream in = run.body()) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                } catch (IOException ignored) {
+                    // closed on timeout
+                }
+                drained.complete(null);
+            });
+            try {
+                drained.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                log.warn("[{}] exec {} timed out after {}s", name, command, timeoutSeconds);
+                return false;
+            } finally {
+                run.close();
+            }
+
+            UnixSocketHttpClient.Response info = http.call("GET", API + "/exec/" + execId + "/json", null);
+            int exitCode = info.ok() ? mapper.readTree(info.body()).path("ExitCode").asInt(-1) : -1;
+            if (exitCode != 0) log.warn("[{}] exec {} failed with exit code {}", name, command, exitCode);
+            return exitCode == 0;
+        } catch (IOException | ExecutionException e) {
+            log.warn("[{}] exec {} failed: {}", name, command, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public Closeable events(Map<String, String> labels, Consumer<ContainerEvent> listener) throws IOException {
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("type", List.of("container"));
+        filters.put("label", labelList(labels));
+        UnixSocketHttpClient.Stream stream = http.open("GET",
+                API + "/events?filters=" + enc(mapper.writeValueAsString(filters)), null);
+        if (stream.status() != 200) {
+            stream.close();
+            throw new IOException("events failed: HTTP " + stream.status());
+        }
+
+        // one JSON object per event, parsed as it arrives
+        daemon("docker-events", () -> {
+            try (MappingIterator<JsonNode> it = mapper.readerFor(JsonNode.class).readValues(stream.body())) {
+                while (it.hasNextValue()) {
+                    JsonNode e = it.nextValue();
+                    JsonNode attrs = e.path("Actor").path("Attributes");
+                    Map<String, String> attributes = labels(attrs);
+                    listener.accept(new ContainerEvent(
+                            e.path("Action").asText(),
+                            e.path("Actor").path("ID").asText(),
+                            attributes.getOrDefault("name", ""),
+                            attributes,
+                            e.path("timeNano").asLong()));
+                }
+            } catch (Exception e) {
+                log.debug("[DOCKER EVENTS] stream ended: {}", e.getMessage());
+            }
+        });
+        return stream;
+    }
+
+    private ObjectNode createBody(ContainerSpec spec) {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("Image", spec.getImage());
+        body.set("Cmd", mapper.valueToTree(spec.getArgs()));
+        body.set("Env", mapper.valueToTree(spec.getEnv()));
+        body.set("Labels", mapper.valueToTree(spec.getLabels()));
+
+        ObjectNode exposed = body.putObject("ExposedPorts");
+        ObjectNode host = body.putObject("HostConfig");
+        ObjectNode bindings = host.putObject("PortBindings");
+        for (ContainerSpec.PortBinding p : spec.getPorts()) {
+            String key = p.containerPort() + "/tcp";
+            exposed.putObject(key);
+            ObjectNode hostPort = bindings.putArray(key).addObject();
+            if (spec.getPublishHost() != null) hostPort.put("HostIp", spec.getPublishHost());
+            hostPort.put("HostPort", String.valueOf(p.hostPort()));
+        }
+        host.set("Binds", mapper.valueToTree(spec.getBinds()));
+        ArrayNode devices = host.putArray("Devices");
+        for (String d : spec.getDevices()) {
+            String[] parts = d.split(":");
+            devices.addObject()
+                    .put("PathOnHost", parts[0])
+                    .put("PathInContainer", parts.length > 1 ? parts[1] : parts[0])
+                    .put("CgroupPermissions", parts.length > 2 ? parts[2] : "rwm");
+        }
+        host.set("GroupAdd", mapper.valueToTree(spec.getGroupAdd()));
+        host.set("CapAdd", mapper.valueToTree(spec.getCapAdd()));
+        host.set("SecurityOpt", mapper.valueToTree(spec.getSecurityOpt()));
+        host.set("DeviceCgroupRules", mapper.valueToTree(spec.getDeviceCgroupRules()));
+        host.put("AutoRemove", spec.isAutoRemove());
+        return body;
+    }
+
+    // GET /logs without a TTY is multiplexed: 8-byte frame header [stream,0,0,0,len(4, big endian)] + payload
+    private void followLogs(String name, String id, Consumer<String> logLine) {
+        UnixSocketHttpClient.Stream stream;
+        try {
+            stream = http.open("GET", API + "/containers/" + id + "/logs?follow=1&stdout=1&stderr=1", null);
+        } catch (IOException e) {
+            log.warn("[{}] could not follow logs: {}", name, e.getMessage());
+            return;
+        }
+        daemon("emu-log-" + name, () -> {
+            try (stream; DataInputStream in = new DataInputStream(stream.body())) {
+                ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+                byte[] header = new byte[8];
+                byte[] buf = new byte[8192];
+                while (true) {
+                    try {
+                        in.readFully(header);
+                    } catch (EOFException end) {
+                        break;
+                    }
+                    int len = ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+                    while (len > 0) {
+                        int n = in.read(buf, 0, Math.min(buf.length, len));
+                        if (n == -1) throw new EOFException();
+                        len -= n;
+                        for (int i = 0; i < n; i++) {
+                            if (buf[i] == '\n') {
+                                logLine.accept(line.toString(StandardCharsets.UTF_8));
+                                line.reset();
+                            } else if (buf[i] != '\r') {
+                                line.write(buf[i]);
+                            }
+                        }
+                    }
+                }
+                if (line.size() > 0) logLine.accept(line.toString(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.debug("[{}] log stream closed: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<Integer> waitForExit(String name, UnixSocketHttpClient.Stream wait) {
+        CompletableFuture<Integer> exit = new CompletableFuture<>();
+        daemon("docker-wait-" + name, () -> {
+            try (wait; InputStream in = wait.body()) {
+                JsonNode result = mapper.readTree(in);
+                exit.complete(result == null ? -1 : result.path("StatusCode").asInt(-1));
+            } catch (IOException e) {
+                log.debug("[{}] wait stream closed: {}", name, e.getMessage());
+                exit.complete(-1);
+            }
+        });
+        return exit;
+    }
+
+    // called by Spring on shutdown (inferred destroy method)
+    public void close() {
+        http.close();
+    }
+
+    private void remove(String id) {
+        try {
+            http.call("DELETE", API + "/containers/" + id + "?force=1", null);
+        } catch (IOException e) {
+            log.warn("Could not remove container {}: {}", id, e.getMessage());
+        }
+    }
+
+    private String labelFilter(Map<String, String> labels) throws IOException {
+        return mapper.writeValueAsString(Map.of("label", labelList(labels)));
+    }
+
+    private static List<String> labelList(Map<String, String> labels) {
+        List<String> out = new ArrayList<>();
+        labels.forEach((k, v) -> out.add(v == null ? k : k + "=" + v));
+        return out;
+    }
+
+    private static Map<String, String> labels(JsonNode node) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonNode> e : node.properties()) {
+            out.put(e.getKey(), e.getValue().asText());
+        }
+        return out;
+    }
+
+    private static String stripSlash(String name) {
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static IOException apiError(String what, UnixSocketHttpClient.Response r) {
+        return new IOException(what + " failed: HTTP " + r.status() + " " + r.text().trim());
+    }
+
+    private static void daemon(String name, Runnable task) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private record EngineHandle(String name, CompletableFuture<Integer> onExit) implements ContainerHandle {}
+
+}
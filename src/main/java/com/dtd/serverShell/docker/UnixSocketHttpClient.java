@@ -0,0 +1,303 @@
+package com.dtd.serverShell.docker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Just enough HTTP/1.1 to talk to the Docker daemon over its unix socket.
+ *
+ * Short calls go through {@link #call} on pooled keep-alive connections.
+ * Long-lived streams (logs, events, wait) use {@link #open}, which gets its own
+ * connection and closes it with the returned {@link Stream}.
+ */
+public class UnixSocketHttpClient implements Closeable {
+
+    public record Response(int status, byte[] body) {
+        public boolean ok() { return status >= 200 && status < 300; }
+        public String text() { return new String(body, StandardCharsets.UTF_8); }
+    }
+
+    /** A response whose body is read as it arrives; closing it closes the connection. */
+    public static final class Stream implements Closeable {
+        private final Connection connection;
+        private final int status;
+        private final InputStream body;
+
+        private Stream(Connection connection, int status, InputStream body) {
+            this.connection = connection;
+            this.status = status;
+            this.body = body;
+        }
+
+        public int status()       { return status; }
+        public InputStream body() { return body; }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
+
+    private final UnixDomainSocketAddress address;
+    private final int maxIdle;
+    private final Deque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+    public UnixSocketHttpClient(Path socket, int maxIdle) {
+        this.address = UnixDomainSocketAddress.of(socket);
+        this.maxIdle = maxIdle;
+    }
+
+    /** Request/response on a pooled connection; the body is read fully. */
+    public Response call(String method, String path, byte[] json) throws IOException {
+        Connection c = idle.pollFirst();
+        boolean reused = c != null;
+        if (c == null) c = new Connection(address);
+        try {
+            return exchange(c, method, path, json);
+        } catch (StaleConnectionException e) {
+            // the daemon closed an idle keep-alive connection before we got a status line
+            c.close();
+            if (!reused) throw e;
+            return exchange(new Connection(address), method, path, json);
+        }
+    }
+
+    /** Request on a dedicated connection; the caller reads (and must close) the streamed body. */
+    public Stream open(String method, String path, byte[] json) throws IOException {
+        Connection c = new Connection(address);
+        try {
+            c.write(method, path, json, false);
+            Head head = c.readHead();
+            return new Stream(c, head.status, c.body(head));
+        } catch (IOException | RuntimeException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    private Response exchange(Connection c, String method, String path, byte[] json) throws IOException {
+        boolean keep = false;
+        try {
+            c.write(method, path, json, true);
+            Head head = c.readHead();
+            byte[] body;
+            try (InputStream in = c.body(head)) {
+                body = in.readAllBytes();
+            }
+            keep = !"close".equalsIgnoreCase(head.headers.get("connection"));
+            return new Response(head.status, body);
+        } finally {
+            if (keep && idle.size() < maxIdle) {
+                idle.addFirst(c);
+            } else {
+                c.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Connection c;
+        while ((c = idle.pollFirst()) != null) c.close();
+    }
+
+    private record Head(int status, Map<String, String> headers) {}
+
+    private static final class StaleConnectionException extends IOException {
+        StaleConnectionException(String message) { super(message); }
+    }
+
+    private static final class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final InputStream in;
+
+        Connection(UnixDomainSocketAddress address) throws IOException {
+            this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            this.channel.connect(address);
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), 8192);
+        }
+
+        void write(String method, String path, byte[] json, boolean keepAlive) throws IOException {
+            StringBuilder req = new StringBuilder(128)
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: docker\r\n")
+                    .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+            if (json != null) {
+                req.append("Content-Type: application/json\r\n");
+            }
+            req.append("Content-Length: ").append(json == null ? 0 : json.length).append("\r\n\r\n");
+
+            ByteBuffer head = ByteBuffer.wrap(req.toString().getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer body = ByteBuffer.wrap(json == null ? new byte[0] : json);
+            ByteBuffer[] out = { head, body };
+            try {
+                while (head.hasRemaining() || body.hasRemaining()) channel.write(out);
+            } catch (IOException e) {
+                throw new StaleConnectionException("write failed: " + e.getMessage());
+            }
+        }
+
+        Head readHead() throws IOException {
+            String statusLine = readLine();
+            if (statusLine == null) throw new StaleConnectionException("connection closed before response");
+            // "HTTP/1.1 200 OK"
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) throw new IOException("Bad status line: " + statusLine);
+            int status = Integer.parseInt(parts[1]);
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+            return new Head(status, headers);
+        }
+
+        InputStream body(Head head) {
+            if (head.status == 204 || head.status == 304) return InputStream.nullInputStream();
+            if ("chunked".equalsIgnoreCase(head.headers.get("transfer-encoding"))) return new ChunkedInputStream(in);
+            String length = head.headers.get("content-length");
+            if (length != null) return new LimitedInputStream(in, Long.parseLong(length));
+            return new FilterInputStream(in) {
+                @Override public void close() { /* connection is closed by its owner */ }
+            };
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') break;
+                if (b != '\r') line.write(b);
+            }
+            if (b == -1 && line.size() == 0) return null;
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already gone
+            }
+        }
+    }
+
+    // Content-Length body; close() skips what's left so the connection can be reused
+    private static final class LimitedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b == -1) throw new EOFException("body ended early");
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(buf, off, (int) Math.min(len, remaining));
+            if (n == -1) throw new EOFException("body ended early");
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            while (remaining > 0 && read(new byte[(int) Math.min(8192, remaining)]) != -1) { }
+        }
+    }
+
+    // Transfer-Encoding: chunked (what dockerd uses for streams and most JSON replies)
+    private static final class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long chunkLeft;
+        private boolean done;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (done) return false;
+            if (chunkLeft > 0) return true;
+            String size = readLine();
+            if (size == null) throw new EOFException("chunked stream ended early");
+            if (size.isEmpty()) size = readLine(); // CRLF after the previous chunk
+            if (size == null) throw new EOFException("chunked stream ended early");
+            int ext = size.indexOf(';');
+            chunkLeft = Long.parseLong((ext >= 0 ? size.substring(0, ext) : size).trim(), 16);
+            if (chunkLeft == 0) {
+                // trailers until the blank line
+                String trailer;
+                while ((trailer = readLine()) != null && !trailer.isEmpty()) { }
+                done = true;
+                return false;
+            }
+            return true;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder(16);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') return sb.toString();
+                if (b != '\r') sb.append((char) b);
+            }
+            return sb.length() == 0 ? null : sb.toString();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) return -1;
+            int b = in.read();
+            if (b == -1) throw new EOFException("chunk ended early");
+            chunkLeft--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!nextChunk()) return -1;
+            int n = in.read(buf, off, (int) Math.min(len, chunkLeft));
+            if (n == -1) throw new EOFException("chunk ended early");
+            chunkLeft -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) != -1) { }
+        }
+    }
+}
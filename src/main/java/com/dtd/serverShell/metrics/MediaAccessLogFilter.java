@@ -0,0 +1,64 @@
+package com.dtd.serverShell.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * One key=value line per /media/** request on the "media.access" logger,
+ * which logback-spring.xml sends to its own async file (media-access.log).
+ *
+ * Successful requests are sampled at media.access-log.sample-rate; 4xx/5xx
+ * are always written. The query string is left out on purpose: segment URLs
+ * carry the VOD token.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MediaAccessLogFilter extends OncePerRequestFilter {
+
+    private static final Logger access = LoggerFactory.getLogger("media.access");
+
+    private static final String PREFIX = "/media/";
+
+    @Value("${media.access-log.sample-rate:0.05}")
+    private double sampleRate;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !access.isInfoEnabled() || !request.getRequestURI().startsWith(request.getContextPath() + PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            // decided after the fact so failures are never sampled away
+            if (status >= 400 || sampleRate >= 1
+                    || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+                long micros = (System.nanoTime() - start) / 1_000;
+                String bytes = response.getHeader("Content-Length");
+                String range = request.getHeader("Range");
+                access.info("method={} path={} status={} us={} bytes={} range={} ip={}",
+                        request.getMethod(), request.getRequestURI(), status, micros,
+                        bytes == null ? "-" : bytes, range == null ? "-" : range, request.getRemoteAddr());
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dtd.serverShell.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import com.dtd.serverShell.controller.EmulatorController;
+import com.dtd.serverShell.controller.EpubController;
+import com.dtd.serverShell.services.MediaCache;
+import com.dtd.serverShell.services.MediaService;
+import com.dtd.serverShell.services.MediaStore;
+import com.dtd.serverShell.services.SaveStore;
+import com.dtd.serverShell.services.UserService;
+
+/**
+ * Wraps the beans whose time ServerTimingFilter reports, so none of them
+ * carry timing code: every repository (db), the services and controllers
+ * that work on the filesystem (fs), UserService and EmulatorController.
+ *
+ * Granularity is the bean's public method: a MediaService call that stats a
+ * hundred files shows up as one fs call. Calls made outside a sampled
+ * request go straight through.
+ *
+ * profiling.enabled is read when the context starts rather than used as a
+ * bean condition, which AOT processing would fix at build time; when it is
+ * false no bean is wrapped.
+ */
+@Component
+public class ProfilingPostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    private boolean enabled;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        enabled = environment.getProperty("profiling.enabled", Boolean.class, false);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled) return bean;
+        String label = labelOf(bean);
+        if (label == null) return bean;
+
+        ProxyFactory factory = new ProxyFactory(bean);
+        // repositories are interface proxies already; the rest are plain classes
+        factory.setProxyTargetClass(!(bean instanceof Repository));
+        factory.addAdvice(new Timed(label));
+        return factory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private static String labelOf(Object bean) {
+        if (bean instanceof Repository) return "db";
+        if (bean instanceof MediaService || bean instanceof MediaStore || bean instanceof MediaCache
+                || bean instanceof EpubController || bean instanceof SaveStore) return "fs";
+        if (bean instanceof UserService) return "users";
+        if (bean instanceof EmulatorController) return "emulator";
+        return null;
+    }
+
+    private static final class Timed implements MethodInterceptor {
+        private final String label;
+
+        Timed(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            RequestProfile profile = RequestProfile.current();
+            if (profile == null || invocation.getMethod().getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            profile.enter();
+            try {
+                return invocation.proceed();
+            } finally {
+                profile.exit(label, System.nanoTime() - start);
+            }
+        }
+    }
+}
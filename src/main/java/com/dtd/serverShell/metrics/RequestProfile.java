@@ -0,0 +1,73 @@
+package com.dtd.serverShell.metrics;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Calls and time per profiled layer (db, fs, ...) for the request being
+ * handled on this thread; see ProfilingPostProcessor for what is profiled.
+ *
+ * Times are exclusive: a repository call made from inside MediaService counts
+ * as db, and only the rest of the MediaService call as fs. Work handed to
+ * other threads (emulator launches, pools) is not seen.
+ */
+final class RequestProfile {
+
+    private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+    private final long startedAt = System.nanoTime();
+    // label -> {calls, nanos}; a handful of labels, in first-seen order
+    private final Map<String, long[]> spans = new LinkedHashMap<>();
+    // per open call: time spent in profiled calls nested inside it
+    private long[] nested = new long[8];
+    private int depth;
+
+    static RequestProfile current() {
+        return CURRENT.get();
+    }
+
+    static RequestProfile start() {
+        RequestProfile profile = new RequestProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    void enter() {
+        if (depth == nested.length) nested = Arrays.copyOf(nested, depth * 2);
+        nested[depth++] = 0;
+    }
+
+    void exit(String label, long elapsedNanos) {
+        long self = elapsedNanos - nested[--depth];
+        if (depth > 0) nested[depth - 1] += elapsedNanos;
+        long[] span = spans.computeIfAbsent(label, k -> new long[2]);
+        span[0]++;
+        span[1] += self;
+    }
+
+    //   db;dur=3.1;desc="2 calls", fs;dur=11.0;desc="1 call", app;dur=1.9, total;dur=16.0
+    String header() {
+        long total = System.nanoTime() - startedAt;
+        long profiled = 0;
+        StringBuilder sb = new StringBuilder(128);
+        for (Map.Entry<String, long[]> e : spans.entrySet()) {
+            long calls = e.getValue()[0], nanos = e.getValue()[1];
+            profiled += nanos;
+            sb.append(e.getKey()).append(";dur=").append(ms(nanos))
+              .append(";desc=\"").append(calls).append(calls == 1 ? " call\", " : " calls\", ");
+        }
+        // everything else: filters/security, MVC, the controllers' own code, serialization
+        sb.append("app;dur=").append(ms(total - profiled)).append(", total;dur=").append(ms(total));
+        return sb.toString();
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,157 @@
+package com.dtd.serverShell.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Adds a Server-Timing header (browser devtools, Network > Timing) with the
+ * db/fs/... breakdown of RequestProfile to profiling.sample-rate of requests.
+ *
+ * The header has to go out before the body, so a sampled response gets a
+ * larger buffer and the header is set at its first flush or when the
+ * request is done, whichever comes first; serialization of bodies up to
+ * BUFFER_BYTES is included. Bigger bodies (segments, downloads) commit on
+ * their own and may go out without it.
+ *
+ * The filter always exists, so an AOT-processed context can still switch
+ * it: with profiling.enabled=false it passes every request straight on.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    @Value("${profiling.enabled:false}")
+    private boolean enabled;
+
+    @Value("${profiling.sample-rate:1.0}")
+    private double sampleRate;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        TimedResponse timed = new TimedResponse(response, RequestProfile.start());
+        try {
+            if (response.getBufferSize() < BUFFER_BYTES) response.setBufferSize(BUFFER_BYTES);
+            chain.doFilter(request, timed);
+        } finally {
+            timed.addTiming();
+            RequestProfile.clear();
+        }
+    }
+
+    // sets the header on the way to the first commit
+    private static final class TimedResponse extends HttpServletResponseWrapper {
+        private final RequestProfile profile;
+        private boolean added;
+        private ServletOutputStream out;
+        private PrintWriter writer;
+
+        TimedResponse(HttpServletResponse response, RequestProfile profile) {
+            super(response);
+            this.profile = profile;
+        }
+
+        void addTiming() {
+            if (added || isCommitted()) return;
+            added = true;
+            setHeader("Server-Timing", profile.header());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                ServletOutputStream real = super.getOutputStream();
+                out = new ServletOutputStream() {
+                    @Override public boolean isReady() { return real.isReady(); }
+                    @Override public void setWriteListener(WriteListener listener) { real.setWriteListener(listener); }
+                    @Override public void write(int b) throws IOException { real.write(b); }
+                    @Override public void write(byte[] b, int off, int len) throws IOException { real.write(b, off, len); }
+
+                    @Override
+                    public void flush() throws IOException {
+                        addTiming();
+                        real.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        addTiming();
+                        real.close();
+                    }
+                };
+            }
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(super.getWriter()) {
+                    @Override
+                    public void flush() {
+                        addTiming();
+                        super.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        addTiming();
+                        super.close();
+                    }
+                };
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addTiming();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.dtd.serverShell.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * media.vod.asset (time until the body is written) and media.vod.asset.bytes
+ * for /media/vod/fs/**, tagged by file type.
+ *
+ * This is on the segment path, so the meters for each type are registered up
+ * front and looked up by index; a request allocates nothing for them. Bytes
+ * are the response's Content-Length, so nothing wraps the output stream.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class VodAssetMetricsFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "/media/vod/fs/";
+
+    private enum Type {
+        M3U8(".m3u8"), M4S(".m4s"), TS(".ts"), MP4(".mp4"), VTT(".vtt"), OTHER("");
+
+        // values() copies the array on every call
+        static final Type[] ALL = values();
+
+        final String suffix;
+
+        Type(String suffix) { this.suffix = suffix; }
+
+        static Type of(String uri) {
+            for (Type t : ALL) {
+                if (t != OTHER && uri.regionMatches(true, uri.length() - t.suffix.length(), t.suffix, 0, t.suffix.length())) {
+                    return t;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    private final Timer[] timers = new Timer[Type.ALL.length];
+    private final DistributionSummary[] bytes = new DistributionSummary[Type.ALL.length];
+
+    public VodAssetMetricsFilter(MeterRegistry meters) {
+        for (Type t : Type.ALL) {
+            String type = t.name().toLowerCase();
+            timers[t.ordinal()] = Timer.builder("media.vod.asset")
+                    .description("Served VOD manifests, segments and subtitles")
+                    .tag("type", type)
+                    .publishPercentileHistogram()
+                    .register(meters);
+            bytes[t.ordinal()] = DistributionSummary.builder("media.vod.asset.bytes")
+                    .baseUnit("bytes")
+                    .tag("type", type)
+                    .register(meters);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        chain.doFilter(request, response);
+
+        // denied or missing files would only drag the numbers down
+        int status = response.getStatus();
+        if (status != HttpServletResponse.SC_OK && status != HttpServletResponse.SC_PARTIAL_CONTENT) return;
+
+        int type = Type.of(request.getRequestURI()).ordinal();
+        timers[type].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        String length = response.getHeader("Content-Length");
+        if (length != null) {
+            try {
+                bytes[type].record(Long.parseLong(length));
+            } catch (NumberFormatException ignored) {
+                // not a size; skip it
+            }
+        }
+    }
+}
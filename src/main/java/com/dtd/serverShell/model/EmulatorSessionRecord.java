@@ -0,0 +1,64 @@
+package com.dtd.serverShell.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "emulatorSessions")  // running emulator sessions, so a restart can reattach to them
+public class EmulatorSessionRecord {
+
+    @Id
+    private String id; // session id
+
+    private String username;
+    private String core;
+    private String rom;
+    private String configPath;
+    private String savePath;
+    private String containerName;
+    private int vncPort;
+    private long startedAt;
+
+    // Constructors
+    public EmulatorSessionRecord() {}
+
+    public EmulatorSessionRecord(String id, String username, String core, String rom, String configPath,
+                                 String savePath, String containerName, int vncPort, long startedAt) {
+        this.id = id;
+        this.username = username;
+        this.core = core;
+        this.rom = rom;
+        this.configPath = configPath;
+        this.savePath = savePath;
+        this.containerName = containerName;
+        this.vncPort = vncPort;
+        this.startedAt = startedAt;
+    }
+
+    // Getters and setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getCore() { return core; }
+    public void setCore(String core) { this.core = core; }
+
+    public String getRom() { return rom; }
+    public void setRom(String rom) { this.rom = rom; }
+
+    public String getConfigPath() { return configPath; }
+    public void setConfigPath(String configPath) { this.configPath = configPath; }
+
+    public String getSavePath() { return savePath; }
+    public void setSavePath(String savePath) { this.savePath = savePath; }
+
+    public String getContainerName() { return containerName; }
+    public void setContainerName(String containerName) { this.containerName = containerName; }
+
+    public int getVncPort() { return vncPort; }
+    public void setVncPort(int vncPort) { this.vncPort = vncPort; }
+
+    public long getStartedAt() { return startedAt; }
+    public void setStartedAt(long startedAt) { this.startedAt = startedAt; }
+}
@@ -0,0 +1,10 @@
+package com.dtd.serverShell.model;
+
+import java.util.List;
+
+// Closed projection of AppUser: only the per-category recent lists the dashboard renders
+public interface UserDashboardView {
+    List<String> getRecentMovies();
+    List<String> getRecentMusic();
+    List<String> getRecentTV();
+}
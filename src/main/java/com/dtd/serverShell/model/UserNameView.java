@@ -0,0 +1,6 @@
+package com.dtd.serverShell.model;
+
+// Closed projection of AppUser: username only
+public interface UserNameView {
+    String getUsername();
+}
@@ -0,0 +1,7 @@
+package com.dtd.serverShell.model;
+
+// Closed projection of AppUser: only username + role are read from Mongo (no password hash)
+public interface UserRoleView {
+    String getUsername();
+    String getRole();
+}
@@ -0,0 +1,218 @@
+package com.dtd.serverShell.relay;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.dtd.serverShell.services.EmulatorSession;
+import com.dtd.serverShell.services.EmulatorSessionRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * /emulator/ws/{session}/{channel}: the emulator's VNC (websockify), audio and
+ * gamepad WebSockets through the app, so clients only need the app's own
+ * port (and its TLS/auth) instead of three host ports per session.
+ *
+ * The handshake checks that the session belongs to the logged-in user; the
+ * relay then opens the same channel on the container's published port
+ * (emulator.relay.host) with the JDK's non-blocking WebSocket client.
+ */
+@Component
+public class EmulatorRelayHandler implements WebSocketHandler, HandshakeInterceptor, SubProtocolCapable {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorRelayHandler.class);
+
+    public static final String PATH = "/emulator/ws/{session}/{channel}";
+
+    private static final String ATTR_SESSION = "emu.session";
+    private static final String ATTR_CHANNEL = "emu.channel";
+
+    // noVNC asks for "binary" (older clients) or nothing
+    private static final List<String> SUB_PROTOCOLS = List.of("binary");
+
+    private final EmulatorSessionRegistry sessions;
+
+    @Value("${emulator.relay.enabled:false}")
+    private boolean enabled;
+
+    @Value("${emulator.relay.host:127.0.0.1}")
+    private String relayHost;
+
+    @Value("${emulator.relay.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private final Map<String, RelayConnection> connections = new ConcurrentHashMap<>();
+
+    // callbacks may block on a slow browser; each connection only ever holds one thread
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public EmulatorRelayHandler(EmulatorSessionRegistry sessions) {
+        this.sessions = sessions;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "emu-relay-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder().executor(executor).build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        connections.values().forEach(c -> c.close(CloseStatus.GOING_AWAY));
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * URLs the client should use instead of the container's ports (relative; the page picks ws/wss).
+     * The noVNC page comes through NoVncAssetRelay; vncPort is only the session's tag for cleanup.
+     */
+    public Map<String, String> urls(EmulatorSession session) {
+        String base = "/emulator/ws/" + session.id() + "/";
+        return Map.of(
+                "vncUrl", "/emulator/vnc/" + session.id() + "/vnc.html?autoconnect=true&resize=scale",
+                "vncPort", String.valueOf(session.vncPort()),
+                "audioUrl", base + "audio",
+                "gamepadUrl", base + "gamepad",
+                "vncRelayPath", base.substring(1) + "vnc");
+    }
+
+    private enum Channel {
+        VNC("/websockify"), AUDIO("/"), GAMEPAD("/");
+
+        final String path;
+
+        Channel(String path) { this.path = path; }
+
+        int port(EmulatorSession s) {
+            return switch (this) {
+                case VNC -> s.container().vncPort();
+                case AUDIO -> s.container().audioPort();
+                case GAMEPAD -> s.container().gamepadPort();
+            };
+        }
+
+        static Optional<Channel> of(String name) {
+            for (Channel c : values()) {
+                if (c.name().equalsIgnoreCase(name)) return Optional.of(c);
+            }
+            return Optional.empty();
+        }
+    }
+
+    // handshake: /emulator/ws/<session>/<channel>, own sessions only
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Principal principal = request.getPrincipal();
+        String[] parts = request.getURI().getPath().split("/");
+        // "", "emulator", "ws", session, channel
+        if (!enabled || parts.length != 5) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        if (principal == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        Optional<EmulatorSession> session = sessions.find(parts[3], principal.getName());
+        Optional<Channel> channel = Channel.of(parts[4]);
+        if (session.isEmpty() || channel.isEmpty()) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        attributes.put(ATTR_SESSION, session.get());
+        attributes.put(ATTR_CHANNEL, channel.get());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return SUB_PROTOCOLS;
+    }
+
+    // relay
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession ws) {
+        EmulatorSession session = (EmulatorSession) ws.getAttributes().get(ATTR_SESSION);
+        Channel channel = (Channel) ws.getAttributes().get(ATTR_CHANNEL);
+        String label = session.containerName() + "/" + channel.name().toLowerCase();
+
+        RelayConnection relay = new RelayConnection(ws, label, sendTimeoutMs);
+        connections.put(ws.getId(), relay);
+
+        WebSocket.Builder builder = client.newWebSocketBuilder().connectTimeout(Duration.ofSeconds(5));
+        String protocol = ws.getAcceptedProtocol();
+        if (protocol != null && !protocol.isEmpty()) builder.subprotocols(protocol);
+        URI target = URI.create("ws://" + relayHost + ":" + channel.port(session) + channel.path);
+        relay.connecting(builder.buildAsync(target, relay));
+
+        sessions.touch(session.id());
+        log.debug("[EMU RELAY] {} opened for {}", label, session.username());
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession ws, WebSocketMessage<?> message) throws Exception {
+        RelayConnection relay = connections.get(ws.getId());
+        if (relay == null) return;
+        try {
+            relay.toContainer(message);
+        } catch (Exception e) {
+            log.debug("[EMU RELAY] {} send to container failed: {}", ws.getId(), e.getMessage());
+            relay.close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession ws, Throwable exception) {
+        RelayConnection relay = connections.remove(ws.getId());
+        if (relay != null) relay.close(CloseStatus.SERVER_ERROR);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession ws, CloseStatus closeStatus) {
+        RelayConnection relay = connections.remove(ws.getId());
+        if (relay != null) relay.close(closeStatus);
+    }
+
+    // fragments are relayed as they come instead of being assembled first
+    @Override
+    public boolean supportsPartialMessages() {
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+package com.dtd.serverShell.relay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import com.dtd.serverShell.services.EmulatorSession;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * noVNC's page and scripts (vnc.html, app/, core/, vendor/) fetched from the
+ * session's container on emulator.relay.host and passed back to the browser.
+ * Together with EmulatorRelayHandler this means a client never needs one of
+ * the container's ports, which are then published on relay.host only.
+ *
+ * GET/HEAD only; the conditional request headers go through so the browser
+ * cache keeps working.
+ */
+@Component
+public class NoVncAssetRelay {
+    private static final Logger log = LoggerFactory.getLogger(NoVncAssetRelay.class);
+
+    private static final List<String> REQUEST_HEADERS = List.of(
+            HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.ACCEPT);
+    private static final List<String> RESPONSE_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
+
+    @Value("${emulator.relay.host:127.0.0.1}")
+    private String relayHost;
+
+    @Value("${emulator.relay.asset-timeout-ms:10000}")
+    private long timeoutMs;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    /**
+     * Serve one noVNC file of the session.
+     *
+     * @param path still percent-encoded, relative to the noVNC root ("vnc.html", "app/ui.js")
+     */
+    public void forward(EmulatorSession session, String path, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        if (!isSafe(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String query = request.getQueryString();
+        URI target;
+        try {
+            target = URI.create("http://" + relayHost + ":" + session.container().vncPort() + "/" + path
+                    + (query == null ? "" : "?" + query));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        HttpRequest.Builder upstream = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMillis(timeoutMs))
+                .method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+        for (String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) upstream.header(name, value);
+        }
+
+        HttpResponse<InputStream> answer;
+        try {
+            answer = client.send(upstream.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        } catch (IOException e) {
+            log.debug("[EMU RELAY] {}/{} unreachable: {}", session.containerName(), path, e.getMessage());
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+            return;
+        }
+
+        try (InputStream body = answer.body()) {
+            response.setStatus(answer.statusCode());
+            for (String name : RESPONSE_HEADERS) {
+                answer.headers().firstValue(name).ifPresent(v -> response.setHeader(name, v));
+            }
+            if ("HEAD".equals(request.getMethod())) return;
+            OutputStream out = response.getOutputStream();
+            body.transferTo(out);
+        }
+    }
+
+    // relative, no dot segments (encoded or not), no scheme/authority tricks
+    private static boolean isSafe(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        if (path.isEmpty() || path.startsWith("/") || path.contains("\\")
+                || lower.contains("%2e") || lower.contains("%2f") || lower.contains("%5c")) {
+            return false;
+        }
+        for (String segment : path.split("/")) {
+            if (segment.equals(".") || segment.equals("..")) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+package com.dtd.serverShell.relay;
+
+import java.io.IOException;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * One browser WebSocket bridged to the matching WebSocket in the container.
+ *
+ * Frames (and fragments of frames) are passed through as they arrive, using
+ * the buffers they came in; nothing is copied or queued here. Each direction
+ * only reads its next frame once the previous one was written, so a reader
+ * that falls behind pushes back on its own TCP connection and nobody else's:
+ * a slow audio consumer stalls the container's audio socket, not the
+ * gamepad or VNC relays, which are separate connections.
+ */
+final class RelayConnection implements WebSocket.Listener {
+    private static final Logger log = LoggerFactory.getLogger(RelayConnection.class);
+
+    private final WebSocketSession client;
+    private final String label;
+    private final long sendTimeoutMs;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile CompletableFuture<WebSocket> upstream;
+
+    RelayConnection(WebSocketSession client, String label, long sendTimeoutMs) {
+        this.client = client;
+        this.label = label;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    void connecting(CompletableFuture<WebSocket> upstream) {
+        this.upstream = upstream;
+        upstream.whenComplete((ws, error) -> {
+            if (error != null) {
+                log.warn("[EMU RELAY] {} could not reach the container: {}", label, error.getMessage());
+                close(CloseStatus.SERVICE_RESTARTED);
+            }
+        });
+    }
+
+    // browser -> container; blocks this connection's reader until the container socket took the frame
+    void toContainer(WebSocketMessage<?> message) throws Exception {
+        WebSocket ws = upstream.get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        CompletableFuture<WebSocket> sent;
+        if (message instanceof BinaryMessage binary) {
+            sent = ws.sendBinary(binary.getPayload(), binary.isLast());
+        } else if (message instanceof TextMessage text) {
+            sent = ws.sendText(text.getPayload(), text.isLast());
+        } else {
+            return; // ping/pong are per hop
+        }
+        sent.get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // container -> browser
+
+    @Override
+    public void onOpen(WebSocket ws) {
+        ws.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket ws, ByteBuffer data, boolean last) {
+        forward(ws, new BinaryMessage(data, last));
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+        forward(ws, new TextMessage(data, last));
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onPing(WebSocket ws, ByteBuffer message) {
+        ws.request(1); // the client answers with a pong itself
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onPong(WebSocket ws, ByteBuffer message) {
+        ws.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        // 1005/1006/1015 only describe what happened, they can't be sent on
+        boolean sendable = statusCode >= 1000 && statusCode < 5000 && statusCode != 1005 && statusCode != 1006 && statusCode != 1015;
+        close(sendable ? new CloseStatus(statusCode) : CloseStatus.NORMAL);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        log.debug("[EMU RELAY] {} container side failed: {}", label, error.getMessage());
+        close(CloseStatus.SERVER_ERROR);
+    }
+
+    private void forward(WebSocket ws, WebSocketMessage<?> message) {
+        try {
+            // blocking write; the next container frame isn't read until it's done
+            client.sendMessage(message);
+            ws.request(1);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("[EMU RELAY] {} browser side failed: {}", label, e.getMessage());
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    void close(CloseStatus status) {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            if (client.isOpen()) client.close(status);
+        } catch (IOException ignored) {
+            // already gone
+        }
+        CompletableFuture<WebSocket> up = upstream;
+        if (up != null) {
+            up.thenAccept(ws -> {
+                if (ws.isOutputClosed()) ws.abort();
+                else ws.sendClose(WebSocket.NORMAL_CLOSURE, "").whenComplete((w, e) -> ws.abort());
+            });
+        }
+    }
+}
@@ -1,10 +1,26 @@
 package com.dtd.serverShell.repository;
 
 import com.dtd.serverShell.model.AppUser;
+import com.dtd.serverShell.model.UserDashboardView;
+import com.dtd.serverShell.model.UserNameView;
+import com.dtd.serverShell.model.UserRoleView;
+
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AppUserRepository extends MongoRepository<AppUser, String> {
     Optional<AppUser> findByUsername(String username);
-}
\ No newline at end of file
+
+    // Projection lookups: fetch only what the caller renders, never the password hash
+    @Query(value = "{ 'username': ?0 }", fields = "{ 'username': 1, 'role': 1 }")
+    Optional<UserRoleView> findRoleByUsername(String username);
+
+    @Query(value = "{ 'username': ?0 }", fields = "{ 'recentMovies': 1, 'recentMusic': 1, 'recentTV': 1 }")
+    Optional<UserDashboardView> findDashboardByUsername(String username);
+
+    @Query(value = "{}", fields = "{ 'username': 1 }")
+    List<UserNameView> findAllUsernames();
+}
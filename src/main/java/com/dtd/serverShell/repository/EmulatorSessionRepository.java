@@ -0,0 +1,8 @@
+package com.dtd.serverShell.repository;
+
+import com.dtd.serverShell.model.EmulatorSessionRecord;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface EmulatorSessionRepository extends MongoRepository<EmulatorSessionRecord, String> {
+}
@@ -2,6 +2,7 @@ package com.dtd.serverShell.security;
 
 import com.dtd.serverShell.model.AppUser;
 import com.dtd.serverShell.repository.AppUserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -10,24 +11,65 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final int MAX_CACHED_USERS = 256;
+
     private final AppUserRepository userRepository;
 
+    // How long a cached login record is trusted; covers edits made directly in Mongo
+    @Value("${auth.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    // Only the immutable fields are cached: Spring Security erases the password on the
+    // UserDetails it authenticated, so every caller gets a freshly built User.
+    private record CachedLogin(String username, String password, String role, long loadedAt) {}
+
+    private final Map<String, CachedLogin> cache = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLogin> eldest) {
+                return size() > MAX_CACHED_USERS;
+            }
+        });
+
+    // bumped on every eviction so a lookup that raced a password change is not cached
+    private final AtomicLong epoch = new AtomicLong();
+
     public CustomUserDetailsService(AppUserRepository userRepository) {
         this.userRepository = userRepository;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        AppUser user = userRepository.findByUsername(username)
-            .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        CachedLogin login = cache.get(username);
+        if (login == null || System.currentTimeMillis() - login.loadedAt() > cacheTtlSeconds * 1000L) {
+            long seen = epoch.get();
+            AppUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+            login = new CachedLogin(user.getUsername(), user.getPassword(), user.getRole(), System.currentTimeMillis());
+            // same compare-and-put as UserProfileCache: evict() bumps the epoch before its remove()
+            // takes the map lock, so a hash read before a password change is never cached after it
+            synchronized (cache) {
+                if (epoch.get() == seen) cache.put(username, login);
+            }
+        }
 
-        return User.withUsername(user.getUsername())
-            .password(user.getPassword())
-            .authorities(new SimpleGrantedAuthority(user.getRole()))
+        return User.withUsername(login.username())
+            .password(login.password())
+            .authorities(new SimpleGrantedAuthority(login.role()))
             .build();
     }
-}
\ No newline at end of file
+
+    // called by UserService after a user is added, removed or gets a new password
+    public void evict(String username) {
+        if (username == null) return;
+        epoch.incrementAndGet();
+        cache.remove(username);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dtd.serverShell.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import passwordHasher.passwordHasher;
+
+/**
+ * Runs password hash checks on a small dedicated pool so a login burst
+ * (everyone reconnecting after a restart) can only occupy auth.hash.threads
+ * cores, leaving the rest for media requests. Requests past the queue are
+ * refused instead of piling up.
+ *
+ * The login request thread waits for its check, so threads + queue is also
+ * the most connector threads logins can hold, each for at most
+ * auth.hash.timeout-ms. That is capped at a quarter of
+ * server.tomcat.threads.max so media requests always keep the rest.
+ */
+@Component
+public class PasswordVerifier {
+    private static final Logger log = LoggerFactory.getLogger(PasswordVerifier.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    public PasswordVerifier(@Value("${auth.hash.threads:2}") int threads,
+                            @Value("${auth.hash.queue:8}") int queueSize,
+                            @Value("${auth.hash.timeout-ms:3000}") long timeoutMs,
+                            @Value("${server.tomcat.threads.max:200}") int connectorThreads) {
+        int maxParked = Math.max(2, connectorThreads / 4);
+        threads = Math.max(1, Math.min(threads, maxParked - 1));
+        int queue = Math.max(1, Math.min(queueSize, maxParked - threads));
+        if (queue != queueSize) {
+            log.warn("[AUTH] auth.hash.queue {} would let logins hold too many of {} request threads, using {}",
+                    queueSize, connectorThreads, queue);
+        }
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue),
+                r -> {
+                    Thread t = new Thread(r, "pw-verify-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMs = timeoutMs;
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) return false;
+        String raw = rawPassword.toString();
+
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> passwordHasher.matches(raw, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            log.warn("[AUTH] Password check queue full ({} waiting), refusing login", executor.getQueue().size());
+            throw new AuthenticationServiceException("Too many logins in progress, try again shortly");
+        }
+
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new AuthenticationServiceException("Password check timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new AuthenticationServiceException("Password check interrupted");
+        } catch (ExecutionException e) {
+            throw new AuthenticationServiceException("Password check failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
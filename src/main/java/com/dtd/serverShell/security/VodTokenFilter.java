@@ -0,0 +1,54 @@
+package com.dtd.serverShell.security;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.dtd.serverShell.services.MediaStore;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Guards /media/vod/fs/** with the folder-scoped token from VodTokenService
+ * instead of a session. SecurityConfig permits the path; this filter is the check.
+ */
+@Component
+public class VodTokenFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "/media/vod/fs/";
+
+    private final VodTokenService vodTokens;
+    private final MediaStore mediaStore;
+
+    public VodTokenFilter(VodTokenService vodTokens, MediaStore mediaStore) {
+        this.vodTokens = vodTokens;
+        this.mediaStore = mediaStore;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String tail = request.getRequestURI().substring(request.getContextPath().length() + PREFIX.length());
+        // resolved the way serveVodAsset will, so ".." can't step out of the token's folder
+        Path file = mediaStore.resolveEncoded(tail);
+        String rel = file == null ? null : mediaStore.relativize(file);
+
+        if (rel == null || !vodTokens.verify(request.getParameter(VodTokenService.PARAM), rel)) {
+            // plain status, no sendError: an /error dispatch would bounce through the login redirect
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,158 @@
+package com.dtd.serverShell.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Short-lived HMAC tokens for /media/vod/fs/**. A token is scoped to one media
+ * folder (the manifest's folder) and carries its own expiry, so segment fetches
+ * are authorized without a session:
+ *
+ *   base64url(folder) "." expiryEpochSeconds "." base64url(HMAC-SHA256(folder \n expiry))
+ */
+@Service
+public class VodTokenService {
+    private static final Logger log = LoggerFactory.getLogger(VodTokenService.class);
+
+    public static final String PARAM = "t";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    // Mac is not thread-safe; one per request thread
+    private final ThreadLocal<Mac> macs;
+
+    public VodTokenService(@Value("${media.token.secret:}") String secret,
+                           @Value("${media.token.ttl-seconds:14400}") long ttlSeconds) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            log.warn("[VOD TOKEN] media.token.secret not set; using a random key, open streams stop at restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /** Issue a token valid for every file under {@code folderRel} (media-root-relative). */
+    public String issue(String folderRel) {
+        String scope = normalizeScope(folderRel);
+        long expires = System.currentTimeMillis() / 1000L + ttlSeconds;
+        return B64.encodeToString(scope.getBytes(StandardCharsets.UTF_8))
+                + "." + expires
+                + "." + B64.encodeToString(sign(scope, expires));
+    }
+
+    /**
+     * True if the token is unexpired, correctly signed, and {@code relPath} (normalized) lies inside its folder;
+     * a token for the media root itself only covers files directly in the root.
+     */
+    public boolean verify(String token, String relPath) {
+        if (token == null || relPath == null) return false;
+
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first <= 0 || second <= first + 1 || second == token.length() - 1) return false;
+
+        long expires;
+        String scope;
+        byte[] given;
+        try {
+            expires = Long.parseLong(token, first + 1, second, 10);
+            scope = new String(B64D.decode(token.substring(0, first)), StandardCharsets.UTF_8);
+            given = B64D.decode(token.substring(second + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        if (expires < System.currentTimeMillis() / 1000L) return false;
+        // the media root's own scope covers only the files directly in it, not the whole library
+        if (scope.isEmpty() ? relPath.indexOf('/') >= 0 : !relPath.startsWith(scope + "/")) return false;
+
+        // constant-time compare so the signature can't be guessed byte by byte
+        return MessageDigest.isEqual(sign(scope, expires), given);
+    }
+
+    /** Append the token as a query parameter to a URI. */
+    public static String withToken(String uri, String token) {
+        if (token == null) return uri;
+        return uri + (uri.indexOf('?') >= 0 ? "&" : "?") + PARAM + "=" + token;
+    }
+
+    /**
+     * Rewrite an HLS manifest so every segment/playlist URI (plain URI lines and
+     * URI="..." attributes such as EXT-X-MAP) carries the token. Absolute URLs to
+     * other hosts are left alone.
+     */
+    public static String signManifest(String manifest, String token) {
+        if (token == null) return manifest;
+
+        StringBuilder out = new StringBuilder(manifest.length() + 64);
+        for (String line : manifest.split("\r?\n", -1)) {
+            if (line.isBlank()) {
+                out.append(line);
+            } else if (line.startsWith("#")) {
+                int at = line.indexOf("URI=\"");
+                int end = at < 0 ? -1 : line.indexOf('"', at + 5);
+                String uri = end < 0 ? null : line.substring(at + 5, end);
+                if (uri != null && !uri.contains("://")) {
+                    out.append(line, 0, at + 5)
+                       .append(withToken(uri, token))
+                       .append(line, end, line.length());
+                } else {
+                    out.append(line);
+                }
+            } else if (line.contains("://")) {
+                out.append(line);
+            } else {
+                out.append(withToken(line.trim(), token));
+            }
+            out.append('\n');
+        }
+        // split(-1) yields a trailing empty element for a final newline; don't double it
+        if (manifest.endsWith("\n")) out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    private byte[] sign(String scope, long expires) {
+        Mac mac = macs.get();
+        mac.update(scope.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) '\n');
+        return mac.doFinal(Long.toString(expires).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC unavailable", e);
+        }
+    }
+
+    private static String normalizeScope(String folderRel) {
+        if (folderRel == null) return "";
+        String s = folderRel.replace('\\', '/');
+        while (s.startsWith("/")) s = s.substring(1);
+        while (s.endsWith("/")) s = s.substring(0, s.length() - 1);
+        return s;
+    }
+}
@@ -0,0 +1,309 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Decides when an emulator launch may start.
+ *
+ * Every session costs its core's weight (N64 is much heavier than GBA) out
+ * of emulator.admission.capacity; running sessions (including reattached
+ * ones) and launches in progress all count. On top of that, while the host
+ * is already under CPU pressure (/proc/pressure/cpu, or the load average per
+ * CPU where PSI isn't available) nothing new is admitted as long as at least
+ * one session is running.
+ *
+ * Launches that don't fit wait in a queue that is fair per user: users take
+ * turns (first request of every user, then second, ...) and only the head of
+ * the queue is admitted, so nobody gets overtaken by lighter launches. One
+ * user can have at most emulator.admission.max-queue-per-user launches
+ * waiting, and a launch nobody waits for any more is dropped with its
+ * ticket.
+ */
+@Service
+public class EmulatorAdmission {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorAdmission.class);
+
+    private static final long RECHECK_MS = 2000;
+
+    /** Thrown when the queue is full or the wait ran out. */
+    public static class RejectedException extends Exception {
+        public RejectedException(String message) { super(message); }
+    }
+
+    /**
+     * A submitted launch. release() once it became a session (or failed), or
+     * to cancel it: a launch still waiting leaves the queue and is never
+     * admitted. Idempotent.
+     */
+    public interface Ticket {
+        void release();
+    }
+
+    /** Callbacks for one waiting launch. */
+    public interface Waiter {
+        void position(int position);
+        void admitted(Ticket ticket);
+        void rejected(String reason);
+    }
+
+    private final class Entry implements Ticket {
+        final String username;
+        final String core;
+        final int weight;
+        final long queuedAt = System.currentTimeMillis();
+        final Waiter waiter;
+        int lastPosition = -1;
+        boolean released;
+
+        Entry(String username, String core, Waiter waiter) {
+            this.username = username;
+            this.core = core;
+            this.weight = weight(core);
+            this.waiter = waiter;
+        }
+
+        @Override
+        public void release() {
+            synchronized (EmulatorAdmission.this) {
+                if (released) return;
+                released = true;
+                if (waiting.remove(this)) {
+                    log.info("[EMU ADMISSION] {} launch for {} cancelled after {}ms in the queue", core, username,
+                            System.currentTimeMillis() - queuedAt);
+                }
+                launching.remove(this);
+            }
+            scheduler.execute(EmulatorAdmission.this::dispatch);
+        }
+    }
+
+    private final EmulatorSessionRegistry sessions;
+
+    @Value("${emulator.admission.capacity:8}")
+    private int capacity;
+
+    @Value("${emulator.admission.weight.gba:1}")
+    private int gbaWeight;
+
+    @Value("${emulator.admission.weight.n64:3}")
+    private int n64Weight;
+
+    // % of time runnable tasks were stalled on CPU over the last 10s; 0 disables the check
+    @Value("${emulator.admission.max-cpu-pressure:40}")
+    private double maxCpuPressure;
+
+    @Value("${emulator.admission.max-load-per-cpu:1.5}")
+    private double maxLoadPerCpu;
+
+    @Value("${emulator.admission.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${emulator.admission.max-queue-per-user:2}")
+    private int maxQueuePerUser;
+
+    @Value("${emulator.admission.max-wait-seconds:600}")
+    private long maxWaitSeconds;
+
+    // guarded by this
+    private final List<Entry> waiting = new ArrayList<>();
+    private final List<Entry> launching = new ArrayList<>();
+    private String lastHoldReason;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "emu-admission");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EmulatorAdmission(EmulatorSessionRegistry sessions) {
+        this.sessions = sessions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // sessions end on their own (exit, reaper, cleanup); re-check instead of hooking every one
+        scheduler.scheduleWithFixedDelay(this::dispatch, RECHECK_MS, RECHECK_MS, TimeUnit.MILLISECONDS);
+        log.info("[EMU ADMISSION] Capacity {} (GBA weight {}, N64 weight {})", capacity, gbaWeight, n64Weight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public int weight(String core) {
+        return "N64".equals(core) ? n64Weight : gbaWeight;
+    }
+
+    /**
+     * Queue a launch. Unless it is admitted straight away, the waiter is told
+     * its position (1 = next) every time it changes, until admitted() or
+     * rejected(). Releasing the returned ticket before that cancels the launch.
+     */
+    public Ticket submit(String username, String core, Waiter waiter) throws RejectedException {
+        Entry entry = new Entry(username, core, waiter);
+        if (entry.weight > capacity) {
+            throw new RejectedException(core + " sessions are disabled on this server");
+        }
+        synchronized (this) {
+            if (waiting.size() >= maxQueue) {
+                throw new RejectedException("Too many emulator launches waiting, try again later");
+            }
+            if (maxQueuePerUser > 0 && waiting.stream().filter(e -> e.username.equals(username)).count() >= maxQueuePerUser) {
+                throw new RejectedException("You already have " + maxQueuePerUser + " launches waiting");
+            }
+            waiting.add(entry);
+        }
+        dispatch();
+        return entry;
+    }
+
+    // admit from the head while it fits, then tell everyone else where they stand
+    void dispatch() {
+        List<Entry> admitted = new ArrayList<>();
+        List<Entry> expired = new ArrayList<>();
+        List<Entry> moved = new ArrayList<>();
+        synchronized (this) {
+            long cutoff = System.currentTimeMillis() - maxWaitSeconds * 1000L;
+            waiting.removeIf(e -> {
+                if (maxWaitSeconds > 0 && e.queuedAt < cutoff) {
+                    expired.add(e);
+                    return true;
+                }
+                return false;
+            });
+
+            List<Entry> order = fairOrder();
+            int used = usedWeight();
+            String hold = null;
+            for (Entry head : order) {
+                if (used + head.weight > capacity) {
+                    hold = "capacity " + used + "/" + capacity;
+                    break;
+                }
+                if (used > 0 && (hold = hostPressure()) != null) break;
+                waiting.remove(head);
+                launching.add(head);
+                admitted.add(head);
+                used += head.weight;
+            }
+            if (hold != null && !hold.equals(lastHoldReason) && !waiting.isEmpty()) {
+                log.info("[EMU ADMISSION] Holding {} launch(es): {}", waiting.size(), hold);
+            }
+            lastHoldReason = hold;
+
+            int position = 0;
+            for (Entry e : fairOrder()) {
+                position++;
+                if (e.lastPosition != position) {
+                    e.lastPosition = position;
+                    moved.add(e);
+                }
+            }
+        }
+
+        // callbacks outside the lock; they publish to SSE and hand off to the launch executor
+        for (Entry e : expired) e.waiter.rejected("Timed out waiting for a free emulator slot");
+        for (Entry e : admitted) {
+            log.info("[EMU ADMISSION] Admitted {} launch for {} after {}ms", e.core, e.username,
+                    System.currentTimeMillis() - e.queuedAt);
+            e.waiter.admitted(e);
+        }
+        for (Entry e : moved) e.waiter.position(e.lastPosition);
+    }
+
+    // round robin over users: everyone's oldest request, then everyone's second, ...
+    private List<Entry> fairOrder() {
+        Map<String, List<Entry>> byUser = new LinkedHashMap<>();
+        for (Entry e : waiting) byUser.computeIfAbsent(e.username, u -> new ArrayList<>()).add(e);
+        List<Entry> order = new ArrayList<>(waiting.size());
+        for (int round = 0; order.size() < waiting.size(); round++) {
+            for (List<Entry> mine : byUser.values()) {
+                if (round < mine.size()) order.add(mine.get(round));
+            }
+        }
+        return order;
+    }
+
+    private int usedWeight() {
+        int used = 0;
+        for (EmulatorSession s : sessions.all()) used += weight(s.core());
+        for (Entry e : launching) used += e.weight;
+        return used;
+    }
+
+    // why the host shouldn't take another session right now, or null
+    private String hostPressure() {
+        double pressure = cpuPressure();
+        if (pressure >= 0) {
+            return maxCpuPressure > 0 && pressure > maxCpuPressure ? "cpu pressure " + pressure + "%" : null;
+        }
+        double load = loadPerCpu();
+        return maxLoadPerCpu > 0 && load > maxLoadPerCpu ? String.format("load %.2f per cpu", load) : null;
+    }
+
+    // some avg10=1.23 avg60=... avg300=... total=...
+    private static double cpuPressure() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/pressure/cpu"))) {
+                if (!line.startsWith("some ")) continue;
+                for (String field : line.split(" ")) {
+                    if (field.startsWith("avg10=")) return Double.parseDouble(field.substring(6));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // no PSI (older kernel, not Linux)
+        }
+        return -1;
+    }
+
+    private static double loadPerCpu() {
+        Path loadavg = Paths.get("/proc/loadavg");
+        try {
+            double load = Double.parseDouble(Files.readString(loadavg).split(" ")[0]);
+            return load / Runtime.getRuntime().availableProcessors();
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /** Capacity in use, host pressure and the queue, for the admin endpoint. */
+    public synchronized Map<String, Object> status() {
+        List<Map<String, Object>> queue = new ArrayList<>();
+        for (Entry e : fairOrder()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("username", e.username);
+            m.put("core", e.core);
+            m.put("waitingMs", System.currentTimeMillis() - e.queuedAt);
+            queue.add(m);
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("capacity", capacity);
+        status.put("used", usedWeight());
+        status.put("launching", launching.size());
+        status.put("cpuPressure", cpuPressure());
+        status.put("loadPerCpu", loadPerCpu());
+        status.put("holding", lastHoldReason);
+        status.put("queue", queue);
+        return status;
+    }
+}
@@ -0,0 +1,167 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * One background emulator launch. Progress is kept so a late (or reconnecting)
+ * EventSource gets the full history replayed, then live events until the job
+ * ends with "ready" (URLs) or "failed" (error). While the launch waits for
+ * admission it sends "queued" events with its position in line.
+ *
+ * A job ends "cancelled" when its owner deletes it or nobody has listened
+ * to it for a while; cancel() gives up its admission ticket, and the launch
+ * thread checks isCancelled() so no container is left behind for nobody.
+ */
+public class EmulatorLaunchJob {
+
+    public enum State { RUNNING, READY, FAILED, CANCELLED }
+
+    private record Event(String name, Object data) {}
+
+    private final String id;
+    private final String username;
+    private final String rom;
+
+    private final List<Event> history = new ArrayList<>();
+    private final List<SseEmitter> listeners = new ArrayList<>();
+    private State state = State.RUNNING;
+    private long finishedAt;
+    private EmulatorAdmission.Ticket ticket;
+    // since when nobody is subscribed (creation counts: the client subscribes right after launching)
+    private long unwatchedSince = System.currentTimeMillis();
+
+    public EmulatorLaunchJob(String id, String username, String rom) {
+        this.id = id;
+        this.username = username;
+        this.rom = rom;
+    }
+
+    public String getId() { return id; }
+    public String getUsername() { return username; }
+    public String getRom() { return rom; }
+
+    public synchronized State getState() { return state; }
+    public synchronized long getFinishedAt() { return finishedAt; }
+    public synchronized boolean isCancelled() { return state == State.CANCELLED; }
+
+    /** The admission ticket, released by cancel(); a job cancelled already releases it right away. */
+    public void hold(EmulatorAdmission.Ticket ticket) {
+        synchronized (this) {
+            if (state != State.CANCELLED) {
+                this.ticket = ticket;
+                return;
+            }
+        }
+        ticket.release();
+    }
+
+    /** Stop waiting for (or using) a slot; false if the job had already ended. */
+    public boolean cancel(String reason) {
+        EmulatorAdmission.Ticket held;
+        synchronized (this) {
+            if (state != State.RUNNING) return false;
+            publish("cancelled", Map.of("reason", reason), State.CANCELLED);
+            held = ticket;
+            ticket = null;
+        }
+        if (held != null) held.release();
+        return true;
+    }
+
+    /**
+     * How long the running job has had no live subscriber, in ms (0 while
+     * someone listens). Subscribers are pinged first, so a closed tab counts
+     * as gone even when no event was due.
+     */
+    public synchronized long unwatchedMs(long now) {
+        if (state != State.RUNNING) return 0;
+        int before = listeners.size();
+        listeners.removeIf(l -> !ping(l));
+        if (before > 0 && listeners.isEmpty()) unwatchedSince = now;
+        if (!listeners.isEmpty()) return 0;
+        return now - unwatchedSince;
+    }
+
+    public void progress(String message) {
+        publish("progress", Map.of("message", message), null);
+    }
+
+    // waiting for admission; only the latest position is worth replaying
+    public synchronized void queued(int position) {
+        if (state != State.RUNNING) return;
+        if (!history.isEmpty() && "queued".equals(history.get(history.size() - 1).name())) {
+            history.remove(history.size() - 1);
+        }
+        publish("queued", Map.of("position", position), null);
+    }
+
+    /** False if the job had already ended (cancelled), so nobody gets these URLs. */
+    public boolean ready(Map<String, String> urls) {
+        return publish("ready", urls, State.READY);
+    }
+
+    public void fail(String error) {
+        publish("failed", Map.of("error", error == null ? "Launch failed" : error), State.FAILED);
+    }
+
+    public synchronized void subscribe(SseEmitter emitter) {
+        for (Event e : history) {
+            if (!send(emitter, e)) return;
+        }
+        if (state != State.RUNNING) {
+            emitter.complete();
+            return;
+        }
+        listeners.add(emitter);
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+        emitter.onError(t -> unsubscribe(emitter));
+    }
+
+    private synchronized void unsubscribe(SseEmitter emitter) {
+        if (listeners.remove(emitter) && listeners.isEmpty()) unwatchedSince = System.currentTimeMillis();
+    }
+
+    private synchronized boolean publish(String name, Object data, State terminal) {
+        if (state != State.RUNNING) return false;
+
+        Event e = new Event(name, data);
+        history.add(e);
+        int before = listeners.size();
+        listeners.removeIf(l -> !send(l, e));
+        if (before > 0 && listeners.isEmpty()) unwatchedSince = System.currentTimeMillis();
+
+        if (terminal != null) {
+            state = terminal;
+            finishedAt = System.currentTimeMillis();
+            List<SseEmitter> done = new ArrayList<>(listeners);
+            listeners.clear();
+            done.forEach(SseEmitter::complete);
+        }
+        return true;
+    }
+
+    private static boolean ping(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("ping"));
+            return true;
+        } catch (IOException | IllegalStateException ex) {
+            return false;
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, Event e) {
+        try {
+            emitter.send(SseEmitter.event().name(e.name()).data(e.data()));
+            return true;
+        } catch (IOException | IllegalStateException ex) {
+            // client went away; EventSource will reconnect and get the history again
+            return false;
+        }
+    }
+}
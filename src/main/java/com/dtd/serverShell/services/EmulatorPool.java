@@ -0,0 +1,388 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.docker.ContainerHandle;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps a few retroarch containers per core ("GBA" / "N64" as in
+ * simplifyCoreEmulator) started and past the noVNC ready line, so a launch
+ * only has to hand one over.
+ *
+ * A pool container belongs to nobody until it is claimed, so it never sees
+ * anyone's files: it binds its own staging dirs <rom.save.dir>/pool/<slot>/
+ * {config,save} (empty while idle) and the read-only ROM tree, and runs with
+ * EMU_STANDBY=1. Claiming one copies the user's config and save dirs into the
+ * slot (cp --reflink=auto) and runs the image's claim hook:
+ *   docker exec <container> <claim-command> <rom> <core lib>
+ * which starts RetroArch on /config and /save as a cold start would. When the
+ * container exits the slot is copied back into the user's dirs, versioned in
+ * SaveStore and deleted. A slot is used by one session only; the pool never
+ * hands a container out twice. Each claimed slot records its owner next to
+ * (not inside) the mounted dirs, so a slot whose app went down with it is
+ * still copied back on the next startup.
+ *
+ * With emulator.pool.gba/n64 at 0 (default) nothing is pooled and every
+ * launch is a cold docker run; the image has to implement standby mode and
+ * the claim hook before the pool is turned on.
+ */
+@Service
+public class EmulatorPool {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorPool.class);
+
+    private static final int CLAIM_TIMEOUT_SECONDS = 15;
+    // idle containers that died are replaced on this period as well as after each claim
+    private static final long REFILL_SECONDS = 30;
+    private static final String CLAIM_FILE = "claim.properties";
+
+    private final EmulatorService emulatorService;
+    private final PortLeaseManager portLeases;
+    private final EmulatorSessionRegistry sessions;
+    private final SaveStore saveStore;
+    private final RomIndex romIndex;
+    private final String romSaveDir;
+    private final int gbaSize;
+    private final int n64Size;
+    private final String claimCommand;
+
+    /** An idle container and the staging dir only it binds. */
+    private record Slot(EmulatorService.StartedContainer container, Path stageDir) {}
+
+    /** A claimed container; configPath/savePath are its staging dirs, which the session works in. */
+    public record Claimed(EmulatorService.StartedContainer container, Path configPath, Path savePath) {}
+
+    private final Map<String, Deque<Slot>> idle = Map.of(
+            "GBA", new ConcurrentLinkedDeque<>(),
+            "N64", new ConcurrentLinkedDeque<>());
+
+    // one thread: fills are serialized, so the pool never overshoots its size
+    private final ScheduledExecutorService refillExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "emu-pool-refill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EmulatorPool(EmulatorService emulatorService, PortLeaseManager portLeases,
+                        EmulatorSessionRegistry sessions, SaveStore saveStore, RomIndex romIndex,
+                        @Value("${rom.save.dir}") String romSaveDir,
+                        @Value("${emulator.pool.gba:0}") int gbaSize,
+                        @Value("${emulator.pool.n64:0}") int n64Size,
+                        @Value("${emulator.pool.claim-command:/usr/local/bin/claim-session}") String claimCommand) {
+        this.emulatorService = emulatorService;
+        this.portLeases = portLeases;
+        this.sessions = sessions;
+        this.saveStore = saveStore;
+        this.romIndex = romIndex;
+        this.romSaveDir = romSaveDir;
+        this.gbaSize = gbaSize;
+        this.n64Size = n64Size;
+        this.claimCommand = claimCommand;
+    }
+
+    // runs after EmulatorSessionRecovery, so staging dirs of reattached sessions are known
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!EmulatorService.isLinux() || !isEnabled()) return;
+        removeStaleSlots();
+        log.info("[EMU POOL] Warming pool: GBA={} N64={}", gbaSize, n64Size);
+        refillExecutor.scheduleWithFixedDelay(() -> {
+            fill("GBA");
+            fill("N64");
+        }, 0, REFILL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public boolean isEnabled() {
+        return gbaSize > 0 || n64Size > 0;
+    }
+
+    /**
+     * Hand an idle container of this core to the user: stage their dirs into
+     * its slot and start the ROM. Empty when the pool is empty/disabled or the
+     * claim fails; the caller then cold-starts. The pool is topped up in the
+     * background either way.
+     *
+     * @param romArg the ROM as the container sees it (as for a cold start)
+     */
+    public Optional<Claimed> claim(String username, String core, Path configPath, Path savePath, String romArg) {
+        Deque<Slot> queue = idle.get(core);
+        if (queue == null || targetSize(core) <= 0) return Optional.empty();
+        try {
+            Slot slot;
+            while ((slot = queue.poll()) != null) {
+                if (!slot.container().handle().isAlive()) {
+                    deleteTree(slot.stageDir());
+                    continue;
+                }
+                Optional<Claimed> claimed = claim(slot, username, core, configPath, savePath, romArg);
+                if (claimed.isPresent()) return claimed;
+            }
+            return Optional.empty();
+        } finally {
+            refill(core);
+        }
+    }
+
+    private Optional<Claimed> claim(Slot slot, String username, String core, Path configPath, Path savePath,
+                                    String romArg) {
+        EmulatorService.StartedContainer c = slot.container();
+        Path stageConfig = slot.stageDir().resolve("config");
+        Path stageSave = slot.stageDir().resolve("save");
+        try {
+            writeClaim(slot.stageDir(), username, core);
+            copyTree(configPath, stageConfig);
+            copyTree(savePath, stageSave);
+        } catch (IOException e) {
+            log.warn("[EMU POOL] Could not stage {}'s dirs into {}: {}", username, c.name(), e.getMessage());
+            discard(slot);
+            return Optional.empty();
+        }
+        // from here the slot holds the user's files; they go back whenever the container exits
+        ContainerHandle handle = syncBackOnExit(c.handle(), slot.stageDir());
+        if (!emulatorService.exec(c.name(), List.of(claimCommand, romArg, EmulatorService.coreLibrary(core)),
+                CLAIM_TIMEOUT_SECONDS)) {
+            stopQuietly(c.name());
+            return Optional.empty();
+        }
+        log.info("[EMU POOL] {} claimed {} for {}", core, c.name(), username);
+        EmulatorService.StartedContainer claimed = new EmulatorService.StartedContainer(
+                c.name(), core, c.ports(), handle, new CountDownLatch(0));
+        return Optional.of(new Claimed(claimed, stageConfig, stageSave));
+    }
+
+    /**
+     * For EmulatorSessionRecovery: a session reattached after a restart still
+     * needs its slot copied back on exit if it was claimed from the pool.
+     */
+    public ContainerHandle reattached(Path configPath, ContainerHandle handle) {
+        Path stageDir = configPath.toAbsolutePath().normalize().getParent();
+        if (stageDir == null || !poolRoot().equals(stageDir.getParent())) return handle;
+        return syncBackOnExit(handle, stageDir);
+    }
+
+    public int idleCount(String core) {
+        Deque<Slot> queue = idle.get(core);
+        return queue == null ? 0 : queue.size();
+    }
+
+    private int targetSize(String core) {
+        return "GBA".equals(core) ? gbaSize : n64Size;
+    }
+
+    private void refill(String core) {
+        if (targetSize(core) <= 0) return;
+        refillExecutor.execute(() -> fill(core));
+    }
+
+    private void fill(String core) {
+        Deque<Slot> queue = idle.get(core);
+        queue.removeIf(slot -> {
+            if (slot.container().handle().isAlive()) return false;
+            deleteTree(slot.stageDir());
+            return true;
+        });
+
+        while (queue.size() < targetSize(core)) {
+            Path stageDir = poolRoot().resolve(UUID.randomUUID().toString());
+            EmulatorService.StartedContainer c = null;
+            try {
+                Files.createDirectories(stageDir.resolve("config"));
+                Files.createDirectories(stageDir.resolve("save"));
+                List<String> volumes = new ArrayList<>(List.of(
+                        stageDir.resolve("config") + ":/config",
+                        stageDir.resolve("save") + ":/save"));
+                Optional<Path> romDir = romIndex.romDir();
+                if (romDir.isPresent()) volumes.add(romDir.get() + ":" + EmulatorService.ROM_CONTAINER_DIR + ":ro");
+
+                PortLeaseManager.PortLease ports = portLeases.acquire();
+                c = emulatorService.start("emulator-pool-" + core.toLowerCase() + "-" + ports.vncPort(), core, ports,
+                        volumes, List.of("EMU_STANDBY=1"), List.of());
+                if (!emulatorService.awaitReady(c)) {
+                    log.warn("[EMU POOL] {} did not become ready; stopping pool fill for {}", c.name(), core);
+                    stopQuietly(c.name());
+                    deleteTree(stageDir);
+                    return;
+                }
+                queue.add(new Slot(c, stageDir));
+                log.info("[EMU POOL] {} idle and ready ({}/{})", c.name(), queue.size(), targetSize(core));
+            } catch (Exception e) {
+                log.warn("[EMU POOL] Could not start {} pool container: {}", core, e.getMessage());
+                if (c != null) stopQuietly(c.name());
+                deleteTree(stageDir);
+                return;
+            }
+        }
+    }
+
+    // a handle whose onExit completes only once the slot is back in the user's dirs
+    private ContainerHandle syncBackOnExit(ContainerHandle handle, Path stageDir) {
+        CompletableFuture<Integer> exit = handle.onExit().handle((code, error) -> {
+            syncBack(stageDir);
+            return code != null ? code : -1;
+        });
+        return new ContainerHandle() {
+            @Override public String name() { return handle.name(); }
+            @Override public CompletableFuture<Integer> onExit() { return exit; }
+        };
+    }
+
+    // copy a claimed slot into its owner's dirs, version the saves and drop the slot
+    private void syncBack(Path stageDir) {
+        try {
+            Properties claim = readClaim(stageDir);
+            String username = claim.getProperty("username");
+            String core = claim.getProperty("core");
+            Path userRoot = Paths.get(romSaveDir, "users", username);
+            Path savePath = userRoot.resolve("save/" + core);
+            // files RetroArch deleted stay deleted in the slot only; nothing of the user's is removed
+            copyTree(stageDir.resolve("config"), userRoot.resolve("config/" + core));
+            copyTree(stageDir.resolve("save"), savePath);
+            saveStore.snapshotDir(username, core, savePath);
+            deleteTree(stageDir);
+            log.info("[EMU POOL] {} synced back to {}'s dirs", stageDir.getFileName(), username);
+        } catch (IOException | RuntimeException e) {
+            // keep the slot so nothing is lost; the next startup tries again
+            log.error("[EMU POOL] Could not sync {} back, kept it: {}", stageDir, e.getMessage());
+        }
+    }
+
+    // slots of a previous run: idle ones are just dropped (recovery stopped their containers),
+    // claimed ones whose session is gone go back to their owner first
+    private void removeStaleSlots() {
+        Path root = poolRoot();
+        if (!Files.isDirectory(root)) return;
+        Set<Path> inUse = sessions.all().stream()
+                .map(s -> s.configPath().toAbsolutePath().normalize().getParent())
+                .collect(Collectors.toSet());
+        try (Stream<Path> slots = Files.list(root)) {
+            for (Path slot : (Iterable<Path>) slots::iterator) {
+                if (inUse.contains(slot)) continue;
+                if (Files.exists(slot.resolve(CLAIM_FILE))) {
+                    syncBack(slot);
+                } else {
+                    deleteTree(slot);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[EMU POOL] Could not clean {}: {}", root, e.getMessage());
+        }
+    }
+
+    private static void writeClaim(Path stageDir, String username, String core) throws IOException {
+        Properties claim = new Properties();
+        claim.setProperty("username", username);
+        claim.setProperty("core", core);
+        try (OutputStream out = Files.newOutputStream(stageDir.resolve(CLAIM_FILE))) {
+            claim.store(out, null);
+        }
+    }
+
+    private static Properties readClaim(Path stageDir) throws IOException {
+        Properties claim = new Properties();
+        try (InputStream in = Files.newInputStream(stageDir.resolve(CLAIM_FILE))) {
+            claim.load(in);
+        }
+        if (claim.getProperty("username") == null || claim.getProperty("core") == null) {
+            throw new IOException("incomplete " + CLAIM_FILE);
+        }
+        return claim;
+    }
+
+    private Path poolRoot() {
+        return Paths.get(romSaveDir, "pool").toAbsolutePath().normalize();
+    }
+
+    private void discard(Slot slot) {
+        stopQuietly(slot.container().name());
+        deleteTree(slot.stageDir());
+    }
+
+    private void stopQuietly(String containerName) {
+        try {
+            emulatorService.stopContainer(containerName);
+        } catch (Exception e) {
+            log.warn("[EMU POOL] Failed to stop {}: {}", containerName, e.getMessage());
+        }
+    }
+
+    // contents of from into to, overwriting; clones where the filesystem can (cp --reflink=auto)
+    private static void copyTree(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        if (!Files.isDirectory(from)) return;
+        if (EmulatorService.isLinux()) {
+            try {
+                Process p = new ProcessBuilder("cp", "-a", "--reflink=auto", from + "/.", to.toString())
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (p.waitFor() == 0) return;
+            } catch (IOException e) {
+                log.debug("[EMU POOL] cp unavailable: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while copying " + from, e);
+            }
+        }
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path source : (Iterable<Path>) files::iterator) {
+                Path dest = to.resolve(from.relativize(source).toString());
+                if (Files.isDirectory(source)) {
+                    Files.createDirectories(dest);
+                } else {
+                    Files.copy(source, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+    }
+
+    private static void deleteTree(Path dir) {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            log.warn("[EMU POOL] Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+        idle.values().forEach(queue -> {
+            Slot slot;
+            while ((slot = queue.poll()) != null) discard(slot);
+        });
+    }
+}
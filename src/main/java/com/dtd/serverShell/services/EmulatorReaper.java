@@ -0,0 +1,227 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Stops emulator sessions nobody is playing any more.
+ *
+ * Players connect straight to the container's published ports, so activity is
+ * read from the container's own network namespace: any ESTABLISHED TCP
+ * connection on the VNC, audio or gamepad port in /proc/<pid>/net/tcp{,6}
+ * counts, as does save upload/download (EmulatorSessionRegistry.touch). A
+ * session idle longer than emulator.idle-timeout-seconds is stopped; its port
+ * lease and registry entry go with the container's exit.
+ *
+ * When those tables can't be read the session's activity is unknown, and an
+ * unknown session is never reaped. A session is only dropped without a stop
+ * when the runtime's inspect confirms its container isn't running.
+ */
+@Service
+public class EmulatorReaper {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorReaper.class);
+
+    private static final int MAX_ACTIONS = 50;
+    private static final String TCP_ESTABLISHED = "01";
+    private static final Set<Integer> PORTS = Set.of(EmulatorService.VNC_CONTAINER_PORT,
+            EmulatorService.AUDIO_CONTAINER_PORT, EmulatorService.GAMEPAD_CONTAINER_PORT);
+
+    /** One thing the reaper did, for the status endpoint. */
+    public record Action(long at, String sessionId, String username, String container, String reason, boolean stopped) {}
+
+    private final EmulatorSessionRegistry sessions;
+    private final EmulatorService emulatorService;
+    private final PortLeaseManager portLeases;
+
+    @Value("${emulator.idle-timeout-seconds:600}")
+    private long idleTimeoutSeconds;
+
+    @Value("${emulator.reaper.interval-seconds:30}")
+    private long intervalSeconds;
+
+    // session id -> container pid (stable for the container's life, saves an inspect per sweep)
+    private final Map<String, Integer> pids = new ConcurrentHashMap<>();
+    // sessions whose connection tables couldn't be read (warned once each)
+    private final Set<String> unreadable = ConcurrentHashMap.newKeySet();
+    // guarded by itself
+    private final Deque<Action> actions = new ArrayDeque<>();
+    private volatile long lastSweepAt;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "emu-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EmulatorReaper(EmulatorSessionRegistry sessions, EmulatorService emulatorService, PortLeaseManager portLeases) {
+        this.sessions = sessions;
+        this.emulatorService = emulatorService;
+        this.portLeases = portLeases;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!EmulatorService.isLinux() || idleTimeoutSeconds <= 0) return;
+        scheduler.scheduleWithFixedDelay(this::sweep, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("[EMU REAPER] Stopping sessions idle for more than {}s (checked every {}s)", idleTimeoutSeconds, intervalSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void sweep() {
+        long now = System.currentTimeMillis();
+        lastSweepAt = now;
+        List<String> ids = sessions.all().stream().map(EmulatorSession::id).toList();
+        pids.keySet().retainAll(ids);
+        unreadable.retainAll(ids);
+
+        for (EmulatorSession session : sessions.all()) {
+            try {
+                if (!session.container().handle().isAlive()) {
+                    // exit hook normally beats us to it
+                    sessions.remove(session);
+                    continue;
+                }
+                Integer pid = pids.get(session.id());
+                if (pid == null) {
+                    pid = emulatorService.containerPid(session.containerName());
+                    if (pid <= 0) {
+                        dropExited(session);
+                        continue;
+                    }
+                    pids.put(session.id(), pid);
+                }
+                OptionalInt connections = connections(pid);
+                if (connections.isEmpty()) {
+                    // the pid may be stale: inspect again next sweep, and leave the session alone meanwhile
+                    pids.remove(session.id());
+                    if (unreadable.add(session.id())) {
+                        log.warn("[EMU REAPER] Can't read connections of {} from /proc/{}/net; it won't be reaped while that lasts",
+                                session.containerName(), pid);
+                    }
+                    continue;
+                }
+                unreadable.remove(session.id());
+                if (connections.getAsInt() > 0) {
+                    sessions.touch(session.id());
+                    continue;
+                }
+
+                long idleMs = now - sessions.lastActivity(session.id());
+                if (idleMs >= idleTimeoutSeconds * 1000L) {
+                    boolean stopped = emulatorService.stopContainer(session.containerName());
+                    if (stopped) sessions.remove(session);
+                    record(session, "idle " + idleMs / 1000 + "s", stopped);
+                    log.info("[EMU REAPER] {} ({}) idle {}s, stopped={}", session.containerName(), session.username(), idleMs / 1000, stopped);
+                }
+            } catch (Exception e) {
+                log.warn("[EMU REAPER] Could not check {}: {}", session.containerName(), e.getMessage());
+            }
+        }
+    }
+
+    // inspect says the container isn't running but its exit never reached us: do what the exit hook would have
+    private void dropExited(EmulatorSession session) throws IOException {
+        emulatorService.stopContainer(session.containerName()); // no-op unless it came back in between
+        session.container().ports().release();
+        sessions.remove(session);
+        record(session, "container not running", false);
+        log.info("[EMU REAPER] {} ({}) is no longer running; session dropped", session.containerName(), session.username());
+    }
+
+    // established connections on the emulator's ports; empty when the container's tables can't be read
+    private static OptionalInt connections(int pid) {
+        Path net = Paths.get("/proc", String.valueOf(pid), "net");
+        try {
+            int count = established(net.resolve("tcp"), PORTS);
+            // no tcp6 table on a kernel without IPv6
+            Path tcp6 = net.resolve("tcp6");
+            if (Files.exists(tcp6)) count += established(tcp6, PORTS);
+            return OptionalInt.of(count);
+        } catch (IOException | SecurityException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    //   sl  local_address rem_address   st ...
+    //    0: 0100007F:CD1C 0100007F:9C40 01 ...
+    static int established(Path table, Set<Integer> ports) throws IOException {
+        int count = 0;
+        List<String> lines = Files.readAllLines(table);
+        for (int i = 1; i < lines.size(); i++) {
+            String[] f = lines.get(i).trim().split("\\s+");
+            if (f.length < 4 || !TCP_ESTABLISHED.equals(f[3])) continue;
+            int colon = f[1].lastIndexOf(':');
+            if (colon > 0 && ports.contains(Integer.parseInt(f[1].substring(colon + 1), 16))) count++;
+        }
+        return count;
+    }
+
+    private void record(EmulatorSession session, String reason, boolean stopped) {
+        synchronized (actions) {
+            if (actions.size() == MAX_ACTIONS) actions.removeLast();
+            actions.addFirst(new Action(System.currentTimeMillis(), session.id(), session.username(),
+                    session.containerName(), reason, stopped));
+        }
+    }
+
+    /** Sessions with their idle time, recent reaper actions, and free port slots. */
+    public Map<String, Object> status() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> running = new ArrayList<>();
+        for (EmulatorSession s : sessions.all()) {
+            running.add(describe(s, now));
+        }
+        List<Action> recent;
+        synchronized (actions) {
+            recent = new ArrayList<>(actions);
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("idleTimeoutSeconds", idleTimeoutSeconds);
+        status.put("lastSweepAt", lastSweepAt);
+        status.put("freePortSlots", portLeases.available());
+        status.put("sessions", running);
+        status.put("actions", recent);
+        return status;
+    }
+
+    public Map<String, Object> describe(EmulatorSession s, long now) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sessionId", s.id());
+        m.put("username", s.username());
+        m.put("core", s.core());
+        m.put("rom", s.rom());
+        m.put("container", s.containerName());
+        m.put("vncPort", s.vncPort());
+        m.put("startedAt", s.startedAt());
+        m.put("idleSeconds", (now - sessions.lastActivity(s.id())) / 1000);
+        return m;
+    }
+}
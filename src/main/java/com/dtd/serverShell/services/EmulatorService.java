@@ -0,0 +1,263 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.docker.ContainerHandle;
+import com.dtd.serverShell.docker.ContainerRuntime;
+import com.dtd.serverShell.docker.ContainerSpec;
+import com.dtd.serverShell.docker.ContainerStatus;
+
+/**
+ * Docker side of the emulator: builds the retroarch container spec, runs it
+ * through the ContainerRuntime and watches its log for readiness. Running
+ * sessions live in EmulatorSessionRegistry.
+ */
+@Service
+public class EmulatorService {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorService.class);
+
+    @Value("${host.ip}")
+    private String hostIP;
+
+    @Value("${pulse.dir}")
+    private String pulseDir;
+
+    @Value("${pulse.cookie.path:}")
+    private String pulseCookieOverride;
+
+    @Value("${retroarch.image}")
+    private String retroImage;
+
+    @Value("${emulator.ready.timeout-seconds:90}")
+    private int readyTimeoutSeconds;
+
+    // with the relay on, clients only reach the ports through the app, so they are published on relay.host only
+    @Value("${emulator.relay.enabled:false}")
+    private boolean relayEnabled;
+
+    @Value("${emulator.relay.host:127.0.0.1}")
+    private String relayHost;
+
+    private final Pattern readyPattern;
+
+    /** A container that has been started; readySignal trips on the ready log line or on exit. */
+    public record StartedContainer(String name, String core, PortLeaseManager.PortLease ports, ContainerHandle handle, CountDownLatch readySignal) {
+        public int vncPort()     { return ports.vncPort(); }
+        public int audioPort()   { return ports.audioPort(); }
+        public int gamepadPort() { return ports.gamepadPort(); }
+    }
+
+    // stop grace period, same as `docker stop`
+    private static final int STOP_TIMEOUT_SECONDS = 10;
+
+    public static final String LABEL_EMULATOR = "serverShell.emulator";
+
+    // ports the image listens on inside the container
+    public static final int VNC_CONTAINER_PORT = 52300;
+    public static final int AUDIO_CONTAINER_PORT = 8081;
+    public static final int GAMEPAD_CONTAINER_PORT = 52400;
+    // where emulator.roms.dir is mounted (read-only); ROM arguments point below it
+    public static final String ROM_CONTAINER_DIR = "/roms";
+
+    private final PortLeaseManager portLeases;
+    private final ContainerRuntime runtime;
+
+    public EmulatorService(PortLeaseManager portLeases, ContainerRuntime runtime,
+                           @Value("${emulator.ready.pattern:(?i)(navigate to this url|listen(ing)? on|proxying from)}") String readyPattern) {
+        this.portLeases = portLeases;
+        this.runtime = runtime;
+        this.readyPattern = Pattern.compile(readyPattern);
+    }
+
+    public static String simplifyCoreEmulator(String fullRom) {
+        return (fullRom.endsWith(".gb") || fullRom.endsWith(".gba")) ? "GBA" : "N64";
+    }
+
+    //chose core
+    public static String coreLibrary(String core) {
+        return "GBA".equals(core) ? "mgba_libretro.so" : "mupen64plus_next_libretro.so";
+    }
+
+    public int getReadyTimeoutSeconds() {
+        return readyTimeoutSeconds;
+    }
+
+    /**
+     * Run the retroarch image with the shared audio/GPU setup.
+     * The port lease is released when the container exits, or right away if
+     * it never starts.
+     *
+     * @param volumes   extra "-v" host:container binds (the user's own config and save dirs)
+     * @param imageArgs arguments after the image name (ROM + core library)
+     */
+    public StartedContainer start(String containerName, String core, PortLeaseManager.PortLease ports,
+                                  List<String> volumes, List<String> imageArgs) throws IOException {
+        return start(containerName, core, ports, volumes, List.of(), imageArgs);
+    }
+
+    /** Same, with extra KEY=VALUE environment entries (EMU_STANDBY=1 for pool containers). */
+    public StartedContainer start(String containerName, String core, PortLeaseManager.PortLease ports,
+                                  List<String> volumes, List<String> env, List<String> imageArgs) throws IOException {
+        CountDownLatch ready = new CountDownLatch(1);
+        ContainerHandle handle;
+        try {
+            ContainerSpec spec = containerSpec(containerName, core, ports, volumes, imageArgs);
+            env.forEach(spec::env);
+            handle = runtime.run(spec, line -> onLogLine(containerName, line, ready));
+        } catch (IOException | RuntimeException e) {
+            ports.release();
+            throw e;
+        }
+        portLeases.releaseOnExit(ports, handle.onExit());
+        // an early exit wakes the waiter too; the caller checks isAlive()
+        handle.onExit().thenRun(ready::countDown);
+        return new StartedContainer(containerName, core, ports, handle, ready);
+    }
+
+    private ContainerSpec containerSpec(String containerName, String core, PortLeaseManager.PortLease ports,
+                                        List<String> volumes, List<String> imageArgs) throws IOException {
+        //audio setup
+        Path pulseSocketPath = Paths.get(pulseDir);
+        if (!Files.exists(pulseSocketPath)) {
+           throw new IllegalStateException("PulseAudio socket not found at " + pulseSocketPath + " (check host path and permissions)");
+        }
+        Path hostCookie = sourcePulseCookie();
+        if (!Files.isReadable(hostCookie)) {
+            throw new IllegalStateException("[INIT AUDIO ERR] cookie not readable at " + hostCookie);
+        }
+        Integer socketUid = extractUidFromSocketOwner(pulseSocketPath);
+        if (socketUid == null) {
+            throw new IllegalStateException("[PULSE AUDIO ERR] Prod audio requires /run/user/<uid>/pulse/native (got: " + pulseSocketPath + ")");
+        }
+
+        boolean useGamepad = "N64".equals(core);
+
+        ContainerSpec spec = new ContainerSpec(containerName, retroImage)
+                .label(LABEL_EMULATOR, "true")
+                .label("serverShell.core", core)
+                .label("serverShell.vncPort", String.valueOf(ports.vncPort()));
+        if (relayEnabled) spec.publishHost(relayHost);
+        //directories
+        volumes.forEach(spec::bind);
+        spec
+            //bind & mount ports
+            .bind(pulseSocketPath + ":/tmp/pulseaudio.socket:ro")
+            .port(ports.vncPort(), VNC_CONTAINER_PORT)
+            .port(ports.audioPort(), AUDIO_CONTAINER_PORT)
+            // GPU
+            .device("/dev/dri:/dev/dri")
+            .bind("/run/udev:/run/udev:ro")
+            .groupAdd("993").groupAdd("44").groupAdd("996")
+            //so container can monitor live port (internal bound to 52300)
+            .env("PULSE_SERVER=unix:/tmp/pulseaudio.socket")
+            //cookie is prewarmed in host dir
+            .env("PULSE_COOKIE=/config/pulse/cookie")
+            //host audio config
+            .env("PULSE_SINK=retro_null")
+            .env("PULSE_SOURCE=retro_null.monitor")
+            //set base path (sanity)
+            .env("HOME=/config").env("XDG_CONFIG_HOME=/config");
+
+        // N64-only extras
+        if (useGamepad) {
+            spec.port(ports.gamepadPort(), GAMEPAD_CONTAINER_PORT)
+                .bind("/dev/input:/dev/input")
+                .device("/dev/uinput")
+                .deviceCgroupRule("c 13:* rwm")
+                .deviceCgroupRule("c 10:223 rwm")
+                .env("LIBGL_ALWAYS_SOFTWARE=0")
+                .env("MESA_LOADER_DRIVER_OVERRIDE=radeonsi")
+                .device("/dev/tty0").device("/dev/tty1").device("/dev/tty7").device("/dev/tty")
+                .capAdd("SYS_TTY_CONFIG").capAdd("SYS_ADMIN")
+                .securityOpt("seccomp=unconfined").securityOpt("apparmor=unconfined")
+                .env("ENABLE_WSGP=1");
+        } else {
+            spec.env("ENABLE_WSGP=0");
+        }
+        // set ROM / core
+        return spec.args(imageArgs);
+    }
+
+    //wait for container before giving frontend return
+    public boolean awaitReady(StartedContainer container) {
+        try {
+            return container.readySignal().await(readyTimeoutSeconds, TimeUnit.SECONDS) && container.handle().isAlive();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean stopContainer(String containerName) throws IOException {
+        return runtime.stop(containerName, STOP_TIMEOUT_SECONDS);
+    }
+
+    /** Run a command inside a running emulator container; true on exit code 0. */
+    public boolean exec(String containerName, List<String> command, int timeoutSeconds) {
+        return runtime.exec(containerName, command, timeoutSeconds);
+    }
+
+    /** Host PID of the container's main process, or 0 if it isn't running. */
+    public int containerPid(String containerName) throws IOException {
+        return runtime.inspect(containerName).filter(ContainerStatus::running).map(ContainerStatus::pid).orElse(0);
+    }
+
+    public Map<String, String> urls(StartedContainer container) {
+        String serverIp = hostIP;
+        Map<String, String> response = new HashMap<>();
+        response.put("vncUrl", "http://" + serverIp + ":" + container.vncPort() + "/vnc.html?autoconnect=true&resize=scale&path=websockify");
+        response.put("audioUrl", "ws://" + serverIp + ":" + container.audioPort() + "/");
+        response.put("gamepadUrl", "ws://" + serverIp + ":" + container.gamepadPort() + "/");
+        return response;
+    }
+
+    // trip the latch on the first line that says noVNC/websockify is listening
+    private void onLogLine(String containerName, String line, CountDownLatch ready) {
+        log.debug("[{}] {}", containerName, line);
+        if (ready.getCount() > 0 && readyPattern.matcher(line).find()) {
+            log.info("[CONTAINER WAIT] {} ready: {}", containerName, line);
+            ready.countDown();
+        }
+    }
+
+    private static Integer extractUidFromSocketOwner(Path pulseSocketPath) {
+        try {
+            Object uid = Files.getAttribute(pulseSocketPath, "unix:uid");
+            if (uid instanceof Number) return ((Number) uid).intValue();
+        } catch (Exception ignore) {}
+        // fallback to path-based extraction if attribute view unsupported
+        return extractUidFromPulsePath(pulseSocketPath);
+    }
+
+    private static Integer extractUidFromPulsePath(Path pulseSocketPath) {
+        java.util.regex.Matcher m = java.util.regex.Pattern
+            .compile("/run/user/(\\d+)/pulse/native")
+            .matcher(pulseSocketPath.toString());
+        return m.find() ? Integer.valueOf(m.group(1)) : null;
+    }
+
+    public static boolean isLinux() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        return os.contains("linux");
+    }
+
+    private Path sourcePulseCookie() throws IOException {
+        Path canonical = Paths.get(pulseCookieOverride, "cookie").toAbsolutePath().normalize();
+        if (Files.isRegularFile(canonical) && Files.isReadable(canonical)) return canonical;
+        throw new IOException("[PULSE COOKIE ERR] No readable cookie found in store=" + canonical);
+    }
+}
@@ -0,0 +1,31 @@
+package com.dtd.serverShell.services;
+
+import java.nio.file.Path;
+
+/**
+ * Everything one emulator launch owns, fixed at launch time: who started it,
+ * which core/ROM, that user's config and save dirs, and the running container
+ * (which carries the port lease). Endpoints look this up by id instead of
+ * sharing controller state between users.
+ */
+public record EmulatorSession(String id,
+                              String username,
+                              String core,
+                              String rom,
+                              Path configPath,
+                              Path savePath,
+                              EmulatorService.StartedContainer container,
+                              long startedAt) {
+
+    public int vncPort() {
+        return container.vncPort();
+    }
+
+    public String containerName() {
+        return container.name();
+    }
+
+    public boolean isOwnedBy(String user) {
+        return username.equals(user);
+    }
+}
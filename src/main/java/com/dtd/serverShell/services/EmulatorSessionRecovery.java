@@ -0,0 +1,133 @@
+package com.dtd.serverShell.services;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.docker.ContainerHandle;
+import com.dtd.serverShell.docker.ContainerRuntime;
+import com.dtd.serverShell.docker.ContainerStatus;
+import com.dtd.serverShell.model.EmulatorSessionRecord;
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+
+/**
+ * On startup, lines the persisted sessions up with the emulator containers
+ * that are actually running (label serverShell.emulator=true):
+ *  - record + running container: reattach (same session id, port lease re-taken)
+ *  - record, no container: drop the record
+ *  - container, no record (lost writes, or an idle EmulatorPool container of
+ *    the previous run): stop it
+ */
+@Service
+public class EmulatorSessionRecovery {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorSessionRecovery.class);
+
+    private final EmulatorSessionRepository repository;
+    private final EmulatorSessionRegistry sessions;
+    private final EmulatorService emulatorService;
+    private final PortLeaseManager portLeases;
+    private final ContainerRuntime runtime;
+    private final EmulatorPool emulatorPool;
+
+    public EmulatorSessionRecovery(EmulatorSessionRepository repository, EmulatorSessionRegistry sessions,
+                                   EmulatorService emulatorService, PortLeaseManager portLeases, ContainerRuntime runtime,
+                                   EmulatorPool emulatorPool) {
+        this.repository = repository;
+        this.sessions = sessions;
+        this.emulatorService = emulatorService;
+        this.portLeases = portLeases;
+        this.runtime = runtime;
+        this.emulatorPool = emulatorPool;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!EmulatorService.isLinux()) return;
+
+        Map<String, ContainerStatus> running = new HashMap<>();
+        List<EmulatorSessionRecord> records;
+        try {
+            for (ContainerStatus c : runtime.list(Map.of(EmulatorService.LABEL_EMULATOR, "true"))) {
+                if (c.running()) running.put(c.name(), c);
+            }
+            records = repository.findAll();
+        } catch (Exception e) {
+            log.warn("[EMU RECOVERY] Skipped, could not read containers/sessions: {}", e.getMessage());
+            return;
+        }
+
+        int reattached = 0;
+        for (EmulatorSessionRecord r : records) {
+            ContainerStatus c = running.remove(r.getContainerName());
+            if (c != null && reattach(r)) {
+                reattached++;
+            } else {
+                if (c != null) stopQuietly(r.getContainerName());
+                deleteQuietly(r);
+            }
+        }
+        // whatever is left has no session behind it
+        running.keySet().forEach(this::stopQuietly);
+
+        log.info("[EMU RECOVERY] Reattached {} session(s), dropped {} record(s), stopped {} orphan container(s)",
+                reattached, records.size() - reattached, running.size());
+    }
+
+    private boolean reattach(EmulatorSessionRecord r) {
+        Optional<PortLeaseManager.PortLease> ports = portLeases.claim(r.getVncPort());
+        if (ports.isEmpty()) {
+            log.warn("[EMU RECOVERY] {} port {} is not leasable, stopping it", r.getContainerName(), r.getVncPort());
+            return false;
+        }
+        try {
+            Optional<ContainerHandle> handle = runtime.attach(r.getContainerName());
+            if (handle.isEmpty()) {
+                ports.get().release();
+                return false;
+            }
+            portLeases.releaseOnExit(ports.get(), handle.get().onExit());
+            // already past its ready line in the previous run; a claimed pool slot still goes back to the user on exit
+            EmulatorService.StartedContainer container = new EmulatorService.StartedContainer(
+                    r.getContainerName(), r.getCore(), ports.get(),
+                    emulatorPool.reattached(Paths.get(r.getConfigPath()), handle.get()), new CountDownLatch(0));
+            sessions.register(new EmulatorSession(r.getId(), r.getUsername(), r.getCore(), r.getRom(),
+                    Paths.get(r.getConfigPath()), Paths.get(r.getSavePath()), container, r.getStartedAt()));
+            log.info("[EMU RECOVERY] Reattached {} for {}", r.getContainerName(), r.getUsername());
+            return true;
+        } catch (Exception e) {
+            log.warn("[EMU RECOVERY] Could not reattach {}: {}", r.getContainerName(), e.getMessage());
+            ports.get().release();
+            return false;
+        }
+    }
+
+    // one bad record (or a Mongo hiccup) must not stop recovery of the rest
+    private void deleteQuietly(EmulatorSessionRecord r) {
+        try {
+            repository.deleteById(r.getId());
+        } catch (Exception e) {
+            log.warn("[EMU RECOVERY] Could not delete session record {}: {}", r.getId(), e.getMessage());
+        }
+    }
+
+    private void stopQuietly(String containerName) {
+        try {
+            emulatorService.stopContainer(containerName);
+            log.info("[EMU RECOVERY] Stopped {}", containerName);
+        } catch (Exception e) {
+            log.warn("[EMU RECOVERY] Failed to stop {}: {}", containerName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.dtd.serverShell.services;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.model.EmulatorSessionRecord;
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+
+/**
+ * Running emulator sessions by session id. Entries drop out when the
+ * container exits, whether it was stopped or died on its own.
+ * Each session is also written to Mongo (emulatorSessions) so that
+ * EmulatorSessionRecovery can reattach to its container after a restart.
+ * Whatever a session wrote to its save dir is versioned in SaveStore when
+ * the container exits, for launched and reattached sessions alike.
+ */
+@Service
+public class EmulatorSessionRegistry {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorSessionRegistry.class);
+
+    private final Map<String, EmulatorSession> sessions = new ConcurrentHashMap<>();
+    // session id -> last time a player was seen (connection on its ports, save I/O)
+    private final Map<String, Long> lastActivity = new ConcurrentHashMap<>();
+    private final EmulatorSessionRepository repository;
+    private final SaveStore saveStore;
+
+    public EmulatorSessionRegistry(EmulatorSessionRepository repository, SaveStore saveStore) {
+        this.repository = repository;
+        this.saveStore = saveStore;
+    }
+
+    public void register(EmulatorSession session) {
+        sessions.put(session.id(), session);
+        lastActivity.put(session.id(), System.currentTimeMillis());
+        persist(session);
+        session.container().handle().onExit().whenComplete((code, error) -> {
+            if (sessions.remove(session.id(), session)) {
+                lastActivity.remove(session.id());
+                forget(session.id());
+                log.info("[EMU SESSION] {} ended ({} on port {})", session.id(), session.containerName(), session.vncPort());
+            }
+            // unchanged files are skipped, so this is cheap when nothing was saved
+            saveStore.snapshotDir(session.username(), session.core(), session.savePath());
+        });
+    }
+
+    /** The session, only if it belongs to this user. */
+    public Optional<EmulatorSession> find(String sessionId, String username) {
+        if (sessionId == null) return Optional.empty();
+        EmulatorSession session = sessions.get(sessionId);
+        return session != null && session.isOwnedBy(username) ? Optional.of(session) : Optional.empty();
+    }
+
+    /** Lookup by VNC port, for clients that only know the URL they were given. */
+    public Optional<EmulatorSession> findByPort(int vncPort, String username) {
+        return sessions.values().stream()
+                .filter(s -> s.vncPort() == vncPort && s.isOwnedBy(username))
+                .findFirst();
+    }
+
+    public void remove(EmulatorSession session) {
+        if (sessions.remove(session.id(), session)) {
+            lastActivity.remove(session.id());
+            forget(session.id());
+        }
+    }
+
+    public void touch(String sessionId) {
+        lastActivity.computeIfPresent(sessionId, (id, prev) -> System.currentTimeMillis());
+    }
+
+    public long lastActivity(String sessionId) {
+        return lastActivity.getOrDefault(sessionId, 0L);
+    }
+
+    public Collection<EmulatorSession> all() {
+        return sessions.values();
+    }
+
+    // the container keeps running either way; a missing record only costs the reattach after a restart
+    private void persist(EmulatorSession s) {
+        try {
+            repository.save(new EmulatorSessionRecord(s.id(), s.username(), s.core(), s.rom(),
+                    s.configPath().toString(), s.savePath().toString(), s.containerName(), s.vncPort(), s.startedAt()));
+        } catch (Exception e) {
+            log.warn("[EMU SESSION] Could not persist {}: {}", s.id(), e.getMessage());
+        }
+    }
+
+    private void forget(String sessionId) {
+        try {
+            repository.deleteById(sessionId);
+        } catch (Exception e) {
+            log.warn("[EMU SESSION] Could not delete record {}: {}", sessionId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Samples what each emulator session's container uses, from its cgroup v2
+ * files (cpu.stat, memory.current, io.stat), every
+ * emulator.telemetry.interval-seconds into a fixed-size ring per session.
+ *
+ * The cgroup is found through the container's init pid (/proc/<pid>/cgroup),
+ * which works for both the systemd and cgroupfs Docker cgroup drivers. Hosts
+ * on cgroup v1 get no samples.
+ *
+ * The latest sample is also published as per-session gauges
+ * (emulator.session.*, tagged session/user/core); they are registered with
+ * a session's first cgroup lookup and removed from the registry when the
+ * session is gone.
+ */
+@Service
+public class EmulatorTelemetry {
+    private static final Logger log = LoggerFactory.getLogger(EmulatorTelemetry.class);
+
+    private static final Path CGROUP_ROOT = Paths.get("/sys/fs/cgroup");
+
+    /** One sample; rates are over the interval since the previous one. */
+    public record Sample(long at, double cpuPercent, double throttledPercent, long memoryBytes,
+                         long readBytesPerSec, long writeBytesPerSec) {}
+
+    // raw cumulative counters, to turn the next read into rates
+    private record Counters(long at, long cpuUsec, long throttledUsec, long readBytes, long writeBytes) {}
+
+    /** Fixed-size ring of samples, oldest overwritten first. */
+    static final class Ring {
+        private final Sample[] samples;
+        private int next;
+        private int size;
+
+        Ring(int capacity) {
+            samples = new Sample[capacity];
+        }
+
+        synchronized void add(Sample s) {
+            samples[next] = s;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+        }
+
+        synchronized Sample latest() {
+            return size == 0 ? null : samples[(next - 1 + samples.length) % samples.length];
+        }
+
+        // oldest first
+        synchronized List<Sample> toList() {
+            List<Sample> out = new ArrayList<>(size);
+            int start = (next - size + samples.length) % samples.length;
+            for (int i = 0; i < size; i++) out.add(samples[(start + i) % samples.length]);
+            return out;
+        }
+    }
+
+    private static final class Series {
+        final Path cgroup;
+        final Ring ring;
+        final List<Meter> gauges = new ArrayList<>();
+        Counters last;
+
+        Series(Path cgroup, int capacity) {
+            this.cgroup = cgroup;
+            this.ring = new Ring(capacity);
+        }
+
+        // NaN until the first sample
+        double latest(ToDoubleFunction<Sample> field) {
+            Sample s = ring.latest();
+            return s == null ? Double.NaN : field.applyAsDouble(s);
+        }
+    }
+
+    private final EmulatorSessionRegistry sessions;
+    private final EmulatorService emulatorService;
+    private final MeterRegistry meters;
+
+    @Value("${emulator.telemetry.interval-seconds:5}")
+    private long intervalSeconds;
+
+    // 120 x 5s = the last 10 minutes
+    @Value("${emulator.telemetry.samples:120}")
+    private int samples;
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private volatile long lastSampleAt;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "emu-telemetry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public EmulatorTelemetry(EmulatorSessionRegistry sessions, EmulatorService emulatorService, MeterRegistry meters) {
+        this.sessions = sessions;
+        this.emulatorService = emulatorService;
+        this.meters = meters;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!EmulatorService.isLinux() || intervalSeconds <= 0) return;
+        if (!Files.isRegularFile(CGROUP_ROOT.resolve("cgroup.controllers"))) {
+            log.info("[EMU TELEMETRY] {} is not cgroup v2, container telemetry is off", CGROUP_ROOT);
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::sample, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("[EMU TELEMETRY] Sampling sessions every {}s, keeping {} samples each", intervalSeconds, samples);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void sample() {
+        lastSampleAt = System.currentTimeMillis();
+        Set<String> live = sessions.all().stream().map(EmulatorSession::id).collect(Collectors.toSet());
+        series.entrySet().removeIf(e -> {
+            if (live.contains(e.getKey())) return false;
+            unregister(e.getValue());
+            return true;
+        });
+
+        for (EmulatorSession session : sessions.all()) {
+            try {
+                Series s = series.get(session.id());
+                if (s == null) {
+                    Optional<Path> cgroup = cgroupOf(session);
+                    if (cgroup.isEmpty()) continue;
+                    s = new Series(cgroup.get(), samples);
+                    series.put(session.id(), s);
+                    register(session, s);
+                }
+                if (!Files.isDirectory(s.cgroup)) {
+                    // container restarted or gone; look it up again next time
+                    unregister(series.remove(session.id()));
+                    continue;
+                }
+                Counters now = read(s.cgroup);
+                Counters prev = s.last;
+                s.last = now;
+                if (prev == null) continue;
+
+                double elapsedUsec = Math.max(1, now.at() - prev.at()) * 1000.0;
+                double elapsedSec = elapsedUsec / 1_000_000.0;
+                s.ring.add(new Sample(now.at(),
+                        round((now.cpuUsec() - prev.cpuUsec()) * 100.0 / elapsedUsec),
+                        round((now.throttledUsec() - prev.throttledUsec()) * 100.0 / elapsedUsec),
+                        memoryCurrent(s.cgroup),
+                        (long) ((now.readBytes() - prev.readBytes()) / elapsedSec),
+                        (long) ((now.writeBytes() - prev.writeBytes()) / elapsedSec)));
+            } catch (Exception e) {
+                log.debug("[EMU TELEMETRY] Could not sample {}: {}", session.containerName(), e.getMessage());
+            }
+        }
+    }
+
+    private void register(EmulatorSession session, Series s) {
+        Tags tags = Tags.of("session", session.id(), "user", session.username(), "core", session.core());
+        s.gauges.add(Gauge.builder("emulator.session.cpu", s, x -> x.latest(Sample::cpuPercent))
+                .description("CPU used, % of one core").baseUnit("percent").tags(tags).register(meters));
+        s.gauges.add(Gauge.builder("emulator.session.cpu.throttled", s, x -> x.latest(Sample::throttledPercent))
+                .description("Time throttled by the CPU quota, % of the interval").baseUnit("percent").tags(tags).register(meters));
+        s.gauges.add(Gauge.builder("emulator.session.memory", s, x -> x.latest(Sample::memoryBytes))
+                .baseUnit("bytes").tags(tags).register(meters));
+        s.gauges.add(Gauge.builder("emulator.session.io", s, x -> x.latest(Sample::readBytesPerSec))
+                .baseUnit("bytes.per.second").tags(tags).tag("direction", "read").register(meters));
+        s.gauges.add(Gauge.builder("emulator.session.io", s, x -> x.latest(Sample::writeBytesPerSec))
+                .baseUnit("bytes.per.second").tags(tags).tag("direction", "write").register(meters));
+    }
+
+    private void unregister(Series s) {
+        if (s == null) return;
+        s.gauges.forEach(meters::remove);
+        s.gauges.clear();
+    }
+
+    //   0::/system.slice/docker-<id>.scope
+    private Optional<Path> cgroupOf(EmulatorSession session) throws IOException {
+        int pid = emulatorService.containerPid(session.containerName());
+        if (pid <= 0) return Optional.empty();
+        for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "cgroup"))) {
+            if (line.startsWith("0::")) {
+                Path dir = CGROUP_ROOT.resolve(line.substring(3).replaceFirst("^/", "")).normalize();
+                return dir.startsWith(CGROUP_ROOT) && Files.isDirectory(dir) ? Optional.of(dir) : Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Counters read(Path cgroup) throws IOException {
+        long usage = 0, throttled = 0;
+        //   usage_usec 123 / user_usec ... / throttled_usec 45
+        for (String line : Files.readAllLines(cgroup.resolve("cpu.stat"))) {
+            String[] kv = line.split(" ");
+            if (kv.length != 2) continue;
+            if ("usage_usec".equals(kv[0])) usage = Long.parseLong(kv[1]);
+            else if ("throttled_usec".equals(kv[0])) throttled = Long.parseLong(kv[1]);
+        }
+        long read = 0, write = 0;
+        //   8:0 rbytes=1 wbytes=2 rios=3 wios=4 dbytes=0 dios=0  (one line per device)
+        Path io = cgroup.resolve("io.stat");
+        if (Files.isReadable(io)) {
+            for (String line : Files.readAllLines(io)) {
+                for (String field : line.split(" ")) {
+                    if (field.startsWith("rbytes=")) read += Long.parseLong(field.substring(7));
+                    else if (field.startsWith("wbytes=")) write += Long.parseLong(field.substring(7));
+                }
+            }
+        }
+        return new Counters(System.currentTimeMillis(), usage, throttled, read, write);
+    }
+
+    private static long memoryCurrent(Path cgroup) throws IOException {
+        return Long.parseLong(Files.readString(cgroup.resolve("memory.current")).trim());
+    }
+
+    private static double round(double v) {
+        return Math.round(Math.max(0, v) * 10) / 10.0;
+    }
+
+    /** Latest sample of a session, if it has one yet. */
+    public Optional<Sample> latest(String sessionId) {
+        Series s = series.get(sessionId);
+        return s == null ? Optional.empty() : Optional.ofNullable(s.ring.latest());
+    }
+
+    /** All retained samples of a session, oldest first. */
+    public List<Sample> history(String sessionId) {
+        Series s = series.get(sessionId);
+        return s == null ? List.of() : s.ring.toList();
+    }
+
+    /** Per session: latest sample plus average/peak over the retained window; and totals. */
+    public Map<String, Object> status() {
+        List<Map<String, Object>> running = new ArrayList<>();
+        double totalCpu = 0;
+        long totalMemory = 0;
+        for (EmulatorSession session : sessions.all()) {
+            List<Sample> window = history(session.id());
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("sessionId", session.id());
+            m.put("username", session.username());
+            m.put("core", session.core());
+            m.put("container", session.containerName());
+            if (!window.isEmpty()) {
+                Sample latest = window.get(window.size() - 1);
+                totalCpu += latest.cpuPercent();
+                totalMemory += latest.memoryBytes();
+                m.put("latest", latest);
+                m.put("avgCpuPercent", round(window.stream().mapToDouble(Sample::cpuPercent).average().orElse(0)));
+                m.put("peakCpuPercent", window.stream().mapToDouble(Sample::cpuPercent).max().orElse(0));
+                m.put("peakMemoryBytes", window.stream().mapToLong(Sample::memoryBytes).max().orElse(0));
+                m.put("windowSeconds", (latest.at() - window.get(0).at()) / 1000 + intervalSeconds);
+            }
+            running.add(m);
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("intervalSeconds", intervalSeconds);
+        status.put("lastSampleAt", lastSampleAt);
+        status.put("totalCpuPercent", round(totalCpu));
+        status.put("totalMemoryBytes", totalMemory);
+        status.put("sessions", running);
+        return status;
+    }
+}
@@ -0,0 +1,369 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Read-through copy of media.dir on a local disk (media.cache.dir; empty = off),
+ * for when media.dir is a network mount.
+ *
+ * local() hands back the path to read a media file from: the local copy when
+ * there is a current one, otherwise the source, in which case the file is
+ * copied in the background so the next read is local. A copy is current while
+ * the source's size and mtime (as MediaStore last saw them) match what was
+ * copied. Files over media.cache.max-file-mb are never copied.
+ *
+ * The cache is kept under media.cache.max-size-mb by evicting least recently
+ * read files. The index (in LRU order) is written to .media-cache.json every
+ * 30s and on shutdown, so the cache survives restarts; files it doesn't list
+ * are removed at startup. Evicted copies are deleted after a grace period, as
+ * a response may still be about to open one.
+ */
+@Service
+public class MediaCache {
+    private static final Logger log = LoggerFactory.getLogger(MediaCache.class);
+
+    private static final String INDEX_FILE = ".media-cache.json";
+    private static final String TMP_DIR = ".tmp";
+    private static final long FLUSH_SECONDS = 30;
+    private static final long DELETE_GRACE_SECONDS = 60;
+
+    /** One cached file; rel is its path under media.dir and under the cache dir. */
+    public record CacheEntry(String rel, long size, long sourceModified) {}
+
+    public record Stats(boolean enabled, String dir, long hits, long misses, double hitRatio, long fills,
+                        long fillFailures, long evictions, long invalidations, int entries, long bytes,
+                        long maxBytes, double occupancy) {}
+
+    private final MediaStore store;
+    private final ObjectMapper mapper;
+    private final Path cacheDir;        // null = off
+    private final long maxBytes;
+    private final long maxFileBytes;
+
+    // rel -> entry in access order (eldest first = next to evict); guarded by this, as is bytes
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private boolean dirty;
+    // nothing is served or filled until the index is loaded
+    private volatile boolean ready;
+
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder fillFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final ThreadPoolExecutor fillers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "media-cache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MediaCache(MediaStore store,
+                      ObjectMapper mapper,
+                      MeterRegistry meters,
+                      @Value("${media.cache.dir:}") String cacheDir,
+                      @Value("${media.cache.max-size-mb:51200}") long maxSizeMb,
+                      @Value("${media.cache.max-file-mb:1024}") long maxFileMb,
+                      @Value("${media.cache.threads:2}") int threads,
+                      @Value("${media.cache.queue:256}") int queue) {
+        this.store = store;
+        this.mapper = mapper;
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.maxFileBytes = Math.min(maxFileMb * 1024 * 1024, maxBytes);
+        this.cacheDir = cacheDirOf(cacheDir, store.root());
+
+        // a full queue drops the copy, the file is just read from the source again
+        AtomicInteger seq = new AtomicInteger();
+        this.fillers = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                    Thread t = new Thread(r, "media-cache-fill-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        FunctionCounter.builder("media.cache.requests", hits, LongAdder::doubleValue)
+                .description("Media reads through the local cache").tag("result", "hit").register(meters);
+        FunctionCounter.builder("media.cache.requests", misses, LongAdder::doubleValue)
+                .description("Media reads through the local cache").tag("result", "miss").register(meters);
+        FunctionCounter.builder("media.cache.evictions", evictions, LongAdder::doubleValue).register(meters);
+        Gauge.builder("media.cache.bytes", this, MediaCache::cachedBytes).baseUnit("bytes").register(meters);
+    }
+
+    private static Path cacheDirOf(String configured, Path mediaRoot) {
+        if (configured == null || configured.isBlank()) return null;
+        Path dir = Paths.get(configured).toAbsolutePath().normalize();
+        // startup removes files the index doesn't know; never let that loose on the media itself
+        if (dir.startsWith(mediaRoot) || mediaRoot.startsWith(dir)) {
+            log.error("[MEDIA CACHE] {} overlaps media.dir {}; cache disabled", dir, mediaRoot);
+            return null;
+        }
+        return dir;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (cacheDir == null) return;
+        scheduler.execute(() -> {
+            try {
+                load();
+                ready = true;
+                log.info("[MEDIA CACHE] {}: {} file(s), {} MB of {} MB", cacheDir, entryCount(), cachedBytes() >> 20,
+                        maxBytes >> 20);
+            } catch (Exception e) {
+                log.error("[MEDIA CACHE] Could not open {}; cache disabled: {}", cacheDir, e.getMessage());
+            }
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fillers.shutdownNow();
+        scheduler.shutdownNow();
+        if (ready) flushQuietly();
+    }
+
+    /**
+     * Where to read source (a file inside MediaStore's root) from: its local
+     * copy if that is current, else source itself.
+     */
+    public Path local(Path source) {
+        if (!ready) return source;
+        Optional<BasicFileAttributes> attrs = store.attributes(source);
+        if (attrs.isEmpty() || !attrs.get().isRegularFile()) return source;
+        long size = attrs.get().size();
+        long modified = attrs.get().lastModifiedTime().toMillis();
+        String rel = store.relativize(source);
+
+        Path copy = null;
+        synchronized (this) {
+            CacheEntry e = entries.get(rel);
+            if (e != null) {
+                if (e.size() == size && e.sourceModified() == modified) {
+                    copy = cacheDir.resolve(rel);
+                    dirty = true; // LRU order moved
+                } else {
+                    // source changed since it was copied
+                    drop(rel);
+                    invalidations.increment();
+                }
+            }
+        }
+        if (copy != null) {
+            if (Files.isRegularFile(copy)) {
+                hits.increment();
+                return copy;
+            }
+            // removed from the cache dir behind our back
+            synchronized (this) {
+                drop(rel);
+            }
+        }
+        misses.increment();
+        if (size <= maxFileBytes) fill(rel, source, size, modified);
+        return source;
+    }
+
+    private void fill(String rel, Path source, long size, long modified) {
+        if (!filling.add(rel)) return;
+        try {
+            fillers.execute(() -> {
+                try {
+                    copy(rel, source, size, modified);
+                } catch (Exception e) {
+                    fillFailures.increment();
+                    log.warn("[MEDIA CACHE] Could not cache {}: {}", rel, e.getMessage());
+                } finally {
+                    filling.remove(rel);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            filling.remove(rel);
+        }
+    }
+
+    private void copy(String rel, Path source, long size, long modified) throws IOException {
+        Path tmp = cacheDir.resolve(TMP_DIR).resolve(UUID.randomUUID() + ".part");
+        Files.createDirectories(tmp.getParent());
+        try {
+            Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING);
+            BasicFileAttributes after = Files.readAttributes(source, BasicFileAttributes.class);
+            if (after.size() != size || after.lastModifiedTime().toMillis() != modified || Files.size(tmp) != size) {
+                // changed while copying; the next read tries again
+                return;
+            }
+            Path target = cacheDir.resolve(rel);
+            Files.createDirectories(target.getParent());
+            synchronized (this) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                CacheEntry old = entries.put(rel, new CacheEntry(rel, size, modified));
+                if (old != null) bytes -= old.size();
+                bytes += size;
+                dirty = true;
+                evictOverflow();
+            }
+            fills.increment();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // caller holds the lock
+    private void evictOverflow() {
+        Iterator<CacheEntry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            CacheEntry e = eldest.next();
+            eldest.remove();
+            bytes -= e.size();
+            evictions.increment();
+            deleteLater(e.rel());
+        }
+    }
+
+    // caller holds the lock
+    private void drop(String rel) {
+        CacheEntry e = entries.remove(rel);
+        if (e == null) return;
+        bytes -= e.size();
+        dirty = true;
+        deleteLater(rel);
+    }
+
+    private void deleteLater(String rel) {
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                // copied again in the meantime
+                if (entries.containsKey(rel)) return;
+                try {
+                    Files.deleteIfExists(cacheDir.resolve(rel));
+                } catch (IOException e) {
+                    log.warn("[MEDIA CACHE] Could not delete {}: {}", rel, e.getMessage());
+                }
+            }
+        }, DELETE_GRACE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public Stats stats() {
+        long h = hits.sum(), m = misses.sum();
+        int count;
+        long used;
+        synchronized (this) {
+            count = entries.size();
+            used = bytes;
+        }
+        return new Stats(ready, cacheDir == null ? null : cacheDir.toString(), h, m, h + m == 0 ? 0 : (double) h / (h + m),
+                fills.sum(), fillFailures.sum(), evictions.sum(), invalidations.sum(), count, used, maxBytes,
+                maxBytes == 0 ? 0 : (double) used / maxBytes);
+    }
+
+    private synchronized long cachedBytes() {
+        return bytes;
+    }
+
+    private synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(cacheDir);
+        Path index = cacheDir.resolve(INDEX_FILE);
+        List<CacheEntry> saved = List.of();
+        if (Files.isRegularFile(index)) {
+            try {
+                saved = mapper.readValue(index.toFile(), new TypeReference<List<CacheEntry>>() {});
+            } catch (IOException e) {
+                log.warn("[MEDIA CACHE] Ignoring unreadable index {}: {}", index, e.getMessage());
+            }
+        }
+
+        synchronized (this) {
+            // saved eldest first, so inserting in order restores the LRU order
+            for (CacheEntry e : saved) {
+                Path file = cacheDir.resolve(e.rel()).normalize();
+                if (!file.startsWith(cacheDir) || !Files.isRegularFile(file) || Files.size(file) != e.size()) continue;
+                entries.put(e.rel(), e);
+                bytes += e.size();
+            }
+            evictOverflow();
+        }
+
+        // leftovers: partial copies, and files copied after the last index write
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || file.equals(index)) continue;
+                String rel = cacheDir.relativize(file).toString().replace('\\', '/');
+                boolean known;
+                synchronized (this) {
+                    known = entries.containsKey(rel);
+                }
+                if (!known) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) log.info("[MEDIA CACHE] Removed {} unindexed file(s) from {}", removed, cacheDir);
+    }
+
+    private void flushQuietly() {
+        List<CacheEntry> snapshot;
+        synchronized (this) {
+            if (!dirty) return;
+            snapshot = new ArrayList<>(entries.values());
+            dirty = false;
+        }
+        Path index = cacheDir.resolve(INDEX_FILE);
+        try {
+            Path tmp = index.resolveSibling(INDEX_FILE + ".tmp");
+            mapper.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            log.warn("[MEDIA CACHE] Could not write index {}: {}", index, e.getMessage());
+        }
+    }
+}
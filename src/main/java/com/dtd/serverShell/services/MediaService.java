@@ -2,7 +2,6 @@ package com.dtd.serverShell.services;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
@@ -24,49 +23,70 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.dtd.serverShell.config.allowedMediaType;
-import com.dtd.serverShell.repository.AppUserRepository; 
-import com.dtd.serverShell.model.AppUser;  
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class MediaService {
 
-    @Value("${media.dir}")
-    private String mediaDir;
     private static final Logger log = LoggerFactory.getLogger(MediaService.class);
 
-    private Path mediaRoot() {
-        return Paths.get(mediaDir).toAbsolutePath().normalize();
-    }
-    
-    private final AppUserRepository userRepository;
-
-    public MediaService(AppUserRepository userRepository) {
-        this.userRepository = userRepository;
+    // path resolution, containment and stats for everything under media.dir
+    private final MediaStore store;
+    private final UserRegistry userRegistry;
+
+    // registered once up front; recording on them doesn't allocate
+    private final Timer listTimer;
+    private final DistributionSummary listEntries;
+    private final Timer playlistTimer;
+    private final Timer favoriteAddWrites;
+    private final Timer favoriteRemoveWrites;
+
+    public MediaService(MediaStore store, UserRegistry userRegistry, MeterRegistry meters) {
+        this.store = store;
+        this.userRegistry = userRegistry;
+        this.listTimer = Timer.builder("media.list").description("listMediaFiles")
+                .publishPercentileHistogram().register(meters);
+        this.listEntries = DistributionSummary.builder("media.list.entries").description("Entries per listing")
+                .register(meters);
+        this.playlistTimer = Timer.builder("media.playlist.load").description("Playlist page reads")
+                .publishPercentileHistogram().register(meters);
+        this.favoriteAddWrites = Timer.builder("media.favorites.write").tag("op", "add").register(meters);
+        this.favoriteRemoveWrites = Timer.builder("media.favorites.write").tag("op", "remove").register(meters);
     }
     
     public List<String> listMediaFiles(String currentPath) {
-        Path basePath = Paths.get(mediaDir);
-        Path targetPath = currentPath.isEmpty() ? basePath : basePath.resolve(currentPath);
+        long start = System.nanoTime();
+        List<String> items = listMediaFilesUntimed(currentPath);
+        listTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        listEntries.record(items.size());
+        return items;
+    }
+
+    private List<String> listMediaFilesUntimed(String currentPath) {
+        Path basePath = store.root();
+        Path targetPath = store.resolve(currentPath);
 
-        if (!Files.exists(targetPath) || !Files.isDirectory(targetPath)) {
-            log.warn("Invalid media path: " + targetPath);
+        if (targetPath == null || !store.isDirectory(targetPath)) {
+            log.warn("Invalid media path: {}", currentPath);
             return List.of();
         }
 
-        System.out.println("[MediaScan] media.dir = " + mediaDir);
-        System.out.println("[MediaScan] currentPath = " + currentPath);
-        System.out.println("[MediaScan] Resolved targetPath = " + targetPath.toAbsolutePath());
+        log.debug("[MediaScan] {} -> {}", currentPath, targetPath);
 
         try (Stream<Path> stream = Files.list(targetPath)) {
             // Collect immediate children (folders + supported files)
             List<Path> children = stream
                 .filter(p -> !p.equals(targetPath))
                 .filter(p -> {
-                    if (Files.isDirectory(p)) {
+                    if (store.isDirectory(p)) {
                         String name = String.valueOf(p.getFileName());
                         return !name.equalsIgnoreCase("lost+found");
                     } else {
@@ -80,7 +100,7 @@ public class MediaService {
             List<Path> childDirs  = new ArrayList<>();
             List<Path> childFiles = new ArrayList<>();
             for (Path c : children) {
-                if (Files.isDirectory(c)) childDirs.add(c);
+                if (store.isDirectory(c)) childDirs.add(c);
                 else                     childFiles.add(c);
             }
 
@@ -149,7 +169,7 @@ public class MediaService {
             items.removeIf(s -> s == null || s.isBlank() || "/".equals(s) || ".".equals(s));
             return items;
         } catch (IOException e) {
-            log.error("Failed listing media path: " + targetPath, e);
+            log.error("Failed listing media path: {}", targetPath, e);
             return List.of();
         }
     }
@@ -176,18 +196,9 @@ public class MediaService {
         return false;
     }
     
+    // served from memory; UserRegistry only goes to Mongo after a user add/remove
     private Set<String> knownUsernamesLower() {
-        Set<String> out = new HashSet<>();
-        try {
-            for (AppUser u : userRepository.findAll()) {
-                if (u != null && u.getUsername() != null && !u.getUsername().isBlank()) {
-                    out.add(u.getUsername().toLowerCase());
-                }
-            }
-        } catch (Exception e) {
-            log.warn("[MediaService] Unable to load usernames: {}", e.toString());
-        }
-        return out;
+        return userRegistry.usernamesLower();
     }
 
     private String lowerBasenameNoExt(String filename) {
@@ -217,15 +228,16 @@ public class MediaService {
 
     private Path resolveUserFavoritesPlaylist(String category) {
         if (category == null) return null;
-        Path root = mediaRoot();
-        Path p = root.resolve(Path.of(category, "*Playlists*", currentUsername() + ".m3u")).normalize();
-        return p.startsWith(root) ? p : null;
+        return store.resolve(category + "/*Playlists*/" + currentUsername() + ".m3u");
     }
 
     private boolean ensureParentDirs(Path file) {
         try {
             Files.createDirectories(file.getParent());
-            if (!Files.exists(file)) Files.createFile(file);
+            if (!Files.exists(file)) {
+                Files.createFile(file);
+                store.invalidate(file);
+            }
             return true;
         } catch (IOException e) {
             log.error("[MediaService] ensureParentDirs failed for {}", file, e);
@@ -277,13 +289,11 @@ public class MediaService {
             if (norm == null || norm.isBlank()) return false;
 
             // Resolve to absolute under media root
-            Path root = mediaRoot();
-            Path absTarget = root.resolve(norm).normalize();
-            if (!absTarget.startsWith(root)) return false; // safety
+            Path absTarget = store.resolve(norm);
+            if (absTarget == null) return false; // safety
 
             // Determine category from the resolved absolute path (first segment under media root)
-            Path rootRel = root.relativize(absTarget);
-            String category = categoryOfRel(rootRel.toString().replace('\\','/'));
+            String category = categoryOfRel(store.relativize(absTarget));
             if (category == null) return false;
 
             Path playlist = resolveUserFavoritesPlaylist(category);
@@ -303,8 +313,11 @@ public class MediaService {
                     .anyMatch(p -> pathEqualsCI(p, absTarget));
             if (!exists) {
                 lines.add(storeLine);
+                long start = System.nanoTime();
                 Files.write(playlist, lines, StandardCharsets.UTF_8,
                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                store.invalidate(playlist);
+                favoriteAddWrites.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
             return true;
         } catch (IOException e) {
@@ -318,17 +331,15 @@ public class MediaService {
             String norm = normalizeRel(relPath);
             if (norm == null || norm.isBlank()) return false;
 
-            Path root = mediaRoot();
-            Path absTarget = root.resolve(norm).normalize();
-            if (!absTarget.startsWith(root)) return false;
+            Path absTarget = store.resolve(norm);
+            if (absTarget == null) return false;
 
             // Determine category from resolved absolute target
-            Path rootRel = root.relativize(absTarget);
-            String category = categoryOfRel(rootRel.toString().replace('\\','/'));
+            String category = categoryOfRel(store.relativize(absTarget));
             if (category == null) return false;
 
             Path playlist = resolveUserFavoritesPlaylist(category);
-            if (playlist == null || !Files.exists(playlist)) {
+            if (playlist == null || !store.exists(playlist)) {
                 // nothing to remove; idempotent
                 return true;
             }
@@ -350,8 +361,11 @@ public class MediaService {
             }
 
             if (removed) {
+                long start = System.nanoTime();
                 Files.write(playlist, kept, StandardCharsets.UTF_8,
                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                store.invalidate(playlist);
+                favoriteRemoveWrites.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
             return true;
         } catch (IOException e) {
@@ -363,11 +377,10 @@ public class MediaService {
     public List<String> listFavorites(String category) {
         try {
             Path playlist = resolveUserFavoritesPlaylist(category);
-            if (playlist == null || !Files.exists(playlist)) return List.of();
+            if (playlist == null || !store.exists(playlist)) return List.of();
 
             List<String> lines = Files.readAllLines(playlist, StandardCharsets.UTF_8);
             Path baseDir = playlist.getParent();
-            Path root = mediaRoot();
 
             List<String> out = new ArrayList<>(lines.size());
             for (String s : lines) {
@@ -376,9 +389,9 @@ public class MediaService {
                 // Resolve any legacy absolute/root-rel lines to absolute, then re-emit as "../..."
                 Path abs = sn.startsWith("../") || sn.startsWith("./")
                         ? resolveAgainstPlaylist(baseDir, sn)
-                        : root.resolve(sn).normalize();
+                        : store.resolve(sn);
 
-                if (!abs.startsWith(root)) continue; // safety
+                if (!store.contains(abs)) continue; // safety
                 out.add(toPlaylistRelative(baseDir, abs)); // ensure "../..." on output
             }
             return out;
@@ -406,14 +419,14 @@ public class MediaService {
     private Optional<Path> directIndex(Path dir) {
         try {
             Path idx = dir.resolve("index.m3u8");
-            if (Files.isRegularFile(idx)) return Optional.of(idx);
+            if (store.isFile(idx)) return Optional.of(idx);
 
             Path hls = dir.resolve("hls").resolve("index.m3u8");
-            if (Files.isRegularFile(hls)) return Optional.of(hls);
+            if (store.isFile(hls)) return Optional.of(hls);
 
             return Optional.empty();
         } catch (Exception e) {
-            log.warn("directIndex: error for " + dir + ": " + e.getMessage());
+            log.warn("directIndex: error for {}: {}", dir, e.getMessage());
             return Optional.empty();
         }
     }
@@ -424,23 +437,21 @@ public class MediaService {
             throw new IOException("Empty path");
         }
 
-        Path mediaRoot  = Paths.get(mediaDir).toAbsolutePath().normalize();
-        Path candidate  = mediaRoot.resolve(relativePath).normalize();
-
         // Security: must remain inside media root
-        if (!candidate.startsWith(mediaRoot)) {
+        Path candidate = store.resolve(relativePath);
+        if (candidate == null) {
             throw new IOException("Path escapes media root");
         }
 
         // If they passed a directory, look for index.m3u8 inside it
-        if (Files.isDirectory(candidate)) {
+        if (store.isDirectory(candidate)) {
             Path idx = candidate.resolve("index.m3u8");
-            if (Files.isRegularFile(idx)) return idx;
+            if (store.isFile(idx)) return idx;
             throw new IOException("index.m3u8 not found in directory: " + candidate);
         }
 
         // If they passed a file, it must be index.m3u8
-        if (Files.isRegularFile(candidate) && candidate.getFileName().toString().equals("index.m3u8")) {
+        if (store.isFile(candidate) && candidate.getFileName().toString().equals("index.m3u8")) {
             return candidate;
         }
 
@@ -450,12 +461,12 @@ public class MediaService {
     // List all playlist names (without .m3u extension) in the playlists subfolder of mediaDir
     public List<String> listPlaylists() {
         List<String> names = new ArrayList<>();
-        Path playlistsDir = Paths.get(mediaDir, "playlists");
+        Path playlistsDir = store.resolve("playlists");
 
-        if (!Files.isDirectory(playlistsDir)) return names;
+        if (!store.isDirectory(playlistsDir)) return names;
 
         try (var stream = Files.list(playlistsDir)) {
-            stream.filter(Files::isRegularFile)
+            stream.filter(store::isFile)
                   .map(Path::getFileName)
                   .map(Path::toString)
                   .filter(n -> n.toLowerCase(Locale.ROOT).endsWith(".m3u"))
@@ -481,39 +492,50 @@ public class MediaService {
         boolean looksLikeLabel = !cleaned.contains("/") && !cleaned.toLowerCase(Locale.ROOT).endsWith(".m3u");
         Path playlistPath;
         if (looksLikeLabel) {
-            playlistPath = Paths.get(mediaDir, "playlists", cleaned + ".m3u").normalize();
+            playlistPath = store.resolve("playlists/" + cleaned + ".m3u");
         } else {
             // It might already include ".m3u" and/or subfolders
             if (!cleaned.toLowerCase(Locale.ROOT).endsWith(".m3u")) cleaned = cleaned + ".m3u";
-            // Treat input as relative to mediaDir (reject absolute to avoid escaping)
-            cleaned = cleaned.replace('\\', '/').replaceAll("^/+", "");
-            playlistPath = Paths.get(mediaDir).resolve(cleaned).normalize();
+            // Treat input as relative to the media root; MediaStore rejects anything that escapes it
+            playlistPath = store.resolve(cleaned);
         }
 
+        if (playlistPath == null) {
+            log.error("[MediaService] Playlist outside media root rejected: {}", name);
+            return List.of();
+        }
         return loadPlaylistByAbsolutePath(playlistPath, offset, limit);
     }
 
     /** New: load given a path that is already relative to mediaDir (e.g. "Music/File/newVibes.m3u") */
     public List<String> loadPlaylistByRelPath(String relPath, int offset, int limit) {
         if (relPath == null || relPath.isBlank()) return List.of();
-        String cleaned = relPath.trim().replace('\\', '/').replaceAll("^/+", "");
+        String cleaned = relPath.trim();
         if (!cleaned.toLowerCase(Locale.ROOT).endsWith(".m3u")) cleaned += ".m3u";
 
-        Path playlistPath = Paths.get(mediaDir).resolve(cleaned).normalize();
+        Path playlistPath = store.resolve(cleaned);
+        if (playlistPath == null) {
+            log.error("[MediaService] Playlist outside media root rejected: {}", relPath);
+            return List.of();
+        }
         return loadPlaylistByAbsolutePath(playlistPath, offset, limit);
     }
 
     /** Core worker: validates location, reads lines, resolves entries relative to the playlist file's parent */
     private List<String> loadPlaylistByAbsolutePath(Path playlistPath, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return readPlaylist(playlistPath, offset, limit);
+        } finally {
+            playlistTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<String> readPlaylist(Path playlistPath, int offset, int limit) {
         List<String> out = new ArrayList<>();
-        Path mediaRoot = Paths.get(mediaDir).toAbsolutePath().normalize();
 
-        // Security: require playlist to live under mediaDir
-        if (!playlistPath.startsWith(mediaRoot)) {
-            log.error("[MediaService] Playlist outside media root rejected: {}", playlistPath);
-            return out;
-        }
-        if (!Files.isRegularFile(playlistPath)) {
+        // callers only pass paths MediaStore resolved, so it's under the media root
+        if (!store.isFile(playlistPath)) {
             log.error("[MediaService] Playlist file not found: {}", playlistPath);
             return out;
         }
@@ -540,11 +562,11 @@ public class MediaService {
                     candidate = baseDir.resolve(decoded).normalize();
                 }
 
-                if (!candidate.startsWith(mediaRoot)) {
+                if (!store.contains(candidate)) {
                     log.warn("[MediaService] Skipping path outside media root in playlist: {}", decoded);
                     continue;
                 }
-                if (!Files.isRegularFile(candidate)) {
+                if (!store.isFile(candidate)) {
                     log.warn("[MediaService] Skipping missing path in playlist: {}", decoded);
                     continue;
                 }
@@ -553,7 +575,7 @@ public class MediaService {
                 if (collected >= limit) break;
 
                 // Return media-root-relative path with forward slashes
-                String rel = mediaRoot.relativize(candidate).toString().replace('\\', '/');
+                String rel = store.relativize(candidate);
                 out.add(rel);
                 collected++;
             }
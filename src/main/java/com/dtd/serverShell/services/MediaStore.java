@@ -0,0 +1,148 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * The media tree (media.dir) as the media endpoints see it: turns client
+ * paths into absolute paths that are guaranteed to be inside the root, and
+ * answers is-file/is-directory/size from a short-lived stat cache.
+ *
+ * Containment is lexical (normalize + startsWith), as it always was here, so
+ * symlinks inside the tree may still point at other disks. Resolving is a
+ * pure function of the input and is cached without expiry; stats of files
+ * that exist are trusted for media.store.stat-ttl-ms. "Not there" is never
+ * cached, so a segment or manifest an encoder writes shows up on the next
+ * request. Code that writes under the root calls invalidate() for the files
+ * it touched.
+ */
+@Service
+public class MediaStore {
+
+    private static final int MAX_CACHED_PATHS = 4096;
+
+    // resolve() result for input that escapes the root or isn't a valid path
+    private static final Path OUTSIDE = Paths.get("");
+
+    private record Stat(BasicFileAttributes attrs, long loadedAt) {}
+
+    private final Path root;
+    private final long statTtlNanos;
+
+    private final Map<String, Path> resolved = lru();
+    private final Map<Path, Stat> stats = lru();
+
+    public MediaStore(@Value("${media.dir}") String mediaDir,
+                      @Value("${media.store.stat-ttl-ms:2000}") long statTtlMs) {
+        this.root = Paths.get(mediaDir).toAbsolutePath().normalize();
+        this.statTtlNanos = statTtlMs * 1_000_000L;
+    }
+
+    private static <K, V> Map<K, V> lru() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_CACHED_PATHS;
+            }
+        });
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    /**
+     * A media-root-relative path ("Movies/X/index.m3u8"; backslashes and
+     * leading slashes are tolerated) as an absolute path inside the root, or
+     * null when it would leave the root. Empty means the root itself.
+     */
+    public Path resolve(String rel) {
+        if (rel == null) return null;
+        Path p = resolved.get(rel);
+        if (p == null) {
+            p = resolveUncached(rel);
+            resolved.put(rel, p);
+        }
+        return p == OUTSIDE ? null : p;
+    }
+
+    /** Same as resolve() for a still percent-encoded URL path tail. */
+    public Path resolveEncoded(String encodedRel) {
+        if (encodedRel == null) return null;
+        return resolve(URLDecoder.decode(encodedRel, StandardCharsets.UTF_8));
+    }
+
+    private Path resolveUncached(String rel) {
+        String s = rel.replace('\\', '/');
+        int i = 0;
+        while (i < s.length() && s.charAt(i) == '/') i++;
+        try {
+            Path p = root.resolve(s.substring(i)).normalize();
+            return p.startsWith(root) ? p : OUTSIDE;
+        } catch (InvalidPathException e) {
+            return OUTSIDE;
+        }
+    }
+
+    public boolean contains(Path absolute) {
+        return absolute != null && absolute.normalize().startsWith(root);
+    }
+
+    /** Root-relative form of a path inside the root, with forward slashes. */
+    public String relativize(Path absolute) {
+        return root.relativize(absolute).toString().replace('\\', '/');
+    }
+
+    public boolean exists(Path p) {
+        return attributes(p).isPresent();
+    }
+
+    public boolean isFile(Path p) {
+        return attributes(p).map(BasicFileAttributes::isRegularFile).orElse(false);
+    }
+
+    public boolean isDirectory(Path p) {
+        return attributes(p).map(BasicFileAttributes::isDirectory).orElse(false);
+    }
+
+    public long size(Path p) throws IOException {
+        return attributes(p).orElseThrow(() -> new NoSuchFileException(p.toString())).size();
+    }
+
+    /** Follows symlinks, like Files.isRegularFile/isDirectory; empty if the path isn't there (or can't be read). */
+    public Optional<BasicFileAttributes> attributes(Path p) {
+        long now = System.nanoTime();
+        Stat stat = stats.get(p);
+        if (stat != null && now - stat.loadedAt() <= statTtlNanos) {
+            return Optional.of(stat.attrs());
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            stats.put(p, new Stat(attrs, now));
+            return Optional.of(attrs);
+        } catch (IOException | SecurityException e) {
+            // misses aren't cached: the file may be written a moment from now
+            stats.remove(p);
+            return Optional.empty();
+        }
+    }
+
+    /** Forget the cached stat of a file this process just created, wrote or deleted. */
+    public void invalidate(Path p) {
+        stats.remove(p);
+    }
+}
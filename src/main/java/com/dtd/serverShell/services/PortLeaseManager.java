@@ -0,0 +1,112 @@
+package com.dtd.serverShell.services;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Hands out emulator port triples (vnc, audio = vnc+1, gamepad = vnc+2) from
+ * the emulator port range without probing sockets.
+ *
+ * The range is cut into fixed slots of three ports; a bitset marks the free
+ * ones. A lease is tied to the container and comes back on its own when the
+ * container exits. Released slots sit in quarantine for a
+ * while first, so a new container doesn't race the old one's TIME_WAIT sockets.
+ */
+@Service
+public class PortLeaseManager {
+    private static final Logger log = LoggerFactory.getLogger(PortLeaseManager.class);
+
+    private static final int PORTS_PER_LEASE = 3;
+
+    private record Quarantined(int slot, long freeAtMs) {}
+
+    /** Three consecutive host ports owned by one container. release() is idempotent. */
+    public final class PortLease {
+        private final int slot;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PortLease(int slot) {
+            this.slot = slot;
+        }
+
+        public int vncPort()     { return minPort + slot * PORTS_PER_LEASE; }
+        public int audioPort()   { return vncPort() + 1; }
+        public int gamepadPort() { return vncPort() + 2; }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                PortLeaseManager.this.release(slot);
+            }
+        }
+    }
+
+    private final int minPort;
+    private final int slots;
+    private final long quarantineMs;
+
+    // guarded by this
+    private final BitSet free;
+    private final Deque<Quarantined> quarantine = new ArrayDeque<>();
+
+    public PortLeaseManager(@Value("${emulator.ports.min:33000}") int minPort,
+                            @Value("${emulator.ports.max:33100}") int maxPort,
+                            @Value("${emulator.ports.quarantine-ms:60000}") long quarantineMs) {
+        this.minPort = minPort;
+        this.slots = (maxPort - minPort + 1) / PORTS_PER_LEASE;
+        this.quarantineMs = quarantineMs;
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Emulator port range " + minPort + "-" + maxPort + " is too small");
+        }
+        this.free = new BitSet(slots);
+        this.free.set(0, slots);
+    }
+
+    /** Lowest free triple; IllegalStateException when every slot is leased or quarantined. */
+    public synchronized PortLease acquire() {
+        long now = System.currentTimeMillis();
+        // quarantine is FIFO with a fixed delay, so expired entries are always at the head
+        while (!quarantine.isEmpty() && quarantine.peekFirst().freeAtMs() <= now) {
+            free.set(quarantine.pollFirst().slot());
+        }
+        int slot = free.nextSetBit(0);
+        if (slot < 0) {
+            throw new IllegalStateException("No free emulator ports (" + quarantine.size() + " in quarantine)");
+        }
+        free.clear(slot);
+        return new PortLease(slot);
+    }
+
+    /** Take the triple starting at this VNC port (reattaching to a container after a restart); empty if it's not free. */
+    public synchronized Optional<PortLease> claim(int vncPort) {
+        int offset = vncPort - minPort;
+        if (offset < 0 || offset % PORTS_PER_LEASE != 0 || offset / PORTS_PER_LEASE >= slots) return Optional.empty();
+        int slot = offset / PORTS_PER_LEASE;
+        if (!free.get(slot)) return Optional.empty();
+        free.clear(slot);
+        return Optional.of(new PortLease(slot));
+    }
+
+    /** Give the lease back when the container exits (normally, stopped or crashed). */
+    public void releaseOnExit(PortLease lease, CompletableFuture<?> exit) {
+        exit.whenComplete((code, error) -> lease.release());
+    }
+
+    public synchronized int available() {
+        return free.cardinality();
+    }
+
+    private synchronized void release(int slot) {
+        quarantine.addLast(new Quarantined(slot, System.currentTimeMillis() + quarantineMs));
+        log.debug("[PORTS] Released {}-{} (quarantined {}ms)", minPort + slot * PORTS_PER_LEASE,
+                minPort + slot * PORTS_PER_LEASE + PORTS_PER_LEASE - 1, quarantineMs);
+    }
+}
@@ -0,0 +1,316 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Catalog of the ROMs under emulator.roms.dir: core, CRC32, SHA-1 and, when
+ * a DAT file (Logiqx XML, as published by No-Intro) lists the hash, the
+ * title.
+ *
+ * When emulator.roms.dir is set, launches are limited to indexed ROMs and
+ * the tree is mounted read-only into the container, so the catalog and what
+ * the emulator loads are the same files.
+ *
+ * The tree is walked on startup and every emulator.roms.rescan-minutes.
+ * Files are hashed in parallel from memory-mapped reads; results are kept in
+ * a JSON cache keyed by relative path, and a file is only hashed again when
+ * its size or mtime changed.
+ */
+@Service
+public class RomIndex {
+    private static final Logger log = LoggerFactory.getLogger(RomIndex.class);
+
+    private static final Map<String, String> CORES = Map.of(
+            "gb", "GBA", "gba", "GBA",
+            "n64", "N64", "z64", "N64", "v64", "N64");
+    // mapped window; N64 ROMs top out at 64MB
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    /** One ROM; rom is the path under the ROM dir, as passed to /emulator/launch. */
+    public record RomEntry(String rom, String core, long size, long modified, String crc32, String sha1, String title) {}
+
+    private final Path romDir;
+    private final Path cacheFile;
+    private final List<Path> datFiles;
+    private final int threads;
+    private final ObjectMapper mapper;
+
+    @Value("${emulator.roms.rescan-minutes:10}")
+    private long rescanMinutes;
+
+    // rom -> entry; replaced wholesale after each scan
+    private volatile Map<String, RomEntry> entries = Map.of();
+    private volatile long lastScanAt;
+    private final Object scanLock = new Object();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rom-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RomIndex(@Value("${emulator.roms.dir:}") String romDir,
+                    @Value("${emulator.roms.dat:}") List<String> datFiles,
+                    @Value("${emulator.roms.threads:4}") int threads,
+                    @Value("${rom.save.dir}") String romSaveDir,
+                    ObjectMapper mapper) {
+        this.romDir = romDir.isBlank() ? null : Paths.get(romDir).toAbsolutePath().normalize();
+        this.datFiles = datFiles.stream().filter(s -> !s.isBlank()).map(Paths::get).toList();
+        this.cacheFile = Paths.get(romSaveDir, ".rom-index.json");
+        this.threads = Math.max(1, threads);
+        this.mapper = mapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (romDir == null) return;
+        // warm from the cache so /emulator/roms answers before the first walk is done
+        entries = loadCache();
+        if (rescanMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::rescanQuietly, 0, rescanMinutes, TimeUnit.MINUTES);
+        } else {
+            scheduler.execute(this::rescanQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public Collection<RomEntry> all() {
+        return entries.values();
+    }
+
+    public Optional<RomEntry> find(String rom) {
+        return Optional.ofNullable(entries.get(rom));
+    }
+
+    /** Nothing indexed (no ROM dir configured, or ROMs live only in the image). */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /** The host ROM tree, mounted read-only into every emulator container; empty when ROMs live only in the image. */
+    public Optional<Path> romDir() {
+        return Optional.ofNullable(romDir);
+    }
+
+    public long getLastScanAt() {
+        return lastScanAt;
+    }
+
+    private void rescanQuietly() {
+        try {
+            rescan();
+        } catch (Exception e) {
+            log.warn("[ROM INDEX] Scan of {} failed: {}", romDir, e.getMessage());
+        }
+    }
+
+    public void rescan() throws IOException {
+        if (romDir == null || !Files.isDirectory(romDir)) return;
+        synchronized (scanLock) {
+            long started = System.currentTimeMillis();
+            Map<String, RomEntry> previous = entries;
+            Map<String, String> titles = loadDats();
+
+            List<Path> toHash = new ArrayList<>();
+            Map<String, RomEntry> next = new ConcurrentHashMap<>();
+            try (Stream<Path> files = Files.walk(romDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String core = coreOf(file);
+                    if (core == null) continue;
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attrs.isRegularFile()) continue;
+                    RomEntry known = previous.get(relative(file));
+                    if (known != null && known.size() == attrs.size() && known.modified() == attrs.lastModifiedTime().toMillis()) {
+                        // unchanged; the DAT may have changed though
+                        next.put(known.rom(), withTitle(known, titles));
+                    } else {
+                        toHash.add(file);
+                    }
+                }
+            }
+
+            if (!toHash.isEmpty()) hashAll(toHash, titles, next);
+
+            entries = Map.copyOf(next);
+            lastScanAt = System.currentTimeMillis();
+            saveCache(next);
+            log.info("[ROM INDEX] {} ROM(s) in {}, {} hashed, {}ms", next.size(), romDir, toHash.size(),
+                    lastScanAt - started);
+        }
+    }
+
+    private void hashAll(List<Path> files, Map<String, String> titles, Map<String, RomEntry> into) {
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()), r -> {
+            Thread t = new Thread(r, "rom-hash-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (Path file : files) {
+                pending.add(pool.submit(() -> {
+                    try {
+                        RomEntry e = hash(file);
+                        into.put(e.rom(), withTitle(e, titles));
+                    } catch (IOException e) {
+                        log.warn("[ROM INDEX] Could not hash {}: {}", file, e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> f : pending) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("[ROM INDEX] Hashing failed: {}", e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private RomEntry hash(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        MessageDigest sha1 = sha1();
+        long size, modified = Files.getLastModifiedTime(file).toMillis();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+                crc.update(window.duplicate());
+                sha1.update(window);
+            }
+        }
+        return new RomEntry(relative(file), coreOf(file), size, modified,
+                String.format("%08x", crc.getValue()), HexFormat.of().formatHex(sha1.digest()), null);
+    }
+
+    private static RomEntry withTitle(RomEntry e, Map<String, String> titles) {
+        String title = titles.getOrDefault(e.sha1(), titles.get("crc:" + e.crc32()));
+        return title == null || title.equals(e.title()) ? e
+                : new RomEntry(e.rom(), e.core(), e.size(), e.modified(), e.crc32(), e.sha1(), title);
+    }
+
+    private String relative(Path file) {
+        return romDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    static String coreOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : CORES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    //  <game name="Title (USA)"><rom name="..." size="..." crc="89abcdef" sha1="..."/></game>
+    private Map<String, String> loadDats() {
+        Map<String, String> titles = new HashMap<>();
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        for (Path dat : datFiles) {
+            try (InputStream in = Files.newInputStream(dat)) {
+                XMLStreamReader xml = factory.createXMLStreamReader(in);
+                String game = null;
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) continue;
+                    String element = xml.getLocalName();
+                    if ("game".equals(element) || "machine".equals(element)) {
+                        game = xml.getAttributeValue(null, "name");
+                    } else if ("rom".equals(element) && game != null) {
+                        String sha1 = xml.getAttributeValue(null, "sha1");
+                        String crc = xml.getAttributeValue(null, "crc");
+                        if (sha1 != null) titles.put(sha1.toLowerCase(Locale.ROOT), game);
+                        if (crc != null) titles.putIfAbsent("crc:" + crc.toLowerCase(Locale.ROOT), game);
+                    }
+                }
+                xml.close();
+            } catch (IOException | XMLStreamException e) {
+                log.warn("[ROM INDEX] Could not read DAT {}: {}", dat, e.getMessage());
+            }
+        }
+        return titles;
+    }
+
+    private Map<String, RomEntry> loadCache() {
+        if (!Files.isRegularFile(cacheFile)) return Map.of();
+        try {
+            List<RomEntry> cached = mapper.readValue(cacheFile.toFile(), new TypeReference<List<RomEntry>>() {});
+            Map<String, RomEntry> map = new HashMap<>();
+            cached.forEach(e -> map.put(e.rom(), e));
+            return Map.copyOf(map);
+        } catch (IOException e) {
+            log.warn("[ROM INDEX] Ignoring unreadable cache {}: {}", cacheFile, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private void saveCache(Map<String, RomEntry> index) {
+        try {
+            List<RomEntry> sorted = new ArrayList<>(index.values());
+            sorted.sort(Comparator.comparing(RomEntry::rom));
+            Files.createDirectories(cacheFile.getParent());
+            Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            mapper.writeValue(tmp.toFile(), sorted);
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("[ROM INDEX] Could not write cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
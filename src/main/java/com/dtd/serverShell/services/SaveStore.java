@@ -0,0 +1,324 @@
+package com.dtd.serverShell.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Versioned, deduplicated save storage under rom.save.dir/store.
+ *
+ *   chunks/ab/abcdef…   deflated chunk, named by the SHA-256 of its raw bytes
+ *   index/<user>/<core>/<save>.json   versions, newest last: size, sha256, chunk list
+ *
+ * Saves are cut with content-defined chunking (gear rolling hash, 16K min /
+ * 64K average / 256K max), so an edit only changes the chunks around it and a
+ * new version of a large save state writes just those. SRAM-sized saves are a
+ * single chunk. Identical chunks are stored once for everyone. Each save keeps
+ * its last save.store.versions versions; chunks no version references are
+ * swept in the background.
+ */
+@Service
+public class SaveStore {
+    private static final Logger log = LoggerFactory.getLogger(SaveStore.class);
+
+    private static final int MIN_CHUNK = 16 * 1024;
+    private static final int MAX_CHUNK = 256 * 1024;
+    // 16 high bits -> a boundary every ~64K past MIN_CHUNK
+    private static final long BOUNDARY_MASK = 0xFFFFL << 48;
+    private static final long[] GEAR = new long[256];
+    static {
+        // fixed seed: boundaries must be the same across restarts for dedup to work
+        Random r = new Random(0x5EED5A7EL);
+        for (int i = 0; i < GEAR.length; i++) GEAR[i] = r.nextLong();
+    }
+    private static final long GC_INTERVAL_MS = 60 * 60 * 1000L;
+    // chunks younger than this may belong to a put that hasn't written its index yet
+    private static final long GC_GRACE_MS = 10 * 60 * 1000L;
+
+    public record SaveVersion(int version, long createdAt, long size, String sha256, List<String> chunks) {}
+
+    /** Result of a put: the version now current, and how much of it was new on disk. */
+    public record PutResult(SaveVersion version, boolean created, int newChunks, long newBytes) {}
+
+    private final Path chunksDir;
+    private final Path indexDir;
+    private final int keepVersions;
+    private final ObjectMapper mapper;
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    private final ExecutorService gcExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "save-store-gc");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long lastGcAt;
+
+    public SaveStore(@Value("${rom.save.dir}") String romSaveDir,
+                     @Value("${save.store.versions:10}") int keepVersions,
+                     ObjectMapper mapper) {
+        Path root = Paths.get(romSaveDir, "store");
+        this.chunksDir = root.resolve("chunks");
+        this.indexDir = root.resolve("index");
+        this.keepVersions = Math.max(1, keepVersions);
+        this.mapper = mapper;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gcExecutor.shutdownNow();
+    }
+
+    /** Store a new version of user/core/save from the stream (no new version if it matches the latest). */
+    public PutResult put(String username, String core, String saveName, InputStream in) throws IOException {
+        MessageDigest whole = sha256();
+        List<String> chunks = new ArrayList<>();
+        long size = 0;
+        int newChunks = 0;
+        long newBytes = 0;
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(MAX_CHUNK);
+        byte[] buf = new byte[64 * 1024];
+        long hash = 0;
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            whole.update(buf, 0, n);
+            size += n;
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                hash = (hash << 1) + GEAR[buf[i] & 0xff];
+                int len = chunk.size() + i + 1 - from;
+                if ((len >= MIN_CHUNK && (hash & BOUNDARY_MASK) == 0) || len >= MAX_CHUNK) {
+                    chunk.write(buf, from, i + 1 - from);
+                    long written = writeChunk(chunk.toByteArray(), chunks);
+                    if (written > 0) { newChunks++; newBytes += written; }
+                    chunk.reset();
+                    from = i + 1;
+                    hash = 0;
+                }
+            }
+            chunk.write(buf, from, n - from);
+        }
+        if (chunk.size() > 0 || chunks.isEmpty()) {
+            long written = writeChunk(chunk.toByteArray(), chunks);
+            if (written > 0) { newChunks++; newBytes += written; }
+        }
+        String sha = HexFormat.of().formatHex(whole.digest());
+
+        Path index = indexFile(username, core, saveName);
+        synchronized (lock(index)) {
+            List<SaveVersion> versions = readIndex(index);
+            SaveVersion latest = versions.isEmpty() ? null : versions.get(versions.size() - 1);
+            if (latest != null && latest.sha256().equals(sha)) {
+                return new PutResult(latest, false, newChunks, newBytes);
+            }
+            SaveVersion v = new SaveVersion(latest == null ? 1 : latest.version() + 1, System.currentTimeMillis(), size, sha, chunks);
+            versions.add(v);
+            boolean pruned = versions.size() > keepVersions;
+            while (versions.size() > keepVersions) versions.remove(0);
+            writeIndex(index, versions);
+            if (pruned) maybeCollect();
+            log.debug("[SAVE STORE] {}/{}/{} v{}: {} bytes, {} chunk(s), {} new ({} bytes)",
+                    username, core, saveName, v.version(), size, chunks.size(), newChunks, newBytes);
+            return new PutResult(v, true, newChunks, newBytes);
+        }
+    }
+
+    /** Store the file's current content as a version (skipped when unchanged). */
+    public Optional<PutResult> snapshot(String username, String core, Path file) {
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try (InputStream in = Files.newInputStream(file)) {
+            return Optional.of(put(username, core, file.getFileName().toString(), in));
+        } catch (IOException e) {
+            log.warn("[SAVE STORE] Could not snapshot {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Snapshot every file directly in dir (a session's save dir when it ends). */
+    public void snapshotDir(String username, String core, Path dir) {
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile).forEach(f -> snapshot(username, core, f));
+        } catch (IOException e) {
+            log.warn("[SAVE STORE] Could not snapshot {}: {}", dir, e.getMessage());
+        }
+    }
+
+    public List<SaveVersion> versions(String username, String core, String saveName) throws IOException {
+        Path index = indexFile(username, core, saveName);
+        synchronized (lock(index)) {
+            return readIndex(index);
+        }
+    }
+
+    public Optional<SaveVersion> version(String username, String core, String saveName, int version) throws IOException {
+        return versions(username, core, saveName).stream().filter(v -> v.version() == version).findFirst();
+    }
+
+    /** The version's bytes, read chunk by chunk as the stream is consumed. */
+    public InputStream open(SaveVersion version) {
+        Iterator<String> it = version.chunks().iterator();
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            @Override public boolean hasMoreElements() { return it.hasNext(); }
+            @Override public InputStream nextElement() {
+                try {
+                    return new InflaterInputStream(Files.newInputStream(chunkFile(it.next())));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    /** Write a version out to target (atomically), e.g. into a session's save dir. */
+    public void restore(SaveVersion version, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".restore");
+        try (InputStream in = open(version)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // returns bytes written to disk, 0 if the chunk was already stored
+    private long writeChunk(byte[] raw, List<String> chunks) throws IOException {
+        String sha = HexFormat.of().formatHex(sha256().digest(raw));
+        chunks.add(sha);
+        Path file = chunkFile(sha);
+        if (Files.exists(file)) {
+            // fresh mtime keeps a concurrent GC (which skips young chunks) from sweeping it before our index lands
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return 0;
+            } catch (NoSuchFileException swept) {
+                // swept just now; write it again below
+            }
+        }
+
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), sha, ".tmp");
+        try {
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(tmp), new Deflater(Deflater.BEST_SPEED), true)) {
+                out.write(raw);
+            }
+            long written = Files.size(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException raced) {
+                return 0;
+            }
+            return written;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path chunkFile(String sha) {
+        return chunksDir.resolve(sha.substring(0, 2)).resolve(sha);
+    }
+
+    private Path indexFile(String username, String core, String saveName) {
+        if (saveName.contains("/") || saveName.contains("\\") || saveName.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid save name: " + saveName);
+        }
+        return indexDir.resolve(username).resolve(core).resolve(saveName + ".json");
+    }
+
+    private Object lock(Path index) {
+        return locks.computeIfAbsent(index.toString(), k -> new Object());
+    }
+
+    private List<SaveVersion> readIndex(Path index) throws IOException {
+        if (!Files.isRegularFile(index)) return new ArrayList<>();
+        return new ArrayList<>(mapper.readValue(index.toFile(), new TypeReference<List<SaveVersion>>() {}));
+    }
+
+    private void writeIndex(Path index, List<SaveVersion> versions) throws IOException {
+        Files.createDirectories(index.getParent());
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        mapper.writeValue(tmp.toFile(), versions);
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // mark every chunk any index still lists, sweep the rest (at most hourly)
+    private void maybeCollect() {
+        long now = System.currentTimeMillis();
+        if (now - lastGcAt < GC_INTERVAL_MS) return;
+        lastGcAt = now;
+        gcExecutor.execute(() -> {
+            try {
+                Set<String> live = new HashSet<>();
+                try (Stream<Path> indexes = Files.walk(indexDir)) {
+                    for (Path index : (Iterable<Path>) indexes.filter(p -> p.toString().endsWith(".json"))::iterator) {
+                        synchronized (lock(index)) {
+                            readIndex(index).forEach(v -> live.addAll(v.chunks()));
+                        }
+                    }
+                }
+                long cutoff = System.currentTimeMillis() - GC_GRACE_MS;
+                List<Path> dead = new ArrayList<>();
+                try (Stream<Path> files = Files.walk(chunksDir)) {
+                    files.filter(Files::isRegularFile)
+                         .filter(f -> !live.contains(f.getFileName().toString()))
+                         .forEach(dead::add);
+                }
+                int removed = 0;
+                for (Path f : dead) {
+                    if (Files.getLastModifiedTime(f).toMillis() < cutoff && Files.deleteIfExists(f)) removed++;
+                }
+                log.info("[SAVE STORE] GC removed {} unreferenced chunk(s)", removed);
+            } catch (IOException e) {
+                log.warn("[SAVE STORE] GC failed: {}", e.getMessage());
+            }
+        });
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.dtd.serverShell.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Materializes a user's RetroArch config/save dir from the default/ template.
+ *
+ * Every file is the user's own: the user's dir is mounted read-write into the
+ * container, and RetroArch writes in place (shader presets, overlays), so
+ * sharing an inode with default/ would change the template for everybody.
+ * Files are cloned with `cp --reflink=auto`, which on btrfs/XFS gives
+ * copy-on-write clones (no extra disk until a user changes a file) and is a
+ * plain copy elsewhere. A first provision clones the whole tree in one go.
+ *
+ * The template is described by a manifest of relative path -> SHA-256. What
+ * was provisioned into a user's dir is remembered in a state file, so after a
+ * template update only changed/new files are applied, and only where the user
+ * hasn't changed their copy.
+ */
+@Service
+public class TemplateProvisioner {
+    private static final Logger log = LoggerFactory.getLogger(TemplateProvisioner.class);
+
+    private static final String MANIFEST_KEY = "#manifest";
+    // bumped when the way files are materialized changes, so every dir is revisited once
+    // (v2: no more hard links into default/)
+    private static final String LAYOUT = "v2";
+    // files per cp invocation, well under ARG_MAX
+    private static final int CLONE_BATCH = 256;
+
+    private record HashedFile(long size, long modified, String sha256) {}
+
+    // template file -> hash, reused while size + mtime are unchanged
+    private final Map<Path, HashedFile> hashes = new ConcurrentHashMap<>();
+    // one provision per target dir at a time
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Bring target up to date with template.
+     *
+     * @param state where to remember what was provisioned (kept outside target)
+     */
+    public void provision(Path template, Path target, Path state) throws IOException {
+        if (!Files.isDirectory(template)) {
+            Files.createDirectories(target);
+            return;
+        }
+        synchronized (locks.computeIfAbsent(target.toAbsolutePath().normalize(), k -> new Object())) {
+            Map<String, String> manifest = manifest(template);
+            String manifestHash = manifestHash(manifest);
+            Properties provisioned = load(state);
+            if (manifestHash.equals(provisioned.getProperty(MANIFEST_KEY)) && Files.isDirectory(target)) {
+                return; // nothing changed since last time
+            }
+
+            boolean fresh = !Files.exists(target);
+            if (fresh && cloneTree(template, target)) {
+                log.info("[TEMPLATE] {} cloned from {}", target, template);
+            } else {
+                int applied = apply(template, target, manifest, provisioned);
+                log.info("[TEMPLATE] {} provisioned from {}: {} of {} file(s) written", target, template, applied, manifest.size());
+            }
+
+            Properties next = new Properties();
+            manifest.forEach(next::setProperty);
+            next.setProperty(MANIFEST_KEY, manifestHash);
+            store(state, next);
+        }
+    }
+
+    private int apply(Path template, Path target, Map<String, String> manifest, Properties provisioned) throws IOException {
+        List<String> pending = new ArrayList<>();
+        Files.createDirectories(target);
+        for (Map.Entry<String, String> e : manifest.entrySet()) {
+            Path source = template.resolve(e.getKey());
+            Path dest = target.resolve(e.getKey());
+            String before = provisioned.getProperty(e.getKey());
+
+            if (Files.exists(dest)) {
+                if (Files.isSameFile(source, dest)) {
+                    // hard-linked by an earlier version: give the user their own copy
+                    pending.add(e.getKey());
+                    continue;
+                }
+                if (e.getValue().equals(before)) continue;              // already this version
+                if (before == null) continue;                           // user's own file, never ours
+                if (!before.equals(sha256(dest))) continue;             // user edited it; keep theirs
+            }
+            pending.add(e.getKey());
+        }
+        for (int i = 0; i < pending.size(); i += CLONE_BATCH) {
+            clone(template, target, pending.subList(i, Math.min(pending.size(), i + CLONE_BATCH)));
+        }
+        return pending.size();
+    }
+
+    // cp --reflink=auto clones where the filesystem can and copies where it can't; without cp, plain copies
+    private static void clone(Path template, Path target, List<String> relPaths) throws IOException {
+        for (String rel : relPaths) {
+            // never write through an existing file: it may still be a hard link into default/
+            Files.deleteIfExists(target.resolve(rel));
+        }
+        if (EmulatorService.isLinux()) {
+            List<String> cmd = new ArrayList<>(List.of("cp", "-p", "--reflink=auto", "--parents"));
+            cmd.addAll(relPaths);
+            cmd.add(target.toAbsolutePath().toString());
+            try {
+                Process p = new ProcessBuilder(cmd)
+                        .directory(template.toFile())
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (p.waitFor() == 0) return;
+            } catch (IOException e) {
+                log.debug("[TEMPLATE] cp unavailable: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while provisioning " + target, e);
+            }
+        }
+        for (String rel : relPaths) {
+            Path dest = target.resolve(rel);
+            Files.createDirectories(dest.getParent());
+            Files.copy(template.resolve(rel), dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    // whole tree in one fork (clones where the filesystem can, copies elsewhere); false falls back to per-file
+    private static boolean cloneTree(Path template, Path target) {
+        if (!EmulatorService.isLinux()) return false;
+        try {
+            Files.createDirectories(target.getParent());
+            Process p = new ProcessBuilder("cp", "-a", "--reflink=auto", template.toString(), target.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (p.waitFor() == 0) return true;
+        } catch (IOException e) {
+            log.debug("[TEMPLATE] cp unavailable: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // cp may have left a partial tree behind
+        deleteTree(target);
+        return false;
+    }
+
+    private Map<String, String> manifest(Path template) throws IOException {
+        Map<String, String> manifest = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(template)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attrs.isRegularFile()) continue;
+                long modified = attrs.lastModifiedTime().toMillis();
+                HashedFile cached = hashes.get(file);
+                if (cached == null || cached.size() != attrs.size() || cached.modified() != modified) {
+                    cached = new HashedFile(attrs.size(), modified, sha256(file));
+                    hashes.put(file, cached);
+                }
+                manifest.put(template.relativize(file).toString().replace('\\', '/'), cached.sha256());
+            }
+        }
+        return manifest;
+    }
+
+    private static String manifestHash(Map<String, String> manifest) {
+        MessageDigest md = sha256();
+        // part of the hash so dirs provisioned under an older layout are revisited once
+        md.update(("layout=" + LAYOUT + "\n").getBytes(StandardCharsets.UTF_8));
+        manifest.forEach((path, hash) -> md.update((path + "=" + hash + "\n").getBytes(StandardCharsets.UTF_8)));
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest md = sha256();
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) != -1) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Properties load(Path state) throws IOException {
+        Properties p = new Properties();
+        if (Files.isRegularFile(state)) {
+            try (InputStream in = Files.newInputStream(state)) {
+                p.load(in);
+            }
+        }
+        return p;
+    }
+
+    private static void store(Path state, Properties p) throws IOException {
+        Files.createDirectories(state.getParent());
+        Path tmp = state.resolveSibling(state.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "provisioned template files (path=sha256)");
+        }
+        Files.move(tmp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteTree(Path root) {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            });
+        } catch (IOException e) {
+            log.warn("[TEMPLATE] Could not clean up {}: {}", root, e.getMessage());
+        }
+    }
+}
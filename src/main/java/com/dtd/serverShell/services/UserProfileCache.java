@@ -0,0 +1,82 @@
+package com.dtd.serverShell.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.model.UserDashboardView;
+import com.dtd.serverShell.model.UserRoleView;
+import com.dtd.serverShell.repository.AppUserRepository;
+
+/**
+ * Small read-through cache for the per-user reads hit on every page load
+ * (/user/role, /user/dashboard). Entries are dropped by UserService whenever
+ * that user's document is written.
+ */
+@Service
+public class UserProfileCache {
+
+    private static final int MAX_USERS = 256;
+
+    private final AppUserRepository userRepository;
+
+    private final Map<String, UserRoleView> roles = lru();
+    private final Map<String, UserDashboardView> dashboards = lru();
+
+    // bumped on every invalidation so a load that raced a write is not cached
+    private final AtomicLong epoch = new AtomicLong();
+
+    public UserProfileCache(AppUserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public Optional<UserRoleView> role(String username) {
+        return readThrough(roles, username, userRepository::findRoleByUsername);
+    }
+
+    public Optional<UserDashboardView> dashboard(String username) {
+        return readThrough(dashboards, username, userRepository::findDashboardByUsername);
+    }
+
+    public void invalidate(String username) {
+        if (username == null) return;
+        epoch.incrementAndGet();
+        roles.remove(username);
+        dashboards.remove(username);
+    }
+
+    private <T> Optional<T> readThrough(Map<String, T> cache, String username,
+                                        Function<String, Optional<T>> loader) {
+        if (username == null) return Optional.empty();
+
+        T hit = cache.get(username);
+        if (hit != null) return Optional.of(hit);
+
+        // query outside the map lock; unknown users are not cached so new accounts show up
+        long seen = epoch.get();
+        Optional<T> loaded = loader.apply(username);
+        if (loaded.isPresent()) {
+            // compare and put under the map's own lock (synchronizedMap locks on itself): invalidate()
+            // bumps the epoch before its remove() takes that lock, so either we see the new epoch
+            // or our put lands before the remove
+            synchronized (cache) {
+                if (epoch.get() == seen) cache.put(username, loaded.get());
+            }
+        }
+        return loaded;
+    }
+
+    private static <T> Map<String, T> lru() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > MAX_USERS;
+            }
+        });
+    }
+}
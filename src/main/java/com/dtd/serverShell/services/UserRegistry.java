@@ -0,0 +1,65 @@
+package com.dtd.serverShell.services;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.dtd.serverShell.model.UserNameView;
+import com.dtd.serverShell.repository.AppUserRepository;
+
+/**
+ * In-memory set of known usernames (lowercased), used to hide other users'
+ * &lt;username&gt;.m3u favorites in playlist folders. Loaded once with a
+ * username-only projection; UserService invalidates it when users are added
+ * or removed.
+ */
+@Service
+public class UserRegistry {
+    private static final Logger log = LoggerFactory.getLogger(UserRegistry.class);
+
+    private final AppUserRepository userRepository;
+
+    // null = not loaded (or invalidated); replaced wholesale, never mutated
+    private volatile Set<String> usernamesLower;
+
+    public UserRegistry(AppUserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public Set<String> usernamesLower() {
+        Set<String> snapshot = usernamesLower;
+        if (snapshot != null) return snapshot;
+
+        synchronized (this) {
+            if (usernamesLower == null) {
+                try {
+                    usernamesLower = load();
+                } catch (Exception e) {
+                    // leave unloaded so the next listing retries
+                    log.warn("[UserRegistry] Unable to load usernames: {}", e.toString());
+                    return Set.of();
+                }
+            }
+            return usernamesLower;
+        }
+    }
+
+    // synchronized so an in-flight load cannot publish a set that predates the write
+    public synchronized void invalidate() {
+        usernamesLower = null;
+    }
+
+    private Set<String> load() {
+        Set<String> out = new HashSet<>();
+        for (UserNameView u : userRepository.findAllUsernames()) {
+            if (u != null && u.getUsername() != null && !u.getUsername().isBlank()) {
+                out.add(u.getUsername().toLowerCase());
+            }
+        }
+        log.info("[UserRegistry] Loaded {} usernames", out.size());
+        return Set.copyOf(out);
+    }
+}
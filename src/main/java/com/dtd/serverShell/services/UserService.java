@@ -9,6 +9,10 @@ import org.springframework.stereotype.Service;
 
 import com.dtd.serverShell.model.AppUser;
 import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.security.CustomUserDetailsService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import passwordHasher.passwordHasher;
 
@@ -16,27 +20,59 @@ import passwordHasher.passwordHasher;
 public class UserService {
 
     private final AppUserRepository userRepository;
+    private final UserProfileCache profileCache;
+    private final UserRegistry userRegistry;
+    private final CustomUserDetailsService userDetailsService;
+
+    // users.mongo{op}: every repository call made from here
+    private final Timer mongoFind;
+    private final Timer mongoSave;
+    private final Timer mongoDelete;
 
     @Value("${pixelart.dir}")
     private String pixelartDir;
     
-    public UserService(AppUserRepository userRepository) {
+    public UserService(AppUserRepository userRepository, UserProfileCache profileCache, UserRegistry userRegistry,
+                       CustomUserDetailsService userDetailsService, MeterRegistry meters) {
         this.userRepository = userRepository;
+        this.profileCache = profileCache;
+        this.userRegistry = userRegistry;
+        this.userDetailsService = userDetailsService;
+        this.mongoFind = Timer.builder("users.mongo").tag("op", "findByUsername").publishPercentileHistogram().register(meters);
+        this.mongoSave = Timer.builder("users.mongo").tag("op", "save").publishPercentileHistogram().register(meters);
+        this.mongoDelete = Timer.builder("users.mongo").tag("op", "delete").publishPercentileHistogram().register(meters);
     }
 
     public AppUser addUser(String username, String password, String role) {
         AppUser user = new AppUser(username, password, role);
-        return userRepository.save(user);
+        AppUser saved = mongoSave.record(() -> userRepository.save(user));
+        profileCache.invalidate(username);
+        userRegistry.invalidate();
+        userDetailsService.evict(username);
+        return saved;
+    }
+    
+    public boolean removeUser(String username) {
+        Optional<AppUser> user = mongoFind.record(() -> userRepository.findByUsername(username));
+        if (user.isEmpty()) return false;
+
+        mongoDelete.record(() -> userRepository.delete(user.get()));
+        profileCache.invalidate(username);
+        userRegistry.invalidate();
+        userDetailsService.evict(username);
+        return true;
     }
     
     public boolean changePassword(String username, String rawNewPassword) {
-        Optional<AppUser> optionalUser = userRepository.findByUsername(username);
+        Optional<AppUser> optionalUser = mongoFind.record(() -> userRepository.findByUsername(username));
         if (optionalUser.isEmpty()) return false;
 
         AppUser user = optionalUser.get();
         String hashed = passwordHasher.hash(rawNewPassword); 
         user.setPassword(hashed);
-        userRepository.save(user);
+        mongoSave.record(() -> userRepository.save(user));
+        profileCache.invalidate(username);
+        userDetailsService.evict(username);
         return true;
     }
     
@@ -74,7 +110,7 @@ public class UserService {
             default       -> Cat.NONE;
         };
 
-        userRepository.findByUsername(username).ifPresent(user -> {
+        mongoFind.record(() -> userRepository.findByUsername(username)).ifPresent(user -> {
             // Copy-on-write: read existing list, copy it, mutate the copy, then set it back.
             switch (cat) {                                                  // [UserProfileService.java]
                 case MOVIES -> {
@@ -95,7 +131,8 @@ public class UserService {
                 case NONE -> { /* ignore anything outside our three roots */ }
             }
 
-            userRepository.save(user);
+            mongoSave.record(() -> userRepository.save(user));
+            profileCache.invalidate(username);
         });
     }
 
@@ -45,10 +45,10 @@ function extractPortFromUrl(urlString) {
   }
 }
 
-//cleanup poster
-function postCleanup(port) {
+//cleanup poster (sessionId from the launch response; port only as a fallback)
+function postCleanup(sessionId, port) {
   //prefer beacon; fallback to keepalive fetch
-  const payload = JSON.stringify({ port: port || 0 });
+  const payload = JSON.stringify(sessionId ? { sessionId } : { port: port || 0 });
   try {
     if (navigator.sendBeacon) {
       const blob = new Blob([payload], { type: 'application/json' });
@@ -101,6 +101,77 @@ function detectCoreFromRom(rom) {
   return (r.endsWith(".gb") || r.endsWith(".gba")) ? "GBA" : "N64";
 }
 
+function xsrfHeaders() {
+  const m = (document.cookie || "").match(/(?:^|;\s*)XSRF-TOKEN=([^;]+)/);
+  return m ? { "X-XSRF-TOKEN": decodeURIComponent(m[1]) } : {};
+}
+
+// POST queues a background launch and returns a job id; the server then streams
+// "progress" events ("queued" with a position while it waits for a slot) and a final "ready" (vnc/audio/gamepad URLs),
+// "failed" or "cancelled". Leaving the page gives the launch up (DELETE) instead of letting it hold a slot.
+function startLaunchJob(rom) {
+  return fetch("/emulator/launch?rom=" + encodeURIComponent(rom), {
+    method: "POST",
+    credentials: "same-origin",
+    headers: xsrfHeaders(),
+    cache: "no-store",
+  })
+  .then(async (res) => {
+    const body = await res.json().catch(() => ({}));
+    if (!res.ok || body.error) throw new Error(body.error || ("Launch failed: HTTP " + res.status));
+    if (!body.jobId) throw new Error("Backend returned no jobId");
+
+    const jobUrl = "/emulator/launch/" + encodeURIComponent(body.jobId);
+    const abandon = () => {
+      try { fetch(jobUrl, { method: "DELETE", credentials: "same-origin", headers: xsrfHeaders(), keepalive: true }); } catch {}
+    };
+    window.addEventListener("pagehide", abandon);
+    const settle = (es) => { es.close(); window.removeEventListener("pagehide", abandon); };
+
+    return new Promise((resolve, reject) => {
+      const es = new EventSource(jobUrl + "/events");
+      es.addEventListener("progress", (e) => {
+        try { updateStatus(JSON.parse(e.data).message); } catch {}
+      });
+      es.addEventListener("queued", (e) => {
+        try { updateStatus("Waiting for a free emulator slot (#" + JSON.parse(e.data).position + " in line)…"); } catch {}
+      });
+      es.addEventListener("ready", (e) => {
+        settle(es);
+        try { resolve(JSON.parse(e.data)); } catch (err) { reject(err); }
+      });
+      es.addEventListener("failed", (e) => {
+        settle(es);
+        let msg = "Launch failed";
+        try { msg = JSON.parse(e.data).error || msg; } catch {}
+        reject(new Error(msg));
+      });
+      es.addEventListener("cancelled", (e) => {
+        settle(es);
+        let msg = "Launch cancelled";
+        try { msg = "Launch cancelled: " + JSON.parse(e.data).reason; } catch {}
+        reject(new Error(msg));
+      });
+      // transient drops reconnect on their own (server replays progress); CLOSED is final
+      es.onerror = () => {
+        if (es.readyState === EventSource.CLOSED) {
+          settle(es);
+          reject(new Error("Lost connection to launch progress"));
+        }
+      };
+    });
+  });
+}
+
+// ROM catalog: [{ rom, core, size, crc32, sha1, title }], title only when the DAT knows the ROM
+export function listRoms() {
+  return fetch("/emulator/roms", { credentials: "same-origin" })
+    .then((res) => {
+      if (!res.ok) throw new Error("ROM list failed: HTTP " + res.status);
+      return res.json();
+    });
+}
+
 export function launchEmulator(rom, button) {
   //basic guards
   if (!rom || typeof rom !== "string") throw new Error("[emulator] ROM is required");
@@ -358,33 +429,33 @@ export function launchEmulator(rom, button) {
 
   updateStatus("Loading emulator interface…");
 
-  // kick-off emulator
-  fetch("/emulator/launch?rom=" + encodeURIComponent(rom), {
-    method: "POST",
-    credentials: "same-origin",
-    headers: (() => {
-      const m = (document.cookie || "").match(/(?:^|;\\s*)XSRF-TOKEN=([^;]+)/);
-      return m ? { "X-XSRF-TOKEN": decodeURIComponent(m[1]) } : {};
-    })(),
-    cache: "no-store",
-  })
-  .then(async (res) => {
-    updateStatus("Server responded, parsing response…");
-    if (!res.ok) throw new Error("Launch failed: HTTP " + res.status);
-    const response = await res.json();
-    if (response.error) throw new Error(response.error);
-
-    const vncUrl     = response.vncUrl;
-    const audioUrl   = response.audioUrl;
-    let gamepadUrl = response.gamepadUrl || "";
+  // kick-off emulator (returns at once; progress + URLs arrive over SSE)
+  startLaunchJob(rom)
+  .then(async (response) => {
+    updateStatus("Emulator ready, connecting…");
+
+    // relayed channels come back as paths on this server (/emulator/ws/...)
+    const https = location.protocol === "https:";
+    const toWsUrl = (u) => (u && u.startsWith("/")) ? (https ? "wss://" : "ws://") + location.host + u : u;
+    // relayed, the noVNC page itself is on this server too (/emulator/vnc/...)
+    let vncUrl       = response.vncUrl ? new URL(response.vncUrl, location.href).href : "";
+    if (vncUrl && response.vncRelayPath) {
+      vncUrl += "&host=" + encodeURIComponent(location.hostname)
+             + "&port=" + (location.port || (https ? 443 : 80))
+             + "&encrypt=" + (https ? 1 : 0)
+             + "&path=" + encodeURIComponent(response.vncRelayPath);
+    }
+    const audioUrl   = toWsUrl(response.audioUrl);
+    let gamepadUrl = toWsUrl(response.gamepadUrl || "");
     if (!vncUrl)  throw new Error("Backend returned no vncUrl");
     if (!audioUrl) throw new Error("Backend returned no audioUrl");
 	//gamepad logic only with n64
 	const useGamepad = (coreName === "N64") && !!gamepadUrl;       
 	if (!useGamepad) gamepadUrl = "";
 	    
-    const vncPort = extractPortFromUrl(vncUrl);
+    const vncPort = response.vncPort || extractPortFromUrl(vncUrl);
 	const knownPort = vncPort || 0;
+	const sessionId = response.sessionId || "";
     // assign new session id; only this sid is accepted by forwarder
     const sid = ++__emuSession;
     __currentSid = sid;
@@ -460,7 +531,7 @@ export function launchEmulator(rom, button) {
 	
 	
     // parent-side cleanup (on popup close or page unload)
-    if (vncPort) {
+    if (sessionId || vncPort) {
 		let done = false;
 		const cleanup = () => {		
 			
@@ -472,7 +543,7 @@ export function launchEmulator(rom, button) {
 	      try { if (__gpForwarder) window.removeEventListener("message", __gpForwarder); } catch {}
 	    }
 	    try { __currentSid = 0; } catch {}
-	    postCleanup(knownPort);
+	    postCleanup(sessionId, knownPort);
 	  };
 	  
 	// de-dupe any previous watch from an older sid
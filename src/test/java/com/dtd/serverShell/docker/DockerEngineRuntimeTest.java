@@ -0,0 +1,376 @@
+package com.dtd.serverShell.docker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URLDecoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * DockerEngineRuntime against a fake dockerd on a unix socket. The fake
+ * answers the way the daemon does: chunked JSON, streams that stay open until
+ * something happens, and multiplexed log frames whose headers and lines are
+ * cut at awkward places.
+ */
+class DockerEngineRuntimeTest {
+
+    private static final String ID = "c0ffee";
+
+    @TempDir
+    Path tmp;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private FakeDockerd dockerd;
+    private DockerEngineRuntime runtime;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dockerd = new FakeDockerd(tmp.resolve("docker.sock"));
+        runtime = new DockerEngineRuntime(tmp.resolve("docker.sock"), 4, mapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runtime.close();
+        dockerd.close();
+    }
+
+    @Test
+    void runCreatesWaitsStartsAndFollowsTheLog() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        String longLine = "x".repeat(9000);
+
+        dockerd.route("POST /v1.41/containers/create", (req, out) ->
+                chunked(out, 201, "{\"Id\":\"" + ID + "\",", "\"Warnings\":[]}"));
+        dockerd.route("POST /v1.41/containers/" + ID + "/wait", (req, out) -> {
+            // header first, result only once the container is gone
+            head(out, 200, "Transfer-Encoding: chunked");
+            stopped.await(10, TimeUnit.SECONDS);
+            chunk(out, "{\"Error\":null,\"StatusCode\":137}".getBytes(StandardCharsets.UTF_8));
+            end(out);
+        });
+        dockerd.route("POST /v1.41/containers/" + ID + "/start", (req, out) -> json(out, 204, ""));
+        dockerd.route("POST /v1.41/containers/emu-1/stop", (req, out) -> {
+            stopped.countDown();
+            json(out, 204, "");
+        });
+        dockerd.route("GET /v1.41/containers/" + ID + "/logs", (req, out) -> {
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            frames.write(frame(1, "RetroArch starting\n"));
+            frames.write(frame(2, "websockify: listen"));
+            frames.write(frame(1, "ing on :52300\r\n"));
+            frames.write(frame(1, longLine + "\n"));
+            frames.write(frame(2, "no newline at the end"));
+            byte[] all = frames.toByteArray();
+            // cut inside the first frame header and inside the long payload
+            head(out, 200, "Content-Type: application/vnd.docker.raw-stream", "Transfer-Encoding: chunked");
+            chunk(out, slice(all, 0, 3));
+            chunk(out, slice(all, 3, 100));
+            chunk(out, slice(all, 100, 5000));
+            chunk(out, slice(all, 5000, all.length));
+            end(out);
+        });
+
+        ContainerSpec spec = new ContainerSpec("emu-1", "retroarch:test")
+                .args(List.of("game.gba", "mgba_libretro.so"))
+                .bind("/users/a/config:/config")
+                .port(40001, 5900)
+                .label("serverShell.vncPort", "40001")
+                .publishHost("127.0.0.1")
+                .autoRemove(true);
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        ContainerHandle handle = runtime.run(spec, lines::add);
+
+        assertThat(lines.poll(5, TimeUnit.SECONDS)).isEqualTo("RetroArch starting");
+        assertThat(lines.poll(5, TimeUnit.SECONDS)).isEqualTo("websockify: listening on :52300");
+        assertThat(lines.poll(5, TimeUnit.SECONDS)).isEqualTo(longLine);
+        assertThat(lines.poll(5, TimeUnit.SECONDS)).isEqualTo("no newline at the end");
+        assertThat(handle.name()).isEqualTo("emu-1");
+        assertThat(handle.onExit()).isNotDone();
+
+        assertThat(runtime.stop("emu-1", 3)).isTrue();
+        assertThat(handle.onExit().get(5, TimeUnit.SECONDS)).isEqualTo(137);
+
+        // the wait is in place before the container starts
+        List<String> calls = dockerd.requests.stream().map(r -> r.method() + " " + r.target()).toList();
+        assertThat(calls).containsSubsequence(
+                "POST /v1.41/containers/create?name=emu-1",
+                "POST /v1.41/containers/" + ID + "/wait?condition=removed",
+                "POST /v1.41/containers/" + ID + "/start",
+                "GET /v1.41/containers/" + ID + "/logs?follow=1&stdout=1&stderr=1",
+                "POST /v1.41/containers/emu-1/stop?t=3");
+
+        JsonNode create = mapper.readTree(dockerd.request("POST /v1.41/containers/create").body());
+        assertThat(create.path("Image").asText()).isEqualTo("retroarch:test");
+        assertThat(create.path("Cmd").toString()).isEqualTo("[\"game.gba\",\"mgba_libretro.so\"]");
+        assertThat(create.path("Labels").path("serverShell.vncPort").asText()).isEqualTo("40001");
+        assertThat(create.path("ExposedPorts").has("5900/tcp")).isTrue();
+        JsonNode host = create.path("HostConfig");
+        assertThat(host.path("PortBindings").path("5900/tcp").path(0).path("HostIp").asText()).isEqualTo("127.0.0.1");
+        assertThat(host.path("PortBindings").path("5900/tcp").path(0).path("HostPort").asText()).isEqualTo("40001");
+        assertThat(host.path("Binds").path(0).asText()).isEqualTo("/users/a/config:/config");
+        assertThat(host.path("AutoRemove").asBoolean()).isTrue();
+    }
+
+    @Test
+    void runReportsARejectedCreateWithoutStarting() {
+        dockerd.route("POST /v1.41/containers/create", (req, out) ->
+                json(out, 409, "{\"message\":\"Conflict. The container name \\\"/emu-1\\\" is already in use\"}"));
+
+        assertThatThrownBy(() -> runtime.run(new ContainerSpec("emu-1", "retroarch:test"), line -> { }))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("create emu-1 failed: HTTP 409")
+                .hasMessageContaining("already in use");
+        assertThat(dockerd.requests).hasSize(1);
+    }
+
+    @Test
+    void inspectParsesStateAndReusesTheConnection() throws Exception {
+        dockerd.route("GET /v1.41/containers/emu-1/json", (req, out) -> json(out, 200, """
+                {"Id":"c0ffee","Name":"/emu-1",
+                 "State":{"Running":true,"Pid":4242,"ExitCode":0},
+                 "Config":{"Image":"retroarch:test","Labels":{"serverShell.managed":"true","serverShell.vncPort":"40001"}}}
+                """));
+
+        ContainerStatus status = runtime.inspect("emu-1").orElseThrow();
+        assertThat(status.id()).isEqualTo(ID);
+        assertThat(status.name()).isEqualTo("emu-1");
+        assertThat(status.image()).isEqualTo("retroarch:test");
+        assertThat(status.running()).isTrue();
+        assertThat(status.pid()).isEqualTo(4242);
+        assertThat(status.labels()).containsExactly(
+                Map.entry("serverShell.managed", "true"), Map.entry("serverShell.vncPort", "40001"));
+
+        // unknown route answers 404 like a missing container
+        assertThat(runtime.inspect("gone")).isEmpty();
+        assertThat(runtime.inspect("emu-1")).isPresent();
+        assertThat(dockerd.connections.get()).isEqualTo(1);
+    }
+
+    @Test
+    void eventsAreParsedAcrossChunkBoundaries() throws Exception {
+        String start = "{\"Type\":\"container\",\"Action\":\"start\",\"Actor\":{\"ID\":\"" + ID
+                + "\",\"Attributes\":{\"name\":\"emu-1\",\"serverShell.managed\":\"true\"}},\"timeNano\":1700000000000000001}";
+        String die = "{\"Type\":\"container\",\"Action\":\"die\",\"Actor\":{\"ID\":\"" + ID
+                + "\",\"Attributes\":{\"exitCode\":\"137\",\"name\":\"emu-1\"}},\"timeNano\":1700000000000000002}";
+        String destroy = "{\"Type\":\"container\",\"Action\":\"destroy\",\"Actor\":{\"ID\":\"" + ID
+                + "\",\"Attributes\":{\"name\":\"emu-1\"}},\"timeNano\":1700000000000000003}";
+        dockerd.route("GET /v1.41/events", (req, out) -> chunked(out, 200,
+                start.substring(0, 40), start.substring(40) + "\n", die + "\n" + destroy + "\n"));
+
+        BlockingQueue<ContainerEvent> events = new LinkedBlockingQueue<>();
+        Closeable subscription = runtime.events(Map.of("serverShell.managed", "true"), events::add);
+        try {
+            ContainerEvent first = events.poll(5, TimeUnit.SECONDS);
+            assertThat(first).isNotNull();
+            assertThat(first.action()).isEqualTo("start");
+            assertThat(first.id()).isEqualTo(ID);
+            assertThat(first.name()).isEqualTo("emu-1");
+            assertThat(first.labels()).containsEntry("serverShell.managed", "true");
+            assertThat(first.timeNanos()).isEqualTo(1700000000000000001L);
+
+            ContainerEvent second = events.poll(5, TimeUnit.SECONDS);
+            assertThat(second).isNotNull();
+            assertThat(second.action()).isEqualTo("die");
+            assertThat(second.labels()).containsEntry("exitCode", "137");
+            ContainerEvent third = events.poll(5, TimeUnit.SECONDS);
+            assertThat(third).isNotNull();
+            assertThat(third.action()).isEqualTo("destroy");
+        } finally {
+            subscription.close();
+        }
+
+        String target = dockerd.request("GET /v1.41/events").target();
+        String filters = URLDecoder.decode(target.substring(target.indexOf("filters=") + 8), StandardCharsets.UTF_8);
+        assertThat(mapper.readTree(filters)).isEqualTo(
+                mapper.readTree("{\"type\":[\"container\"],\"label\":[\"serverShell.managed=true\"]}"));
+    }
+
+    // --- wire format ---
+
+    private static byte[] frame(int stream, String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + data.length)
+                .put((byte) stream).put((byte) 0).put((byte) 0).put((byte) 0)
+                .putInt(data.length)
+                .put(data)
+                .array();
+    }
+
+    private static byte[] slice(byte[] data, int from, int to) {
+        byte[] out = new byte[to - from];
+        System.arraycopy(data, from, out, 0, out.length);
+        return out;
+    }
+
+    private static void head(OutputStream out, int status, String... headers) throws IOException {
+        StringBuilder sb = new StringBuilder("HTTP/1.1 ").append(status).append(" X\r\n")
+                .append("Api-Version: 1.41\r\n");
+        for (String h : headers) sb.append(h).append("\r\n");
+        out.write(sb.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void json(OutputStream out, int status, String body) throws IOException {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        head(out, status, "Content-Type: application/json", "Content-Length: " + data.length);
+        out.write(data);
+        out.flush();
+    }
+
+    private static void chunked(OutputStream out, int status, String... chunks) throws IOException {
+        head(out, status, "Content-Type: application/json", "Transfer-Encoding: chunked");
+        for (String c : chunks) chunk(out, c.getBytes(StandardCharsets.UTF_8));
+        end(out);
+    }
+
+    private static void chunk(OutputStream out, byte[] data) throws IOException {
+        out.write((Integer.toHexString(data.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(data);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void end(OutputStream out) throws IOException {
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    record Request(String method, String target, Map<String, String> headers, byte[] body) {
+        String path() {
+            int q = target.indexOf('?');
+            return q < 0 ? target : target.substring(0, q);
+        }
+    }
+
+    interface Route {
+        void respond(Request request, OutputStream out) throws IOException, InterruptedException;
+    }
+
+    /** HTTP/1.1 on a unix socket, one thread per connection, keep-alive unless the client says close. */
+    static final class FakeDockerd implements Closeable {
+        final List<Request> requests = new CopyOnWriteArrayList<>();
+        final AtomicInteger connections = new AtomicInteger();
+        private final Map<String, Route> routes = new ConcurrentHashMap<>();
+        private final ServerSocketChannel server;
+
+        FakeDockerd(Path socket) throws IOException {
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            daemon("fake-dockerd", () -> {
+                while (server.isOpen()) {
+                    try {
+                        SocketChannel ch = server.accept();
+                        connections.incrementAndGet();
+                        daemon("fake-dockerd-conn", () -> serve(ch));
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void route(String methodAndPath, Route route) {
+            routes.put(methodAndPath, route);
+        }
+
+        Request request(String methodAndPath) {
+            return requests.stream()
+                    .filter(r -> (r.method() + " " + r.path()).equals(methodAndPath))
+                    .findFirst().orElseThrow();
+        }
+
+        private void serve(SocketChannel ch) {
+            try (ch) {
+                InputStream in = new BufferedInputStream(Channels.newInputStream(ch));
+                OutputStream out = Channels.newOutputStream(ch);
+                Request req;
+                while ((req = read(in)) != null) {
+                    requests.add(req);
+                    Route route = routes.get(req.method() + " " + req.path());
+                    if (route == null) {
+                        json(out, 404, "{\"message\":\"page not found\"}");
+                    } else {
+                        route.respond(req, out);
+                    }
+                    if ("close".equalsIgnoreCase(req.headers().get("connection"))) return;
+                }
+            } catch (IOException e) {
+                // client went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static Request read(InputStream in) throws IOException {
+            String requestLine = line(in);
+            if (requestLine == null || requestLine.isEmpty()) return null;
+            String[] parts = requestLine.split(" ");
+            Map<String, String> headers = new HashMap<>();
+            String h;
+            while ((h = line(in)) != null && !h.isEmpty()) {
+                int colon = h.indexOf(':');
+                headers.put(h.substring(0, colon).trim().toLowerCase(Locale.ROOT), h.substring(colon + 1).trim());
+            }
+            byte[] body = in.readNBytes(Integer.parseInt(headers.getOrDefault("content-length", "0")));
+            return new Request(parts[0], parts[1], headers, body);
+        }
+
+        private static String line(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (b != '\r') line.write(b);
+            }
+            if (b == -1 && line.size() == 0) return null;
+            return line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void close() {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // already closed
+            }
+        }
+
+        private static void daemon(String name, Runnable task) {
+            Thread t = new Thread(task, name);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.dtd.serverShell.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+
+/**
+ * Queue bookkeeping of EmulatorAdmission: a cancelled launch gives its place
+ * up and is never admitted, and one user can't fill the queue alone. Host
+ * pressure checks are off so only the capacity decides.
+ */
+class EmulatorAdmissionTest {
+
+    private EmulatorAdmission admission;
+
+    @BeforeEach
+    void setUp() {
+        admission = new EmulatorAdmission(new EmulatorSessionRegistry(mock(EmulatorSessionRepository.class), mock(SaveStore.class)));
+        ReflectionTestUtils.setField(admission, "capacity", 1);
+        ReflectionTestUtils.setField(admission, "gbaWeight", 1);
+        ReflectionTestUtils.setField(admission, "n64Weight", 1);
+        ReflectionTestUtils.setField(admission, "maxQueue", 50);
+        ReflectionTestUtils.setField(admission, "maxQueuePerUser", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        admission.shutdown();
+    }
+
+    @Test
+    void cancelledLaunchLeavesTheQueueAndIsNeverAdmitted() throws Exception {
+        Recorder first = new Recorder();
+        Recorder cancelled = new Recorder();
+        Recorder next = new Recorder();
+        admission.submit("alice", "GBA", first);
+        EmulatorAdmission.Ticket running = first.admitted.poll(5, TimeUnit.SECONDS);
+        assertThat(running).isNotNull();
+
+        EmulatorAdmission.Ticket gone = admission.submit("bob", "GBA", cancelled);
+        admission.submit("carol", "GBA", next);
+        assertThat(cancelled.positions.poll(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(next.positions.poll(5, TimeUnit.SECONDS)).isEqualTo(2);
+
+        gone.release();
+        assertThat(next.positions.poll(5, TimeUnit.SECONDS)).isEqualTo(1);
+
+        running.release();
+        assertThat(next.admitted.poll(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(cancelled.admitted.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(cancelled.rejections).isEmpty();
+    }
+
+    @Test
+    void oneUserCannotFillTheQueue() throws Exception {
+        Recorder running = new Recorder();
+        admission.submit("alice", "GBA", running);
+        assertThat(running.admitted.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+        // the admitted launch doesn't count, only the ones waiting
+        admission.submit("alice", "GBA", new Recorder());
+        EmulatorAdmission.Ticket second = admission.submit("alice", "N64", new Recorder());
+        assertThatThrownBy(() -> admission.submit("alice", "GBA", new Recorder()))
+                .isInstanceOf(EmulatorAdmission.RejectedException.class)
+                .hasMessageContaining("2 launches waiting");
+        admission.submit("bob", "GBA", new Recorder());
+
+        // a cancelled one frees the user's slot again
+        second.release();
+        admission.submit("alice", "GBA", new Recorder());
+    }
+
+    static final class Recorder implements EmulatorAdmission.Waiter {
+        final BlockingQueue<Integer> positions = new LinkedBlockingQueue<>();
+        final BlockingQueue<EmulatorAdmission.Ticket> admitted = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> rejections = new LinkedBlockingQueue<>();
+
+        @Override public void position(int position) { positions.add(position); }
+        @Override public void admitted(EmulatorAdmission.Ticket ticket) { admitted.add(ticket); }
+        @Override public void rejected(String reason) { rejections.add(reason); }
+    }
+}
@@ -0,0 +1,125 @@
+package com.dtd.serverShell.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.dtd.serverShell.docker.ContainerSpec;
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Pool containers only ever bind their own slot: an idle one sees no user's
+ * files, a claimed one sees copies of its claimer's, and the slot goes back
+ * to that user (and nobody else) when the container exits.
+ */
+class EmulatorPoolTest {
+
+    @TempDir
+    Path tmp;
+
+    private EmulatorSessionRegistryConcurrencyTest.FakeRuntime runtime;
+    private SaveStore saveStore;
+    private EmulatorPool pool;
+    private Path saveRoot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path pulse = Files.createFile(tmp.resolve("native"));
+        Path cookieDir = Files.createDirectories(tmp.resolve("pulse"));
+        Files.writeString(cookieDir.resolve("cookie"), "cookie");
+        saveRoot = tmp.resolve("saves");
+
+        runtime = new EmulatorSessionRegistryConcurrencyTest.FakeRuntime();
+        PortLeaseManager portLeases = new PortLeaseManager(40000, 40030, 0);
+        EmulatorService emulatorService = new EmulatorService(portLeases, runtime, "(?i)listening on");
+        ReflectionTestUtils.setField(emulatorService, "pulseDir", pulse.toString());
+        ReflectionTestUtils.setField(emulatorService, "pulseCookieOverride", cookieDir.toString());
+        ReflectionTestUtils.setField(emulatorService, "retroImage", "retroarch:test");
+        ReflectionTestUtils.setField(emulatorService, "readyTimeoutSeconds", 5);
+
+        ObjectMapper mapper = new ObjectMapper();
+        saveStore = new SaveStore(saveRoot.toString(), 10, mapper);
+        EmulatorSessionRegistry sessions = new EmulatorSessionRegistry(mock(EmulatorSessionRepository.class), saveStore);
+        RomIndex romIndex = new RomIndex("", List.of(), 1, saveRoot.toString(), mapper);
+        pool = new EmulatorPool(emulatorService, portLeases, sessions, saveStore, romIndex,
+                saveRoot.toString(), 2, 0, "claim-session");
+        pool.warmUp();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void idleContainersBindOnlyTheirOwnSlot() throws Exception {
+        awaitIdle(2);
+        Path users = saveRoot.resolve("users").toAbsolutePath();
+        for (ContainerSpec spec : runtime.specs.values()) {
+            assertThat(spec.getBinds()).noneMatch(b -> b.startsWith(users.toString()));
+            assertThat(spec.getBinds()).filteredOn(b -> b.endsWith(":/config") || b.endsWith(":/save"))
+                    .hasSize(2)
+                    .allMatch(b -> b.startsWith(saveRoot.resolve("pool").toAbsolutePath().toString()));
+        }
+    }
+
+    @Test
+    void claimedSlotHoldsCopiesAndGoesBackToItsOwner() throws Exception {
+        awaitIdle(2);
+        Path aliceConfig = Files.createDirectories(saveRoot.resolve("users/alice/config/GBA"));
+        Path aliceSave = Files.createDirectories(saveRoot.resolve("users/alice/save/GBA"));
+        Files.writeString(aliceConfig.resolve("retroarch.cfg"), "alice\n");
+        Files.writeString(aliceSave.resolve("game.srm"), "v1");
+
+        EmulatorPool.Claimed alice = pool.claim("alice", "GBA", aliceConfig, aliceSave, "/roms/game.gba").orElseThrow();
+        assertThat(runtime.execs.get(alice.container().name())).containsExactly("claim-session", "/roms/game.gba", "mgba_libretro.so");
+        assertThat(alice.configPath().resolve("retroarch.cfg")).hasContent("alice\n");
+        assertThat(Files.isSameFile(alice.savePath().resolve("game.srm"), aliceSave.resolve("game.srm"))).isFalse();
+
+        // the other idle container still sees nothing of alice's
+        Path bobConfig = Files.createDirectories(saveRoot.resolve("users/bob/config/GBA"));
+        Path bobSave = Files.createDirectories(saveRoot.resolve("users/bob/save/GBA"));
+        EmulatorPool.Claimed bob = pool.claim("bob", "GBA", bobConfig, bobSave, "/roms/game.gba").orElseThrow();
+        assertThat(bob.savePath()).isNotEqualTo(alice.savePath());
+        assertThat(bob.configPath().resolve("retroarch.cfg")).doesNotExist();
+
+        // RetroArch saves inside the slot; nothing reaches alice's dir until the container exits
+        Files.writeString(alice.savePath().resolve("game.srm"), "v2");
+        assertThat(aliceSave.resolve("game.srm")).hasContent("v1");
+
+        runtime.stop(alice.container().name(), 0);
+        alice.container().handle().onExit().get(5, TimeUnit.SECONDS);
+        assertThat(aliceSave.resolve("game.srm")).hasContent("v2");
+        assertThat(saveStore.versions("alice", "GBA", "game.srm")).hasSize(1);
+        assertThat(alice.savePath().getParent()).doesNotExist();
+        assertThat(bobSave.resolve("game.srm")).doesNotExist();
+    }
+
+    @Test
+    void emptyPoolFallsBackToColdStart() throws Exception {
+        awaitIdle(2);
+        Path config = Files.createDirectories(saveRoot.resolve("users/carol/config/N64"));
+        Path save = Files.createDirectories(saveRoot.resolve("users/carol/save/N64"));
+        assertThat(pool.claim("carol", "N64", config, save, "game.z64")).isEmpty();
+    }
+
+    private void awaitIdle(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.idleCount("GBA") < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(pool.idleCount("GBA")).isEqualTo(count);
+    }
+}
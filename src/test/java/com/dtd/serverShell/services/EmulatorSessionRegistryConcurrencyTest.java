@@ -0,0 +1,327 @@
+package com.dtd.serverShell.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dtd.serverShell.controller.EmulatorController;
+import com.dtd.serverShell.docker.ContainerEvent;
+import com.dtd.serverShell.docker.ContainerHandle;
+import com.dtd.serverShell.docker.ContainerRuntime;
+import com.dtd.serverShell.docker.ContainerSpec;
+import com.dtd.serverShell.docker.ContainerStatus;
+import com.dtd.serverShell.relay.EmulatorRelayHandler;
+import com.dtd.serverShell.relay.NoVncAssetRelay;
+import com.dtd.serverShell.repository.AppUserRepository;
+import com.dtd.serverShell.repository.EmulatorSessionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Many users launching at the same moment, through EmulatorController as a
+ * request would: every launch gets its own port triple, its own config/save
+ * binds, and a session only its owner can reach, for saves as well.
+ * Containers come from a fake runtime that records each spec; the rest
+ * (admission, templates, save store, registry) is the real thing.
+ */
+class EmulatorSessionRegistryConcurrencyTest {
+
+    private static final int USERS = 24;
+
+    @TempDir
+    Path tmp;
+
+    private FakeRuntime runtime;
+    private PortLeaseManager portLeases;
+    private EmulatorSessionRegistry sessions;
+    private EmulatorController controller;
+    private ExecutorService requests;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path pulse = Files.createFile(tmp.resolve("native"));
+        Path cookieDir = Files.createDirectories(tmp.resolve("pulse"));
+        Files.writeString(cookieDir.resolve("cookie"), "cookie");
+        Path saveRoot = tmp.resolve("saves");
+        Files.createDirectories(saveRoot.resolve("default/config/GBA"));
+        Files.writeString(saveRoot.resolve("default/config/GBA/retroarch.cfg"), "video_driver = \"gl\"\n");
+
+        runtime = new FakeRuntime();
+        portLeases = new PortLeaseManager(40000, 40000 + USERS * 3, 0);
+        EmulatorService emulatorService = new EmulatorService(portLeases, runtime, "(?i)listening on");
+        ReflectionTestUtils.setField(emulatorService, "pulseDir", pulse.toString());
+        ReflectionTestUtils.setField(emulatorService, "pulseCookieOverride", cookieDir.toString());
+        ReflectionTestUtils.setField(emulatorService, "retroImage", "retroarch:test");
+        ReflectionTestUtils.setField(emulatorService, "readyTimeoutSeconds", 5);
+        ReflectionTestUtils.setField(emulatorService, "hostIP", "127.0.0.1");
+
+        ObjectMapper mapper = new ObjectMapper();
+        SaveStore saveStore = new SaveStore(saveRoot.toString(), 10, mapper);
+        sessions = new EmulatorSessionRegistry(mock(EmulatorSessionRepository.class), saveStore);
+        EmulatorAdmission admission = new EmulatorAdmission(sessions);
+        ReflectionTestUtils.setField(admission, "capacity", USERS);
+        ReflectionTestUtils.setField(admission, "gbaWeight", 1);
+        ReflectionTestUtils.setField(admission, "n64Weight", 1);
+        ReflectionTestUtils.setField(admission, "maxQueue", USERS);
+        RomIndex romIndex = new RomIndex("", List.of(), 1, saveRoot.toString(), mapper);
+
+        EmulatorPool pool = new EmulatorPool(emulatorService, portLeases, sessions, saveStore, romIndex,
+                saveRoot.toString(), 0, 0, "claim");
+        controller = new EmulatorController(mock(AppUserRepository.class), mock(Environment.class),
+                emulatorService, pool, portLeases, sessions, mock(EmulatorReaper.class), new TemplateProvisioner(), saveStore,
+                admission, mock(EmulatorRelayHandler.class), mock(NoVncAssetRelay.class), romIndex,
+                new SimpleMeterRegistry(), USERS, 30);
+        ReflectionTestUtils.setField(controller, "romSaveDir", saveRoot.toString());
+        requests = Executors.newFixedThreadPool(USERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        requests.shutdownNow();
+        controller.shutdownLaunches();
+    }
+
+    @Test
+    void parallelLaunchesKeepPathsAndPortsApart() throws Exception {
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<ResponseEntity<Map<String, String>>>> launches = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String username = "user" + i;
+            String rom = i % 2 == 0 ? "game.gba" : "game.z64";
+            launches.add(requests.submit(() -> {
+                go.await();
+                return controller.launchEmulator(rom, principal(username), new MockHttpServletRequest());
+            }));
+        }
+        go.countDown();
+        for (Future<ResponseEntity<Map<String, String>>> f : launches) {
+            assertThat(f.get(30, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        }
+        List<EmulatorSession> launched = awaitSessions(USERS);
+
+        Set<Integer> ports = new HashSet<>();
+        Set<String> users = new HashSet<>();
+        for (EmulatorSession s : launched) {
+            assertThat(users.add(s.username())).isTrue();
+            assertThat(ports.add(s.container().vncPort())).isTrue();
+            assertThat(ports.add(s.container().audioPort())).isTrue();
+            assertThat(ports.add(s.container().gamepadPort())).isTrue();
+
+            Path userRoot = tmp.resolve("saves/users").resolve(s.username());
+            assertThat(s.configPath()).startsWith(userRoot);
+            assertThat(s.savePath()).startsWith(userRoot);
+            if (s.core().equals("GBA")) {
+                assertThat(s.configPath().resolve("retroarch.cfg")).exists();
+            }
+
+            // what the container was actually started with
+            ContainerSpec spec = runtime.specs.get(s.containerName());
+            assertThat(spec.getBinds()).contains(
+                    s.configPath().toAbsolutePath() + ":/config",
+                    s.savePath().toAbsolutePath() + ":/save");
+            assertThat(spec.getBinds()).filteredOn(b -> b.startsWith(tmp.resolve("saves/users").toString()))
+                    .allMatch(b -> b.startsWith(userRoot + "/"));
+            assertThat(spec.getPorts()).extracting(ContainerSpec.PortBinding::hostPort)
+                    .isSubsetOf(s.container().vncPort(), s.container().audioPort(), s.container().gamepadPort());
+            assertThat(spec.getLabels()).containsEntry("serverShell.vncPort", String.valueOf(s.vncPort()));
+
+            // only the owner finds it, by id or by port
+            assertThat(sessions.find(s.id(), s.username())).contains(s);
+            assertThat(sessions.findByPort(s.vncPort(), s.username())).contains(s);
+            String other = s.username().equals("user0") ? "user1" : "user0";
+            assertThat(sessions.find(s.id(), other)).isEmpty();
+            assertThat(sessions.findByPort(s.vncPort(), other)).isEmpty();
+        }
+        assertThat(runtime.specs).hasSize(USERS);
+    }
+
+    @Test
+    void parallelSaveUploadsLandInTheOwnersSession() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            assertThat(controller.launchEmulator("game.gba", principal("user" + i), new MockHttpServletRequest())
+                    .getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        }
+        List<EmulatorSession> launched = awaitSessions(USERS);
+
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<String>> roundTrips = new ArrayList<>();
+        for (EmulatorSession s : launched) {
+            roundTrips.add(requests.submit(() -> {
+                go.await();
+                Principal owner = principal(s.username());
+                byte[] save = ("progress of " + s.username()).getBytes(StandardCharsets.UTF_8);
+                ResponseEntity<?> up = controller.uploadSave("game.srm", s.id(),
+                        new MockMultipartFile("file", "game.srm", "application/octet-stream", save), null, owner);
+                assertThat(up.getStatusCode()).isEqualTo(HttpStatus.OK);
+                return download(s, owner);
+            }));
+        }
+        go.countDown();
+        for (int i = 0; i < launched.size(); i++) {
+            EmulatorSession s = launched.get(i);
+            assertThat(roundTrips.get(i).get(30, TimeUnit.SECONDS)).isEqualTo("progress of " + s.username());
+            assertThat(s.savePath().resolve("game.srm")).hasContent("progress of " + s.username());
+        }
+
+        // someone else's session id gets nothing either way
+        EmulatorSession victim = launched.get(0);
+        Principal intruder = principal(launched.get(1).username());
+        assertThat(controller.uploadSave("game.srm", victim.id(),
+                new MockMultipartFile("file", "game.srm", "application/octet-stream", new byte[] { 1 }), null, intruder)
+                .getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.downloadSave("game.srm", victim.id(), null, null, intruder).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(victim.savePath().resolve("game.srm")).hasContent("progress of " + victim.username());
+    }
+
+    @Test
+    void endedSessionsReleaseTheirPortsWithoutTouchingOthers() throws Exception {
+        for (int i = 0; i < USERS; i++) {
+            controller.launchEmulator("game.gba", principal("user" + i), new MockHttpServletRequest());
+        }
+        List<EmulatorSession> launched = awaitSessions(USERS);
+        assertThat(portLeases.available()).isZero();
+
+        // every other session ends, all at once
+        List<Future<ResponseEntity<?>>> stops = new ArrayList<>();
+        for (int i = 0; i < USERS; i += 2) {
+            EmulatorSession s = launched.get(i);
+            stops.add(requests.submit(() -> controller.cleanup(Map.of("sessionId", s.id()), principal(s.username()))));
+        }
+        for (Future<ResponseEntity<?>> f : stops) {
+            assertThat(f.get(30, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        assertThat(sessions.all()).hasSize(USERS / 2);
+        Set<Integer> stillLeased = new HashSet<>();
+        for (int i = 1; i < USERS; i += 2) {
+            EmulatorSession s = launched.get(i);
+            assertThat(sessions.find(s.id(), s.username())).contains(s);
+            stillLeased.add(s.vncPort());
+        }
+        // the freed triples (quarantine is 0 here) go to new launches, the running ones never do
+        for (int i = 0; i < USERS / 2; i++) {
+            assertThat(stillLeased).doesNotContain(portLeases.acquire().vncPort());
+        }
+        assertThat(portLeases.available()).isZero();
+    }
+
+    private static Principal principal(String username) {
+        return () -> username;
+    }
+
+    private String download(EmulatorSession s, Principal owner) throws IOException {
+        ResponseEntity<StreamingResponseBody> down = controller.downloadSave("game.srm", s.id(), null, null, owner);
+        assertThat(down.getStatusCode()).isEqualTo(HttpStatus.OK);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        down.getBody().writeTo(body);
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    // launches finish in the background; the registry is where they show up
+    private List<EmulatorSession> awaitSessions(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (sessions.all().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(sessions.all()).as("sessions up after launching").hasSize(count);
+        List<EmulatorSession> all = new ArrayList<>(sessions.all());
+        all.sort((a, b) -> Integer.compare(Integer.parseInt(a.username().substring(4)), Integer.parseInt(b.username().substring(4))));
+        return all;
+    }
+
+    /** Containers that "run" until stopped, announcing readiness from a separate thread like a real log. */
+    static final class FakeRuntime implements ContainerRuntime {
+        final Map<String, ContainerSpec> specs = new ConcurrentHashMap<>();
+        final Map<String, CompletableFuture<Integer>> exits = new ConcurrentHashMap<>();
+        final Map<String, List<String>> execs = new ConcurrentHashMap<>();
+
+        @Override
+        public ContainerHandle run(ContainerSpec spec, Consumer<String> logLine) {
+            if (specs.putIfAbsent(spec.getName(), spec) != null) {
+                throw new IllegalStateException("container name in use: " + spec.getName());
+            }
+            CompletableFuture<Integer> exit = new CompletableFuture<>();
+            exits.put(spec.getName(), exit);
+            CompletableFuture.runAsync(() -> logLine.accept("websockify: listening on :52300"));
+            return new ContainerHandle() {
+                @Override public String name() { return spec.getName(); }
+                @Override public CompletableFuture<Integer> onExit() { return exit; }
+            };
+        }
+
+        @Override
+        public Optional<ContainerHandle> attach(String name) {
+            return Optional.empty();
+        }
+
+        @Override
+        public boolean stop(String name, int timeoutSeconds) {
+            CompletableFuture<Integer> exit = exits.get(name);
+            if (exit == null) return false;
+            exit.complete(0);
+            return true;
+        }
+
+        @Override
+        public Optional<ContainerStatus> inspect(String name) {
+            CompletableFuture<Integer> exit = exits.get(name);
+            if (exit == null) return Optional.empty();
+            ContainerSpec spec = specs.get(name);
+            return Optional.of(new ContainerStatus(name, name, spec.getImage(), !exit.isDone(),
+                    exit.getNow(0), 0, spec.getLabels()));
+        }
+
+        @Override
+        public List<ContainerStatus> list(Map<String, String> labels) {
+            return List.of();
+        }
+
+        @Override
+        public boolean exec(String name, List<String> command, int timeoutSeconds) {
+            CompletableFuture<Integer> exit = exits.get(name);
+            if (exit == null || exit.isDone()) return false;
+            execs.put(name, command);
+            return true;
+        }
+
+        @Override
+        public Closeable events(Map<String, String> labels, Consumer<ContainerEvent> listener) {
+            return () -> { };
+        }
+    }
+}
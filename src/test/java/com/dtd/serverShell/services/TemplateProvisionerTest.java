@@ -0,0 +1,85 @@
+package com.dtd.serverShell.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Users' dirs never share an inode with default/: RetroArch writes in place
+ * inside the read-write /config mount, and such a write must stay with the
+ * user who made it.
+ */
+class TemplateProvisionerTest {
+
+    @TempDir
+    Path tmp;
+
+    private final TemplateProvisioner provisioner = new TemplateProvisioner();
+    private Path template;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        template = Files.createDirectories(tmp.resolve("default/config/GBA"));
+        Files.writeString(template.resolve("retroarch.cfg"), "video_driver = \"gl\"\n");
+        Files.createDirectories(template.resolve("shaders/crt"));
+        Files.writeString(template.resolve("shaders/crt/crt.slangp"), "shaders = 1\n");
+        Files.createDirectories(template.resolve("overlays"));
+        Files.writeString(template.resolve("overlays/gba.cfg"), "overlays = 1\n");
+    }
+
+    @Test
+    void inPlaceWritesStayWithTheUser() throws IOException {
+        Path alice = provision("alice");
+        Path bob = provision("bob");
+
+        for (String rel : new String[] { "retroarch.cfg", "shaders/crt/crt.slangp", "overlays/gba.cfg" }) {
+            assertThat(Files.isSameFile(template.resolve(rel), alice.resolve(rel))).as(rel).isFalse();
+        }
+
+        // "Save Shader Preset" overwrites the file it loaded
+        Files.writeString(alice.resolve("shaders/crt/crt.slangp"), "shaders = 2\n");
+        Files.writeString(alice.resolve("overlays/gba.cfg"), "overlays = 2\n");
+
+        assertThat(template.resolve("shaders/crt/crt.slangp")).hasContent("shaders = 1\n");
+        assertThat(bob.resolve("shaders/crt/crt.slangp")).hasContent("shaders = 1\n");
+        assertThat(bob.resolve("overlays/gba.cfg")).hasContent("overlays = 1\n");
+    }
+
+    @Test
+    void templateUpdatesSkipFilesTheUserChanged() throws IOException {
+        Path alice = provision("alice");
+        Files.writeString(alice.resolve("overlays/gba.cfg"), "mine\n");
+
+        Files.writeString(template.resolve("overlays/gba.cfg"), "overlays = 3\n");
+        Files.writeString(template.resolve("shaders/crt/crt.slangp"), "shaders = 3\n");
+        provision("alice");
+
+        assertThat(alice.resolve("overlays/gba.cfg")).hasContent("mine\n");
+        assertThat(alice.resolve("shaders/crt/crt.slangp")).hasContent("shaders = 3\n");
+    }
+
+    @Test
+    void hardLinksFromAnEarlierLayoutAreReplacedWithCopies() throws IOException {
+        Path alice = tmp.resolve("users/alice/config/GBA");
+        Files.createDirectories(alice.resolve("shaders/crt"));
+        Files.createLink(alice.resolve("shaders/crt/crt.slangp"), template.resolve("shaders/crt/crt.slangp"));
+
+        provision("alice");
+        assertThat(Files.isSameFile(template.resolve("shaders/crt/crt.slangp"), alice.resolve("shaders/crt/crt.slangp"))).isFalse();
+
+        Files.writeString(alice.resolve("shaders/crt/crt.slangp"), "shaders = 2\n");
+        assertThat(template.resolve("shaders/crt/crt.slangp")).hasContent("shaders = 1\n");
+    }
+
+    private Path provision(String user) throws IOException {
+        Path target = tmp.resolve("users").resolve(user).resolve("config/GBA");
+        provisioner.provision(template, target, tmp.resolve("users").resolve(user).resolve(".templates/config-GBA.properties"));
+        return target;
+    }
+}